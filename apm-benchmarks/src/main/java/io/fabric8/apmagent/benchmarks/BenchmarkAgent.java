@@ -0,0 +1,70 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.benchmarks;
+
+import io.fabric8.apmagent.ApmAgent;
+import io.fabric8.apmagent.metrics.ApmAgentContext;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Starts the agent in the benchmark JVM with the trace strategy, without instrumenting
+ * any classes - the benchmarks call the probes directly, the same way instrumented code does.
+ */
+final class BenchmarkAgent {
+
+    private BenchmarkAgent() {
+    }
+
+    static ApmAgentContext start() throws Exception {
+        ApmAgent agent = ApmAgent.INSTANCE;
+        if (agent.initialize(createInstrumentation(), "strategy=trace")) {
+            agent.startMetrics();
+        }
+        return agent.getApmAgentContext();
+    }
+
+    static void restart() {
+        ApmAgent agent = ApmAgent.INSTANCE;
+        agent.stopMetrics();
+        agent.startMetrics();
+    }
+
+    /**
+     * @return an Instrumentation that supports re-transformation, but has no loaded classes
+     */
+    private static Instrumentation createInstrumentation() {
+        return (Instrumentation) Proxy.newProxyInstance(BenchmarkAgent.class.getClassLoader(), new Class[]{Instrumentation.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                Class<?> returnType = method.getReturnType();
+                if (returnType == boolean.class) {
+                    return method.getName().endsWith("Supported");
+                }
+                if (returnType == long.class) {
+                    return 0L;
+                }
+                if (returnType.isArray()) {
+                    return java.lang.reflect.Array.newInstance(returnType.getComponentType(), 0);
+                }
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.benchmarks;
+
+import io.fabric8.apmagent.ApmAgent;
+import io.fabric8.apmagent.metrics.ApmAgentContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the enter/exit probes the trace strategy inserts into every
+ * instrumented method, for a method that is monitored and one that has been switched off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProbeBenchmark {
+
+    @Param({"true", "false"})
+    public boolean monitored;
+
+    private int methodId;
+
+    @Setup
+    public void setUp() throws Exception {
+        ApmAgentContext context = BenchmarkAgent.start();
+        String methodName = ProbeBenchmark.class.getName() + "@probe() void";
+        methodId = context.registerMethod(methodName);
+        //the metrics for a method are created when it is first entered
+        ApmAgent.enterMethod(methodId);
+        ApmAgent.exitMethod(methodId);
+        //the state is kept on the method, so the benchmark threads that call it later follow it
+        context.setActive(methodName, monitored);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void probe1Thread() {
+        probe();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void probe8Threads() {
+        probe();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void probe32Threads() {
+        probe();
+    }
+
+    private void probe() {
+        ApmAgent.enterMethod(methodId);
+        ApmAgent.exitMethod(methodId);
+    }
+}
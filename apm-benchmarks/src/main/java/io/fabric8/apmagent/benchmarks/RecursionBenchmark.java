@@ -0,0 +1,77 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.benchmarks;
+
+import io.fabric8.apmagent.ApmAgent;
+import io.fabric8.apmagent.metrics.ApmAgentContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the probes of a deeply recursive method. The metrics are reset before each
+ * iteration, so every iteration starts with empty per-thread method stacks that have
+ * to grow to the recursion depth.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecursionBenchmark {
+
+    @Param({"16", "256", "1024"})
+    public int depth;
+
+    private int methodId;
+
+    @Setup
+    public void setUp() throws Exception {
+        ApmAgentContext context = BenchmarkAgent.start();
+        methodId = context.registerMethod(RecursionBenchmark.class.getName() + "@recurse(int) int");
+    }
+
+    @Setup(Level.Iteration)
+    public void resetMetrics() {
+        BenchmarkAgent.restart();
+    }
+
+    @Benchmark
+    public int recursion() {
+        return recurse(depth);
+    }
+
+    private int recurse(int remaining) {
+        ApmAgent.enterMethod(methodId);
+        try {
+            return remaining == 0 ? 0 : 1 + recurse(remaining - 1);
+        } finally {
+            ApmAgent.exitMethod(methodId);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.benchmarks;
+
+import io.fabric8.apmagent.ApmConfiguration;
+import io.fabric8.apmagent.metrics.ApmAgentContext;
+import io.fabric8.apmagent.strategy.sampling.SamplingStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what a single tick of the sampling strategy costs in a JVM with many threads:
+ * capturing every thread's stack, as the default mode does (a sampledThreads of 0), versus
+ * capturing a bounded subset of threads with a limited stack depth, rotating through all the
+ * threads, as the rotating mode does. Each tick includes adding the samples to the call tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SamplingBenchmark {
+
+    @Param({"100", "800"})
+    public int threadCount;
+
+    @Param({"0", "64"})
+    public int sampledThreads;
+
+    @Param({"64"})
+    public int stackDepth;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private SamplingStrategy samplingStrategy;
+
+    @Setup
+    public void setUp() throws Exception {
+        ApmAgentContext context = BenchmarkAgent.start();
+        ApmConfiguration configuration = context.getConfiguration();
+        configuration.setSamplingThreadCount(sampledThreads);
+        configuration.setSamplingStackDepth(stackDepth);
+        //the strategy is driven by the benchmark, rather than its own sampling thread
+        samplingStrategy = new SamplingStrategy(context);
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    park(20);
+                }
+            }, "SamplingBenchmark-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        done.countDown();
+    }
+
+    @Benchmark
+    public void sample() {
+        samplingStrategy.sample();
+    }
+
+    /**
+     * Parks the thread a few frames deep, so there is a stack worth capturing
+     */
+    private void park(int frames) {
+        if (frames > 0) {
+            park(frames - 1);
+        } else {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
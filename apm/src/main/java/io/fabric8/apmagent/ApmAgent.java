@@ -16,14 +16,23 @@
 package io.fabric8.apmagent;
 
 import io.fabric8.apmagent.metrics.ApmAgentContext;
+import io.fabric8.apmagent.metrics.ArchivedMethodMetrics;
+import io.fabric8.apmagent.metrics.SlowCall;
 import io.fabric8.apmagent.metrics.ThreadMetrics;
 import io.fabric8.apmagent.strategy.sampling.SamplingStrategy;
 import io.fabric8.apmagent.strategy.trace.TraceStrategy;
 import io.fabric8.apmagent.utils.PropertyUtils;
+import io.fabric8.insight.metrics.model.MetricsStorageService;
 import org.jolokia.jvmagent.JvmAgent;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -84,6 +93,28 @@ public class ApmAgent implements ApmAgentMBean, ApmConfigurationChangeListener {
         }
     }
 
+    /**
+     * Called from instrumented code on method entry.
+     *
+     * @param methodId - the id assigned to the method by {@link ApmAgentContext#registerMethod(String)}
+     */
+    public static void enterMethod(int methodId) {
+        if (INSTANCE.started.get()) {
+            INSTANCE.apmAgentContext.enterMethod(methodId);
+        }
+    }
+
+    /**
+     * Called from instrumented code on method exit (return or throw).
+     *
+     * @param methodId - the id assigned to the method by {@link ApmAgentContext#registerMethod(String)}
+     */
+    public static void exitMethod(int methodId) {
+        if (INSTANCE.started.get()) {
+            INSTANCE.apmAgentContext.exitMethod(methodId);
+        }
+    }
+
     public static void enterMethod(String methodName) {
         if (INSTANCE.started.get()) {
             INSTANCE.apmAgentContext.enterMethod(Thread.currentThread(), methodName, false);
@@ -110,6 +141,67 @@ public class ApmAgent implements ApmAgentMBean, ApmConfigurationChangeListener {
         return Collections.EMPTY_LIST;
     }
 
+    public List<String> getGovernedMethods() {
+        if (isInitialized()) {
+            return apmAgentContext.getGovernedMethods();
+        }
+        return Collections.EMPTY_LIST;
+    }
+
+    public long getThreadMetricsEvictions() {
+        return apmAgentContext.getThreadMetricsEvictions();
+    }
+
+    public long getMethodMetricsEvictions() {
+        return apmAgentContext.getMethodMetricsEvictions();
+    }
+
+    public List<String> getArchivedMethodMetrics() {
+        List<String> result = new ArrayList<>();
+        if (isInitialized()) {
+            for (ArchivedMethodMetrics archivedMethodMetrics : apmAgentContext.getArchivedMethodMetrics()) {
+                result.add(archivedMethodMetrics.toString());
+            }
+        }
+        return result;
+    }
+
+    public List<String> getSlowCalls() {
+        return toStrings(isInitialized() ? apmAgentContext.getSlowCalls() : Collections.<SlowCall>emptyList());
+    }
+
+    public List<String> getSlowCalls(String methodName) {
+        return toStrings(isInitialized() ? apmAgentContext.getSlowCalls(methodName) : Collections.<SlowCall>emptyList());
+    }
+
+    private static List<String> toStrings(List<SlowCall> slowCalls) {
+        List<String> result = new ArrayList<>(slowCalls.size());
+        for (SlowCall slowCall : slowCalls) {
+            result.add(slowCall.toString());
+        }
+        return result;
+    }
+
+    public String getCollapsedStacks() {
+        Strategy s = this.strategy;
+        if (isInitialized() && s != null) {
+            return s.getCollapsedStacks();
+        }
+        return "";
+    }
+
+    public String dumpCollapsedStacks(String fileName) throws IOException {
+        File directory = new File(configuration.getDumpDirectory()).getCanonicalFile();
+        File file = new File(directory, fileName).getCanonicalFile();
+        if (!directory.equals(file.getParentFile())) {
+            throw new IllegalArgumentException("The file " + fileName + " is not in the dump directory " + directory);
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+            writer.write(getCollapsedStacks());
+        }
+        return file.getAbsolutePath();
+    }
+
     public List<ThreadMetrics> getThreadMetrics() {
         if (isInitialized()) {
             return apmAgentContext.getThreadMetrics();
@@ -125,6 +217,22 @@ public class ApmAgent implements ApmAgentMBean, ApmConfigurationChangeListener {
         return configuration;
     }
 
+    public Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    public ApmAgentContext getApmAgentContext() {
+        return apmAgentContext;
+    }
+
+    /**
+     * Sets the insight storage the metrics are exported to, when the metricsExport option is set.
+     * If none is set, one is looked up with the {@link java.util.ServiceLoader}, or in the OSGi service registry
+     */
+    public void setMetricsStorageService(MetricsStorageService metricsStorageService) {
+        apmAgentContext.getMetricsExporter().setStorageService(metricsStorageService);
+    }
+
     /**
      * @param instrumentation
      * @param args
@@ -15,6 +15,7 @@
  */
 package io.fabric8.apmagent;
 
+import java.io.IOException;
 import java.util.List;
 
 public interface ApmAgentMBean {
@@ -34,4 +35,48 @@ public interface ApmAgentMBean {
      * @return List of all <className>@<methodName>
      */
     List<String> getAllMethods();
+
+    /**
+     * @return List of <className>@<methodName> no longer instrumented by the overhead governor
+     */
+    List<String> getGovernedMethods();
+
+    /**
+     * @return the number of threads whose metrics were evicted to stay within maxThreadMetrics
+     */
+    long getThreadMetricsEvictions();
+
+    /**
+     * @return the number of methods whose metrics were evicted to stay within maxMethodMetrics
+     */
+    long getMethodMetricsEvictions();
+
+    /**
+     * @return summaries of the metrics of evicted methods
+     */
+    List<String> getArchivedMethodMetrics();
+
+    /**
+     * @return the recent calls of all methods that were slower than the slow call percentile of the method, the slowest first
+     */
+    List<String> getSlowCalls();
+
+    /**
+     * @param methodName - the fully qualified method name
+     * @return the recent calls of the method that were slower than its slow call percentile, the latest first
+     */
+    List<String> getSlowCalls(String methodName);
+
+    /**
+     * @return the aggregated call paths in the collapsed stack format used by flame graph tools
+     */
+    String getCollapsedStacks();
+
+    /**
+     * Writes the aggregated call paths in collapsed stack format to a file in the dump directory
+     *
+     * @param fileName - the name of the file to write to, within the dump directory
+     * @return the absolute path of the file written
+     */
+    String dumpCollapsedStacks(String fileName) throws IOException;
 }
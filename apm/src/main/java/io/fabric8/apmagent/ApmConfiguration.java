@@ -57,7 +57,20 @@ public class ApmConfiguration implements ApmConfigurationMBean {
     private boolean methodMetricDepthChanged = false;
     private boolean threadMetricDepthChanged = false;
     private boolean strategyChanged = false;
+    private boolean overheadGovernorChanged = false;
     private int samplingInterval = 1;
+    private int samplingThreadCount = 0;
+    private int samplingStackDepth = 64;
+    private boolean overheadGovernor = false;
+    private int overheadProbeCostMultiple = 10;
+    private double overheadCpuBudget = 2.0;
+    private int maxThreadMetrics = 256;
+    private int maxMethodMetrics = 4096;
+    private boolean metricsExport = false;
+    private int metricsExportPeriod = 10;
+    private double slowCallPercentile = 99.0;
+    private int slowCallBufferSize = 16;
+    private String dumpDirectory = System.getProperty("java.io.tmpdir");
     private List<FilterItem> whiteFilterList = new ArrayList<>();
     private List<FilterItem> blackFilterList = new ArrayList<>();
     private List<ApmConfigurationChangeListener> changeListeners = new CopyOnWriteArrayList<>();
@@ -244,6 +257,10 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         return filterChanged;
     }
 
+    public boolean isOverheadGovernorChanged() {
+        return overheadGovernorChanged;
+    }
+
     public int getSamplingInterval() {
         return samplingInterval;
     }
@@ -252,6 +269,106 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         this.samplingInterval = samplingInterval;
     }
 
+    public int getSamplingThreadCount() {
+        return samplingThreadCount;
+    }
+
+    public void setSamplingThreadCount(int samplingThreadCount) {
+        this.samplingThreadCount = samplingThreadCount;
+    }
+
+    public int getSamplingStackDepth() {
+        return samplingStackDepth;
+    }
+
+    public void setSamplingStackDepth(int samplingStackDepth) {
+        this.samplingStackDepth = samplingStackDepth;
+    }
+
+    public boolean isOverheadGovernor() {
+        return overheadGovernor;
+    }
+
+    public void setOverheadGovernor(boolean overheadGovernor) {
+        if (this.overheadGovernor != overheadGovernor) {
+            this.overheadGovernor = overheadGovernor;
+            this.overheadGovernorChanged = true;
+            fireConfigurationChanged();
+        }
+    }
+
+    public int getOverheadProbeCostMultiple() {
+        return overheadProbeCostMultiple;
+    }
+
+    public void setOverheadProbeCostMultiple(int overheadProbeCostMultiple) {
+        this.overheadProbeCostMultiple = overheadProbeCostMultiple;
+    }
+
+    public double getOverheadCpuBudget() {
+        return overheadCpuBudget;
+    }
+
+    public void setOverheadCpuBudget(double overheadCpuBudget) {
+        this.overheadCpuBudget = overheadCpuBudget;
+    }
+
+    public int getMaxThreadMetrics() {
+        return maxThreadMetrics;
+    }
+
+    public void setMaxThreadMetrics(int maxThreadMetrics) {
+        this.maxThreadMetrics = maxThreadMetrics;
+    }
+
+    public int getMaxMethodMetrics() {
+        return maxMethodMetrics;
+    }
+
+    public void setMaxMethodMetrics(int maxMethodMetrics) {
+        this.maxMethodMetrics = maxMethodMetrics;
+    }
+
+    public boolean isMetricsExport() {
+        return metricsExport;
+    }
+
+    public void setMetricsExport(boolean metricsExport) {
+        this.metricsExport = metricsExport;
+    }
+
+    public int getMetricsExportPeriod() {
+        return metricsExportPeriod;
+    }
+
+    public void setMetricsExportPeriod(int metricsExportPeriod) {
+        this.metricsExportPeriod = metricsExportPeriod;
+    }
+
+    public double getSlowCallPercentile() {
+        return slowCallPercentile;
+    }
+
+    public void setSlowCallPercentile(double slowCallPercentile) {
+        this.slowCallPercentile = slowCallPercentile;
+    }
+
+    public int getSlowCallBufferSize() {
+        return slowCallBufferSize;
+    }
+
+    public void setSlowCallBufferSize(int slowCallBufferSize) {
+        this.slowCallBufferSize = slowCallBufferSize;
+    }
+
+    public String getDumpDirectory() {
+        return dumpDirectory;
+    }
+
+    public void setDumpDirectory(String dumpDirectory) {
+        this.dumpDirectory = dumpDirectory;
+    }
+
     public String getStrategy() {
         return strategy.name();
     }
@@ -343,6 +460,7 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         methodMetricDepthChanged = false;
         threadMetricDepthChanged = false;
         strategyChanged = false;
+        overheadGovernorChanged = false;
     }
 
     private void setProperty(String name, Object value) {
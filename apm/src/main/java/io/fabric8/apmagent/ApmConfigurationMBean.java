@@ -48,6 +48,89 @@ public interface ApmConfigurationMBean {
 
     void setMethodMetricDepth(int methodMetricDepth);
 
+    /**
+     * @return the maximum number of threads sampled per interval by the sampling strategy,
+     * or 0 to sample every thread in the JVM each interval
+     */
+    int getSamplingThreadCount();
+
+    void setSamplingThreadCount(int samplingThreadCount);
+
+    int getSamplingStackDepth();
+
+    void setSamplingStackDepth(int samplingStackDepth);
+
+    /**
+     * @return true if the trace strategy should stop instrumenting methods that are too cheap
+     * for their instrumentation, or that push the instrumentation over its cpu budget
+     */
+    boolean isOverheadGovernor();
+
+    void setOverheadGovernor(boolean overheadGovernor);
+
+    /**
+     * @return the multiple of the instrumentation cost a method's self time must reach to stay instrumented
+     */
+    int getOverheadProbeCostMultiple();
+
+    void setOverheadProbeCostMultiple(int overheadProbeCostMultiple);
+
+    /**
+     * @return the maximum percentage of the process cpu time the instrumentation may use
+     */
+    double getOverheadCpuBudget();
+
+    void setOverheadCpuBudget(double overheadCpuBudget);
+
+    /**
+     * @return the maximum number of threads metrics are kept for, or 0 for no limit
+     */
+    int getMaxThreadMetrics();
+
+    void setMaxThreadMetrics(int maxThreadMetrics);
+
+    /**
+     * @return the maximum number of methods metrics are kept for, or 0 for no limit
+     */
+    int getMaxMethodMetrics();
+
+    void setMaxMethodMetrics(int maxMethodMetrics);
+
+    /**
+     * @return true if the metrics are pushed to the insight MetricsStorageService
+     */
+    boolean isMetricsExport();
+
+    void setMetricsExport(boolean metricsExport);
+
+    /**
+     * @return the number of seconds between exports of the metrics
+     */
+    int getMetricsExportPeriod();
+
+    void setMetricsExportPeriod(int metricsExportPeriod);
+
+    /**
+     * @return the percentile of a method's latency above which its calls are recorded as slow calls, or 0 for none
+     */
+    double getSlowCallPercentile();
+
+    void setSlowCallPercentile(double slowCallPercentile);
+
+    /**
+     * @return the number of recent slow calls kept for each method, or 0 for none
+     */
+    int getSlowCallBufferSize();
+
+    void setSlowCallBufferSize(int slowCallBufferSize);
+
+    /**
+     * @return the directory that dumps are written to
+     */
+    String getDumpDirectory();
+
+    void setDumpDirectory(String dumpDirectory);
+
     String getStrategy();
 
     void setStrategy(String strategy);
@@ -23,4 +23,9 @@ public interface Strategy extends ApmConfigurationChangeListener {
     void stop() throws Exception;
 
     void shutDown() throws Exception;
+
+    /**
+     * @return the aggregated call paths recorded by this strategy, in collapsed stack format
+     */
+    String getCollapsedStacks();
 }
@@ -30,27 +30,51 @@ import javax.management.MBeanServer;
 import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectInstance;
 import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ApmAgentContext {
     private static final Logger LOG = LoggerFactory.getLogger(ApmAgent.class);
     private final String DEFAULT_DOMAIN = "io.fabric8.apmagent";
-    private final long HOUSE_KEEPING_TIME = TimeUnit.SECONDS.toMillis(2);
+    static final long HOUSE_KEEPING_TIME = TimeUnit.SECONDS.toMillis(2);
+    //threads that are still running are only evicted once they have been idle for this long
+    static final long THREAD_IDLE_TIME = TimeUnit.MINUTES.toMillis(1);
+    private static final int INITIAL_METHOD_CAPACITY = 256;
+    private static final int MAX_CALL_PATHS = 1 << 16;
+    private static final int MIN_SLOW_CALL_SAMPLES = 100;
     private final ConcurrentMap<String, ClassInfo> allMethods = new ConcurrentHashMap<>();
     private AtomicBoolean initialized = new AtomicBoolean();
     private AtomicBoolean started = new AtomicBoolean();
     private ConcurrentMap<Thread, ThreadMetrics> threadMetricsMap = new ConcurrentHashMap<>();
-    private ConcurrentMap<String, MethodMetrics> methodMetricsMap = new ConcurrentHashMap<>();
+    private volatile ThreadLocal<ThreadMetrics> currentThreadMetrics = new ThreadLocal<>();
+    private final ConcurrentMap<String, Integer> methodIdMap = new ConcurrentHashMap<>();
+    private final Object methodRegistryLock = new Object();
+    private volatile String[] methodNames = new String[INITIAL_METHOD_CAPACITY];
+    private volatile int methodCount;
+    private volatile MethodMetrics[] methodMetrics = new MethodMetrics[INITIAL_METHOD_CAPACITY];
+    //tombstones of the evicted methods, which aren't tracked again until there is room for them
+    private volatile boolean[] evictedMethods = new boolean[INITIAL_METHOD_CAPACITY];
+    private int liveMethodMetrics;
+    private final CallTree deadThreadsCallTree = new CallTree(MAX_CALL_PATHS);
+    private final ConcurrentMap<String, String> governedMethods = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, ArchivedMethodMetrics> archivedMethodMetrics = new ConcurrentHashMap<>();
+    private final AtomicLong threadMetricsEvictions = new AtomicLong();
+    private final AtomicLong methodMetricsEvictions = new AtomicLong();
     private ConcurrentMap<Object, ObjectName> objectNameMap = new ConcurrentHashMap<>();
     private MBeanServer mBeanServer;
     private JolokiaServer jolokiaServer;
@@ -59,6 +83,7 @@ public class ApmAgentContext {
     private ObjectName configurationObjectName;
     private final ApmConfiguration configuration;
     private final MonitoredMethodMetrics monitoredMethodMetrics;
+    private final InsightMetricsExporter metricsExporter;
     private AtomicBoolean doHouseKeeping = new AtomicBoolean();
     private Thread backgroundThread;
     private boolean monitorByDefault = true;
@@ -68,43 +93,198 @@ public class ApmAgentContext {
         this.configuration = agent.getConfiguration();
         this.monitoredMethodMetrics = new MonitoredMethodMetrics(this);
         this.monitoredMethodMetrics.setMonitorSize(configuration.getMethodMetricDepth());
+        this.metricsExporter = new InsightMetricsExporter(this, configuration);
     }
 
-    public void enterMethod(Thread currentThread, String fullMethodName, boolean alwaysActive) {
-        if (isInitialized()) {
-            ThreadMetrics threadMetrics = threadMetricsMap.get(currentThread);
-            if (threadMetrics == null) {
-                threadMetrics = new ThreadMetrics(this, currentThread);
-                threadMetricsMap.put(currentThread, threadMetrics);
+    /**
+     * Registers a fully qualified method name and returns its id. Ids are dense,
+     * start at zero and stay the same for the lifetime of the agent, as they are
+     * compiled into the instrumented byte code.
+     *
+     * @param fullMethodName - the fully qualified method name
+     * @return the method id
+     */
+    public int registerMethod(String fullMethodName) {
+        Integer id = methodIdMap.get(fullMethodName);
+        if (id == null) {
+            synchronized (methodRegistryLock) {
+                id = methodIdMap.get(fullMethodName);
+                if (id == null) {
+                    id = methodCount;
+                    String[] names = methodNames;
+                    if (id >= names.length) {
+                        names = Arrays.copyOf(names, names.length * 2);
+                        methodMetrics = Arrays.copyOf(methodMetrics, names.length);
+                        evictedMethods = Arrays.copyOf(evictedMethods, names.length);
+                    }
+                    names[id] = fullMethodName;
+                    methodNames = names;
+                    methodIdMap.put(fullMethodName, id);
+                    methodCount = id + 1;
+                }
             }
-            threadMetrics.enter(fullMethodName, alwaysActive);
+        }
+        return id;
+    }
 
-            MethodMetrics methodMetrics = methodMetricsMap.get(fullMethodName);
-            if (methodMetrics == null) {
-                methodMetrics = new MethodMetrics(fullMethodName);
-                methodMetrics.setActive(isMonitorByDefault());
-                methodMetricsMap.putIfAbsent(fullMethodName, methodMetrics);
+    /**
+     * Removes a method that was only registered for the agent's own use, and everything
+     * recorded for it. The id of the method is not reused.
+     */
+    public void unregisterMethod(int methodId) {
+        synchronized (methodRegistryLock) {
+            String[] names = methodNames;
+            if (methodId < 0 || methodId >= names.length || names[methodId] == null) {
+                return;
             }
+            methodIdMap.remove(names[methodId]);
+            names[methodId] = null;
+            clearMethodMetrics(methodId);
+        }
+        archivedMethodMetrics.remove(methodId);
+        for (ThreadMetrics threadMetrics : threadMetricsMap.values()) {
+            threadMetrics.remove(methodId);
+        }
+    }
+
+    /**
+     * Drops the metrics of a thread that only ran the agent's own code, without
+     * adding its call paths to the call tree
+     */
+    public void discardThreadMetrics(Thread thread) {
+        ThreadMetrics threadMetrics = threadMetricsMap.remove(thread);
+        if (threadMetrics != null) {
+            threadMetrics.setEvicted();
+            threadMetrics.destroy();
+        }
+    }
+
+    /**
+     * @param fullMethodName - the fully qualified method name
+     * @return the id of the method, or -1 if it has never been registered
+     */
+    public int getMethodId(String fullMethodName) {
+        Integer id = methodIdMap.get(fullMethodName);
+        return id != null ? id : -1;
+    }
+
+    public String getMethodName(int methodId) {
+        String[] names = methodNames;
+        return methodId >= 0 && methodId < names.length ? names[methodId] : null;
+    }
+
+    public void enterMethod(int methodId) {
+        if (isInitialized()) {
+            enterMethod(getCurrentThreadMetrics(), methodId, false);
         }
+    }
 
+    public void exitMethod(int methodId) {
+        if (isInitialized()) {
+            exitMethod(getCurrentThreadMetrics(), methodId, false);
+        }
+    }
+
+    public void enterMethod(Thread currentThread, String fullMethodName, boolean alwaysActive) {
+        if (isInitialized()) {
+            enterMethod(getThreadMetrics(currentThread), registerMethod(fullMethodName), alwaysActive);
+        }
     }
 
     public void exitMethod(Thread currentThread, String methodName, boolean alwaysActive) {
         if (isInitialized()) {
-            ThreadMetrics threadMetrics = threadMetricsMap.get(currentThread);
+            int methodId = getMethodId(methodName);
+            if (methodId >= 0) {
+                exitMethod(getThreadMetrics(currentThread), methodId, alwaysActive);
+            }
+        }
+    }
+
+    private void enterMethod(ThreadMetrics threadMetrics, int methodId, boolean alwaysActive) {
+        //an evicted method may be tracked again first, if there is room for it
+        getOrCreateMethodMetrics(methodId);
+        threadMetrics.enter(methodId, alwaysActive);
+    }
+
+    private void exitMethod(ThreadMetrics threadMetrics, int methodId, boolean alwaysActive) {
+        long elapsed = threadMetrics.exit(methodId, alwaysActive);
+        if (elapsed >= 0) {
+            MethodMetrics[] array = methodMetrics;
+            if (methodId < array.length) {
+                MethodMetrics mm = array[methodId];
+                if (mm != null) {
+                    mm.update(elapsed);
+                }
+            }
+        }
+        doHouseKeeping();
+    }
 
-            long elapsed = -1;
-            if (threadMetrics != null) {
-                elapsed = threadMetrics.exit(methodName, alwaysActive);
+    private ThreadMetrics getCurrentThreadMetrics() {
+        ThreadLocal<ThreadMetrics> threadLocal = currentThreadMetrics;
+        ThreadMetrics threadMetrics = threadLocal.get();
+        if (threadMetrics == null || threadMetrics.isEvicted()) {
+            threadMetrics = getThreadMetrics(Thread.currentThread());
+            threadLocal.set(threadMetrics);
+        }
+        return threadMetrics;
+    }
+
+    private ThreadMetrics getThreadMetrics(Thread thread) {
+        ThreadMetrics threadMetrics = threadMetricsMap.get(thread);
+        if (threadMetrics == null) {
+            threadMetrics = new ThreadMetrics(this, thread);
+            ThreadMetrics existing = threadMetricsMap.putIfAbsent(thread, threadMetrics);
+            if (existing != null) {
+                threadMetrics = existing;
             }
+        }
+        return threadMetrics;
+    }
 
-            if (elapsed >= 0) {
-                MethodMetrics methodMetrics = methodMetricsMap.get(methodName);
-                if (methodMetrics != null) {
-                    methodMetrics.update(elapsed);
+    /**
+     * @return the metrics of the method, or null if it was evicted and there is no room to track it again
+     */
+    private MethodMetrics getOrCreateMethodMetrics(int methodId) {
+        MethodMetrics[] array = methodMetrics;
+        MethodMetrics result = methodId < array.length ? array[methodId] : null;
+        if (result == null && (!isMethodEvicted(methodId) || hasRoomForMethodMetrics())) {
+            synchronized (methodRegistryLock) {
+                array = methodMetrics;
+                result = array[methodId];
+                if (result == null && (!evictedMethods[methodId] || hasRoomForMethodMetrics())) {
+                    result = new MethodMetrics(methodNames[methodId]);
+                    result.setActive(isMonitorByDefault());
+                    array[methodId] = result;
+                    evictedMethods[methodId] = false;
+                    liveMethodMetrics++;
+                    archivedMethodMetrics.remove(methodId);
                 }
             }
-            doHouseKeeping();
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the method was evicted, and isn't tracked until there is room for it again
+     */
+    boolean isMethodEvicted(int methodId) {
+        boolean[] array = evictedMethods;
+        return methodId < array.length && array[methodId];
+    }
+
+    private boolean hasRoomForMethodMetrics() {
+        int max = configuration.getMaxMethodMetrics();
+        return max <= 0 || liveMethodMetrics < max;
+    }
+
+    /**
+     * Must be called holding the methodRegistryLock
+     */
+    private void clearMethodMetrics(int methodId) {
+        if (methodMetrics[methodId] != null) {
+            methodMetrics[methodId] = null;
+            liveMethodMetrics--;
         }
     }
 
@@ -131,6 +311,7 @@ public class ApmAgentContext {
                             try {
                                 Thread.sleep(HOUSE_KEEPING_TIME);
                                 doHouseKeeping.set(true);
+                                metricsExporter.exportIfDue(System.currentTimeMillis());
                             } catch (Throwable e) {
                             }
                         }
@@ -148,14 +329,22 @@ public class ApmAgentContext {
         if (doHouseKeeping.compareAndSet(true, false)) {
             try {
                 List<ThreadMetrics> threadMetricsList = getThreadMetrics();
+                long now = System.currentTimeMillis();
                 for (ThreadMetrics tm : threadMetricsList) {
+                    tm.drainSlowCalls();
                     if (tm.isDead()) {
-                        tm.destroy();
-                        threadMetricsMap.remove(tm.getThread());
+                        removeThreadMetrics(tm);
+                    } else {
+                        tm.updateLastActiveTime(now);
                     }
                 }
-                monitoredMethodMetrics.calculateMethodMetrics(getMethodMetrics());
-                for (ThreadMetrics threadMetrics : threadMetricsList) {
+                evictThreadMetrics(now);
+                List<? extends MethodMetrics> methodMetricsList = evictMethodMetrics(getMethodMetrics());
+                for (MethodMetrics mm : methodMetricsList) {
+                    mm.updateSlowCallThreshold(configuration.getSlowCallPercentile(), MIN_SLOW_CALL_SAMPLES);
+                }
+                monitoredMethodMetrics.calculateMethodMetrics(methodMetricsList);
+                for (ThreadMetrics threadMetrics : getThreadMetrics()) {
                     threadMetrics.calculateMethodMetrics();
                 }
             } catch (Throwable e) {
@@ -164,14 +353,153 @@ public class ApmAgentContext {
         }
     }
 
+    /**
+     * Evicts the threads that have been idle the longest - and of those, the ones
+     * that used the least cpu - when there are more than the configured maximum.
+     * Threads that have been active recently are kept even if that exceeds the maximum,
+     * as they would only register again on their next call.
+     */
+    void evictThreadMetrics(long now) {
+        int max = configuration.getMaxThreadMetrics();
+        if (max > 0 && threadMetricsMap.size() > max) {
+            List<ThreadMetrics> list = getThreadMetrics();
+            //the list is sorted by cpu time, busiest first
+            Collections.reverse(list);
+            Collections.sort(list, new Comparator<ThreadMetrics>() {
+                @Override
+                public int compare(ThreadMetrics threadMetrics1, ThreadMetrics threadMetrics2) {
+                    return Long.compare(threadMetrics1.getLastActiveTime(), threadMetrics2.getLastActiveTime());
+                }
+            });
+            for (int i = 0; i < list.size() - max; i++) {
+                ThreadMetrics threadMetrics = list.get(i);
+                if (now - threadMetrics.getLastActiveTime() < THREAD_IDLE_TIME) {
+                    break;
+                }
+                threadMetrics.setEvicted();
+                removeThreadMetrics(threadMetrics);
+                threadMetricsEvictions.incrementAndGet();
+            }
+        }
+    }
+
+    private void removeThreadMetrics(ThreadMetrics threadMetrics) {
+        synchronized (deadThreadsCallTree) {
+            threadMetrics.mergeCallTree(deadThreadsCallTree);
+        }
+        threadMetrics.destroy();
+        threadMetricsMap.remove(threadMetrics.getThread());
+    }
+
+    /**
+     * Evicts the methods with the least load when there are more than the configured maximum,
+     * down to a tenth below it - so that evicted methods can be tracked again, and stay
+     * if their load has grown above the load of the others
+     *
+     * @param list - the method metrics sorted by load, highest first
+     * @return the method metrics that were kept
+     */
+    List<? extends MethodMetrics> evictMethodMetrics(List<? extends MethodMetrics> list) {
+        int max = configuration.getMaxMethodMetrics();
+        if (max > 0 && list.size() > max) {
+            int keep = max - max / 10;
+            for (MethodMetrics mm : list.subList(keep, list.size())) {
+                int methodId = getMethodId(mm.getName());
+                archivedMethodMetrics.put(methodId, new ArchivedMethodMetrics(mm));
+                synchronized (methodRegistryLock) {
+                    if (methodMetrics[methodId] == mm) {
+                        clearMethodMetrics(methodId);
+                        evictedMethods[methodId] = true;
+                    }
+                }
+                for (ThreadMetrics threadMetrics : threadMetricsMap.values()) {
+                    threadMetrics.remove(methodId);
+                }
+                methodMetricsEvictions.incrementAndGet();
+            }
+            trimArchivedMethodMetrics(max);
+            return list.subList(0, keep);
+        }
+        return list;
+    }
+
+    /**
+     * Drops the oldest archived method metrics when there are more than the given maximum
+     */
+    private void trimArchivedMethodMetrics(int max) {
+        int excess = archivedMethodMetrics.size() - max;
+        if (excess > 0) {
+            List<Map.Entry<Integer, ArchivedMethodMetrics>> entries = new ArrayList<>(archivedMethodMetrics.entrySet());
+            Collections.sort(entries, new Comparator<Map.Entry<Integer, ArchivedMethodMetrics>>() {
+                @Override
+                public int compare(Map.Entry<Integer, ArchivedMethodMetrics> entry1, Map.Entry<Integer, ArchivedMethodMetrics> entry2) {
+                    return Long.compare(entry1.getValue().getEvictedTime(), entry2.getValue().getEvictedTime());
+                }
+            });
+            for (Map.Entry<Integer, ArchivedMethodMetrics> entry : entries.subList(0, Math.min(excess, entries.size()))) {
+                archivedMethodMetrics.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    public long getThreadMetricsEvictions() {
+        return threadMetricsEvictions.get();
+    }
+
+    public long getMethodMetricsEvictions() {
+        return methodMetricsEvictions.get();
+    }
+
+    public List<ArchivedMethodMetrics> getArchivedMethodMetrics() {
+        return new ArrayList<>(archivedMethodMetrics.values());
+    }
+
+    /**
+     * @return the recent slow calls of all methods, the slowest first
+     */
+    public List<SlowCall> getSlowCalls() {
+        List<SlowCall> result = new ArrayList<>();
+        for (MethodMetrics mm : methodMetrics) {
+            if (mm != null) {
+                result.addAll(mm.getSlowCalls());
+            }
+        }
+        Collections.sort(result, new Comparator<SlowCall>() {
+            @Override
+            public int compare(SlowCall slowCall1, SlowCall slowCall2) {
+                return Long.compare(slowCall2.getElapsed(), slowCall1.getElapsed());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return the recent slow calls of a method, the latest first
+     */
+    public List<SlowCall> getSlowCalls(String fullMethodName) {
+        int methodId = getMethodId(fullMethodName);
+        MethodMetrics mm = methodId >= 0 ? getMethodMetrics(methodId) : null;
+        return mm != null ? mm.getSlowCalls() : Collections.<SlowCall>emptyList();
+    }
+
     public void stop() {
         if (initialized.get() && started.compareAndSet(true, false)) {
             for (ObjectName objectName : objectNameMap.values()) {
                 unregisterMBean(objectName);
             }
             objectNameMap.clear();
-            methodMetricsMap.clear();
+            synchronized (methodRegistryLock) {
+                methodMetrics = new MethodMetrics[methodMetrics.length];
+                evictedMethods = new boolean[evictedMethods.length];
+                liveMethodMetrics = 0;
+            }
             threadMetricsMap.clear();
+            currentThreadMetrics = new ThreadLocal<>();
+            synchronized (deadThreadsCallTree) {
+                deadThreadsCallTree.clear();
+            }
+            archivedMethodMetrics.clear();
+            metricsExporter.reset();
         }
     }
 
@@ -237,7 +565,109 @@ public class ApmAgentContext {
     }
 
     public List<? extends MethodMetrics> getMethodMetrics() {
-        return MethodMetrics.sortedMetrics(methodMetricsMap.values());
+        List<MethodMetrics> list = new ArrayList<>();
+        for (MethodMetrics mm : methodMetrics) {
+            if (mm != null) {
+                list.add(mm);
+            }
+        }
+        return MethodMetrics.sortedMetrics(list);
+    }
+
+    /**
+     * @return the call paths recorded by all threads, in collapsed stack format,
+     * with the exclusive time in nanoseconds of each path
+     */
+    public String getCollapsedStacks() {
+        CallTree callTree = new CallTree(MAX_CALL_PATHS);
+        synchronized (deadThreadsCallTree) {
+            callTree.merge(deadThreadsCallTree);
+        }
+        for (ThreadMetrics threadMetrics : threadMetricsMap.values()) {
+            threadMetrics.mergeCallTree(callTree);
+        }
+        StringBuilder result = new StringBuilder();
+        try {
+            callTree.writeCollapsedStacks(result, new CallTree.FrameNames() {
+                @Override
+                public String getName(int frame) {
+                    return getMethodName(frame);
+                }
+            });
+        } catch (IOException e) {
+            //cannot happen with a StringBuilder
+        }
+        return result.toString();
+    }
+
+    MethodMetrics getMethodMetrics(int methodId) {
+        MethodMetrics[] array = methodMetrics;
+        return methodId < array.length ? array[methodId] : null;
+    }
+
+    Instrumentation getInstrumentation() {
+        return apmAgent.getInstrumentation();
+    }
+
+    public InsightMetricsExporter getMetricsExporter() {
+        return metricsExporter;
+    }
+
+    /**
+     * @return the number of registered method ids
+     */
+    public int getMethodCount() {
+        return methodCount;
+    }
+
+    /**
+     * Sums the calls and self times of each method over all live threads, indexed by method id
+     */
+    public void collectMethodTimes(long[] calls, long[] selfTimes) {
+        for (ThreadMetrics threadMetrics : threadMetricsMap.values()) {
+            threadMetrics.addMethodTimes(calls, selfTimes);
+        }
+    }
+
+    public boolean isGoverned(String fullMethodName) {
+        return governedMethods.containsKey(fullMethodName);
+    }
+
+    /**
+     * Stops collecting metrics for a method, and marks it so that it is not instrumented
+     * the next time its class is transformed
+     */
+    public void governMethod(int methodId) {
+        String fullMethodName = getMethodName(methodId);
+        if (fullMethodName != null) {
+            String className = fullMethodName.substring(0, fullMethodName.indexOf('@'));
+            governedMethods.put(fullMethodName, className);
+            setActive(fullMethodName, false);
+        }
+    }
+
+    public List<String> getGovernedMethods() {
+        return new ArrayList<>(governedMethods.keySet());
+    }
+
+    /**
+     * @return the classes that need to be transformed again to instrument the methods that were governed
+     */
+    public List<ClassInfo> clearGovernedMethods() {
+        Set<String> classNames = new HashSet<>();
+        for (Map.Entry<String, String> entry : governedMethods.entrySet()) {
+            setActive(entry.getKey(), true);
+            classNames.add(entry.getValue());
+        }
+        governedMethods.clear();
+        List<ClassInfo> result = new ArrayList<>();
+        for (String className : classNames) {
+            ClassInfo classInfo = allMethods.get(className);
+            if (classInfo != null && classInfo.isCanTransform()) {
+                result.add(classInfo);
+            }
+        }
+        return result;
     }
 
     public boolean isInitialized() {
@@ -262,9 +692,12 @@ public class ApmAgentContext {
                 threadMetrics.setActive(fullMethodName, flag);
             }
 
-            MethodMetrics methodMetrics = methodMetricsMap.get(fullMethodName);
-            if (methodMetrics != null) {
-                methodMetrics.setActive(flag);
+            int methodId = getMethodId(fullMethodName);
+            if (methodId >= 0) {
+                MethodMetrics mm = methodMetrics[methodId];
+                if (mm != null) {
+                    mm.setActive(flag);
+                }
             }
         }
     }
@@ -284,6 +717,15 @@ public class ApmAgentContext {
                             break;
                         }
                     }
+                    if (!retransform) {
+                        //check to see if there are methods that are no longer worth instrumenting
+                        for (MethodDescription methodDescription : classInfo.getTransformedMethodDescriptions()) {
+                            if (isGoverned(methodDescription.getFullMethodName())) {
+                                retransform = true;
+                                break;
+                            }
+                        }
+                    }
                     if (!retransform) {
                         //check to see if there are methods that should now be audited but weren't
                         Set<String> allMethodNames = classInfo.getAllMethodNames();
@@ -317,6 +759,9 @@ public class ApmAgentContext {
         for (MethodDescription methodDescription : list) {
             if (!configuration.isAudit(classInfo.getClassName(), methodDescription.getMethodName())) {
                 remove(methodDescription);
+                classInfo.removeTransformedMethod(methodDescription.getMethodSignature());
+            } else if (isGoverned(methodDescription.getFullMethodName())) {
+                classInfo.removeTransformedMethod(methodDescription.getMethodSignature());
             }
         }
     }
@@ -341,7 +786,12 @@ public class ApmAgentContext {
     }
 
     private void remove(MethodDescription methodDescription) {
-        MethodMetrics methodMetrics = this.methodMetricsMap.remove(methodDescription.getFullMethodName());
+        int methodId = getMethodId(methodDescription.getFullMethodName());
+        if (methodId >= 0) {
+            synchronized (methodRegistryLock) {
+                clearMethodMetrics(methodId);
+            }
+        }
         for (ThreadMetrics threadMetrics : threadMetricsMap.values()) {
             threadMetrics.remove(methodDescription.getFullMethodName());
         }
@@ -0,0 +1,66 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+/**
+ * The compact form a {@link MethodMetrics} is archived in when it is evicted to bound
+ * the memory used by the agent - only the summary statistics are kept.
+ */
+public class ArchivedMethodMetrics {
+    private final String name;
+    private final long count;
+    private final double mean;
+    private final double max;
+    private final double ninetyNinthPercentile;
+    private final long evictedTime;
+
+    ArchivedMethodMetrics(MethodMetrics methodMetrics) {
+        this.name = methodMetrics.getName();
+        this.count = methodMetrics.getCount();
+        this.mean = methodMetrics.getMean();
+        this.max = methodMetrics.getMax();
+        this.ninetyNinthPercentile = methodMetrics.get99thPercentile();
+        this.evictedTime = System.currentTimeMillis();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double get99thPercentile() {
+        return ninetyNinthPercentile;
+    }
+
+    public long getEvictedTime() {
+        return evictedTime;
+    }
+
+    public String toString() {
+        return name + " count=" + count + " mean=" + mean + "ms p99=" + ninetyNinthPercentile + "ms max=" + max + "ms";
+    }
+}
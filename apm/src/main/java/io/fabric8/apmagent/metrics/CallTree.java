@@ -0,0 +1,267 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * An aggregated call tree, where every node is a call path identified by its
+ * parent node and an int frame id (e.g. a method id). Nodes are held in parallel
+ * primitive arrays and looked up through an open addressed table, so adding
+ * to an existing path does not allocate.
+ * <p/>
+ * Each node records a count, plus an inclusive and an exclusive value, whose
+ * meaning is up to the caller (e.g. samples, or nanoseconds).
+ * <p/>
+ * This class is not thread safe - callers must synchronize on the tree. The one
+ * exception is {@link #mergeConcurrently(CallTree)}, which copies a tree that is
+ * being modified by a single other thread without any locking.
+ */
+public class CallTree {
+    /**
+     * Resolves frame ids to the names used when exporting the tree
+     */
+    public interface FrameNames {
+        String getName(int frame);
+    }
+
+    public static final int ROOT = 0;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int maxNodes;
+    //odd while nodes are being added, so concurrent copies can detect it
+    private volatile int structureVersion;
+    private int size = 1;
+    private int[] frames = new int[INITIAL_CAPACITY];
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private long[] counts = new long[INITIAL_CAPACITY];
+    private long[] inclusive = new long[INITIAL_CAPACITY];
+    private long[] exclusive = new long[INITIAL_CAPACITY];
+    private long[] tableKeys = new long[INITIAL_CAPACITY * 2];
+    private int[] tableNodes = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * @param maxNodes - the maximum number of call paths to track. Once reached,
+     *                 new paths are attributed to their deepest known ancestor
+     */
+    public CallTree(int maxNodes) {
+        this.maxNodes = Math.max(2, maxNodes);
+        frames[ROOT] = -1;
+        parents[ROOT] = -1;
+    }
+
+    /**
+     * Finds, or creates, the node for the frame called from the parent node
+     *
+     * @return the child node, or the parent node if the tree is full
+     */
+    public int child(int parent, int frame) {
+        long key = key(parent, frame);
+        int mask = tableKeys.length - 1;
+        int index = hash(key) & mask;
+        while (tableNodes[index] != 0) {
+            if (tableKeys[index] == key) {
+                return tableNodes[index];
+            }
+            index = (index + 1) & mask;
+        }
+        if (size >= maxNodes) {
+            return parent;
+        }
+        structureVersion++;
+        int node = size++;
+        ensureCapacity(size);
+        frames[node] = frame;
+        parents[node] = parent;
+        counts[node] = 0;
+        inclusive[node] = 0;
+        exclusive[node] = 0;
+        tableKeys[index] = key;
+        tableNodes[index] = node;
+        if (size * 2 > tableKeys.length) {
+            rehash(tableKeys.length * 2);
+        }
+        structureVersion++;
+        return node;
+    }
+
+    public void add(int node, long count, long inclusiveValue, long exclusiveValue) {
+        counts[node] += count;
+        inclusive[node] += inclusiveValue;
+        exclusive[node] += exclusiveValue;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getFrame(int node) {
+        return frames[node];
+    }
+
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    public int getDepth(int node) {
+        int depth = 0;
+        for (int n = node; n != ROOT; n = parents[n]) {
+            depth++;
+        }
+        return depth;
+    }
+
+    public long getCount(int node) {
+        return counts[node];
+    }
+
+    public long getInclusive(int node) {
+        return inclusive[node];
+    }
+
+    public long getExclusive(int node) {
+        return exclusive[node];
+    }
+
+    /**
+     * Adds all the call paths of another tree to this one
+     */
+    public void merge(CallTree other) {
+        merge(other.size, other.frames, other.parents, other.counts, other.inclusive, other.exclusive);
+    }
+
+    /**
+     * Adds all the call paths of another tree to this one, while the other tree may be
+     * modified by the single thread that owns it. The copy is retried if nodes were added
+     * to the other tree while it was being taken, concurrent updates of the values of
+     * existing nodes may or may not be included.
+     */
+    public void mergeConcurrently(CallTree other) {
+        while (true) {
+            int version = other.structureVersion;
+            if ((version & 1) == 0) {
+                int otherSize = other.size;
+                int[] otherFrames = other.frames;
+                int[] otherParents = other.parents;
+                long[] otherCounts = other.counts;
+                long[] otherInclusive = other.inclusive;
+                long[] otherExclusive = other.exclusive;
+                if (otherSize <= otherFrames.length && otherSize <= otherParents.length && otherSize <= otherCounts.length
+                        && otherSize <= otherInclusive.length && otherSize <= otherExclusive.length) {
+                    int[] copyFrames = Arrays.copyOf(otherFrames, otherSize);
+                    int[] copyParents = Arrays.copyOf(otherParents, otherSize);
+                    long[] copyCounts = Arrays.copyOf(otherCounts, otherSize);
+                    long[] copyInclusive = Arrays.copyOf(otherInclusive, otherSize);
+                    long[] copyExclusive = Arrays.copyOf(otherExclusive, otherSize);
+                    if (other.structureVersion == version) {
+                        merge(otherSize, copyFrames, copyParents, copyCounts, copyInclusive, copyExclusive);
+                        return;
+                    }
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    private void merge(int otherSize, int[] otherFrames, int[] otherParents,
+                       long[] otherCounts, long[] otherInclusive, long[] otherExclusive) {
+        int[] mapping = new int[otherSize];
+        mapping[ROOT] = ROOT;
+        add(ROOT, otherCounts[ROOT], otherInclusive[ROOT], otherExclusive[ROOT]);
+        //nodes are always created after their parent, so the parent is already mapped
+        for (int i = 1; i < otherSize; i++) {
+            mapping[i] = child(mapping[otherParents[i]], otherFrames[i]);
+            add(mapping[i], otherCounts[i], otherInclusive[i], otherExclusive[i]);
+        }
+    }
+
+    /**
+     * Writes the tree in the collapsed stack format used by flame graph tools: one line
+     * per call path with an exclusive value, made up of the frame names from the root
+     * separated by ';', followed by a space and the exclusive value.
+     */
+    public void writeCollapsedStacks(Appendable out, FrameNames frameNames) throws IOException {
+        int[] path = new int[16];
+        for (int node = 1; node < size; node++) {
+            if (exclusive[node] > 0) {
+                int depth = 0;
+                for (int n = node; n != ROOT; n = parents[n]) {
+                    if (depth == path.length) {
+                        path = Arrays.copyOf(path, path.length * 2);
+                    }
+                    path[depth++] = frames[n];
+                }
+                for (int i = depth - 1; i >= 0; i--) {
+                    String name = frameNames.getName(path[i]);
+                    out.append(name != null ? name : "unknown");
+                    if (i > 0) {
+                        out.append(';');
+                    }
+                }
+                out.append(' ').append(Long.toString(exclusive[node])).append('\n');
+            }
+        }
+    }
+
+    public void clear() {
+        structureVersion++;
+        size = 1;
+        counts[ROOT] = 0;
+        inclusive[ROOT] = 0;
+        exclusive[ROOT] = 0;
+        Arrays.fill(tableNodes, 0);
+        structureVersion++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > frames.length) {
+            int newLength = Math.min(Math.max(frames.length * 2, capacity), maxNodes);
+            frames = Arrays.copyOf(frames, newLength);
+            parents = Arrays.copyOf(parents, newLength);
+            counts = Arrays.copyOf(counts, newLength);
+            inclusive = Arrays.copyOf(inclusive, newLength);
+            exclusive = Arrays.copyOf(exclusive, newLength);
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = tableKeys;
+        int[] oldNodes = tableNodes;
+        tableKeys = new long[capacity];
+        tableNodes = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldNodes[i] != 0) {
+                int index = hash(oldKeys[i]) & mask;
+                while (tableNodes[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                tableKeys[index] = oldKeys[i];
+                tableNodes[index] = oldNodes[i];
+            }
+        }
+    }
+
+    private static long key(int parent, int frame) {
+        return ((long) parent << 32) | (frame & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,247 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import io.fabric8.apmagent.ApmConfiguration;
+import io.fabric8.insight.metrics.model.MBeanAttrResult;
+import io.fabric8.insight.metrics.model.MBeanAttrs;
+import io.fabric8.insight.metrics.model.MBeanAttrsResult;
+import io.fabric8.insight.metrics.model.MetricsStorageService;
+import io.fabric8.insight.metrics.model.Query;
+import io.fabric8.insight.metrics.model.QueryResult;
+import io.fabric8.insight.metrics.model.Request;
+import io.fabric8.insight.metrics.model.Result;
+import io.fabric8.insight.metrics.model.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes the method and thread metrics to an insight {@link MetricsStorageService}, as one
+ * {@link QueryResult} per export, instead of them being polled MBean by MBean.
+ * Only the methods and threads that have been active since the last export are sent,
+ * with their call count and cpu time as deltas.
+ */
+public class InsightMetricsExporter {
+    public static final String TYPE = "apm";
+    private static final Logger LOG = LoggerFactory.getLogger(InsightMetricsExporter.class);
+    private static final String DOMAIN = "io.fabric8.apmagent";
+    private static final String METHODS = "methods";
+    private static final String THREADS = "threads";
+    private final ApmAgentContext apmAgentContext;
+    private final ApmConfiguration configuration;
+    private final Server server;
+    private final MBeanAttrs methodsRequest;
+    private final MBeanAttrs threadsRequest;
+    private final Query query;
+    private volatile MetricsStorageService storageService;
+    private OsgiMetricsStorageServiceLookup osgiLookup;
+    private boolean osgiLookupCreated;
+    private boolean warnedNoStorageService;
+    private long[] lastCounts = new long[0];
+    private ObjectName[] methodObjectNames = new ObjectName[0];
+    private Map<ThreadMetrics, Long> lastCpuTimes = new IdentityHashMap<>();
+    private long lastExportTime;
+
+    InsightMetricsExporter(ApmAgentContext apmAgentContext, ApmConfiguration configuration) {
+        this.apmAgentContext = apmAgentContext;
+        this.configuration = configuration;
+        this.server = new Server(ManagementFactory.getRuntimeMXBean().getName());
+        this.methodsRequest = new MBeanAttrs(METHODS, DOMAIN + ":type=MethodMetrics,*",
+                                             Arrays.asList("Count", "TotalCount", "Mean", "Min", "Max", "50thPercentile", "99thPercentile", "OneMinuteRate"));
+        this.threadsRequest = new MBeanAttrs(THREADS, DOMAIN + ":type=ThreadMetrics,*",
+                                             Arrays.asList("CpuTime", "UserTime", "TotalCpuTime"));
+        Set<Request> requests = new LinkedHashSet<>();
+        requests.add(methodsRequest);
+        requests.add(threadsRequest);
+        int period = (int) TimeUnit.MILLISECONDS.toSeconds(ApmAgentContext.HOUSE_KEEPING_TIME);
+        this.query = new Query(TYPE, requests, null, null, null, period, period);
+    }
+
+    public MetricsStorageService getStorageService() {
+        return storageService;
+    }
+
+    public void setStorageService(MetricsStorageService storageService) {
+        this.storageService = storageService;
+    }
+
+    /**
+     * Called by house keeping - exports the metrics if exporting is enabled and the export period has elapsed
+     */
+    synchronized void exportIfDue(long now) {
+        if (configuration.isMetricsExport() && now - lastExportTime >= TimeUnit.SECONDS.toMillis(configuration.getMetricsExportPeriod())) {
+            MetricsStorageService service = lookupStorageService();
+            if (service != null) {
+                lastExportTime = now;
+                try {
+                    QueryResult queryResult = createQueryResult(now);
+                    if (queryResult != null) {
+                        service.store(TYPE, now, queryResult);
+                    }
+                } catch (Throwable e) {
+                    LOG.warn("Failed to export metrics to " + service, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the previously exported values, so the next export starts from zero
+     */
+    synchronized void reset() {
+        Arrays.fill(lastCounts, 0);
+        lastCpuTimes = new IdentityHashMap<>();
+        lastExportTime = 0;
+    }
+
+    QueryResult createQueryResult(long now) throws MalformedObjectNameException {
+        List<MBeanAttrResult> methodResults = exportMethodMetrics();
+        List<MBeanAttrResult> threadResults = exportThreadMetrics();
+        if (methodResults.isEmpty() && threadResults.isEmpty()) {
+            return null;
+        }
+        Map<String, Result<?>> results = new LinkedHashMap<>();
+        results.put(METHODS, new MBeanAttrsResult(methodsRequest, methodResults));
+        results.put(THREADS, new MBeanAttrsResult(threadsRequest, threadResults));
+        return new QueryResult(server, query, new Date(now), results);
+    }
+
+    private List<MBeanAttrResult> exportMethodMetrics() throws MalformedObjectNameException {
+        int methodCount = apmAgentContext.getMethodCount();
+        if (lastCounts.length < methodCount) {
+            lastCounts = Arrays.copyOf(lastCounts, methodCount);
+            methodObjectNames = Arrays.copyOf(methodObjectNames, methodCount);
+        }
+        List<MBeanAttrResult> result = new ArrayList<>();
+        for (int methodId = 0; methodId < methodCount; methodId++) {
+            MethodMetrics mm = apmAgentContext.getMethodMetrics(methodId);
+            if (mm == null) {
+                lastCounts[methodId] = 0;
+                continue;
+            }
+            long count = mm.getCount();
+            long lastCount = lastCounts[methodId];
+            //metrics that have been recreated since the last export start again from zero
+            long delta = count >= lastCount ? count - lastCount : count;
+            lastCounts[methodId] = count;
+            if (delta > 0 && mm.isActive()) {
+                Map<String, Object> attrs = new HashMap<>();
+                attrs.put("Count", delta);
+                attrs.put("TotalCount", count);
+                attrs.put("Mean", mm.getMean());
+                attrs.put("Min", mm.getMin());
+                attrs.put("Max", mm.getMax());
+                attrs.put("50thPercentile", mm.get50thPercentile());
+                attrs.put("99thPercentile", mm.get99thPercentile());
+                attrs.put("OneMinuteRate", mm.getOneMinuteRate());
+                result.add(new MBeanAttrResult(getMethodObjectName(methodId, mm.getName()), attrs));
+            }
+        }
+        return result;
+    }
+
+    private List<MBeanAttrResult> exportThreadMetrics() throws MalformedObjectNameException {
+        List<MBeanAttrResult> result = new ArrayList<>();
+        Map<ThreadMetrics, Long> cpuTimes = new IdentityHashMap<>();
+        for (ThreadMetrics threadMetrics : apmAgentContext.getThreadMetrics()) {
+            long cpuTime = threadMetrics.getCpuTime();
+            if (cpuTime < 0) {
+                continue;
+            }
+            cpuTimes.put(threadMetrics, cpuTime);
+            Long lastCpuTime = lastCpuTimes.get(threadMetrics);
+            long delta = lastCpuTime != null ? cpuTime - lastCpuTime : cpuTime;
+            if (delta > 0) {
+                Map<String, Object> attrs = new HashMap<>();
+                attrs.put("CpuTime", delta);
+                attrs.put("UserTime", threadMetrics.getUserTime());
+                attrs.put("TotalCpuTime", cpuTime);
+                ObjectName objectName = new ObjectName(DOMAIN + ":type=ThreadMetrics,threadName=" + ObjectName.quote(threadMetrics.getName()));
+                result.add(new MBeanAttrResult(objectName, attrs));
+            }
+        }
+        //threads that have gone are dropped
+        lastCpuTimes = cpuTimes;
+        return result;
+    }
+
+    private ObjectName getMethodObjectName(int methodId, String methodName) throws MalformedObjectNameException {
+        ObjectName objectName = methodObjectNames[methodId];
+        if (objectName == null) {
+            objectName = new ObjectName(DOMAIN + ":type=MethodMetrics,name=" + ObjectName.quote(methodName));
+            methodObjectNames[methodId] = objectName;
+        }
+        return objectName;
+    }
+
+    /**
+     * Looks for a storage service on every export until one is found, as in an OSGi container
+     * it may only be registered after the agent has started
+     */
+    private MetricsStorageService lookupStorageService() {
+        MetricsStorageService result = storageService;
+        if (result == null) {
+            for (MetricsStorageService service : ServiceLoader.load(MetricsStorageService.class)) {
+                result = service;
+                break;
+            }
+            if (result == null) {
+                OsgiMetricsStorageServiceLookup lookup = getOsgiLookup();
+                result = lookup != null ? lookup.lookup() : null;
+            }
+            if (result != null) {
+                storageService = result;
+                LOG.info("Exporting metrics to " + result);
+            } else if (!warnedNoStorageService) {
+                warnedNoStorageService = true;
+                LOG.warn("Metrics export is enabled, but no " + MetricsStorageService.class.getName() + " is available yet");
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the OSGi service registry lookup, or null if the agent isn't running in an OSGi container
+     */
+    private OsgiMetricsStorageServiceLookup getOsgiLookup() {
+        if (!osgiLookupCreated) {
+            osgiLookupCreated = true;
+            try {
+                Class.forName("org.osgi.framework.BundleReference", false, InsightMetricsExporter.class.getClassLoader());
+                osgiLookup = new OsgiMetricsStorageServiceLookup(apmAgentContext.getInstrumentation());
+            } catch (ClassNotFoundException e) {
+                //not running in an OSGi container
+            }
+        }
+        return osgiLookup;
+    }
+}
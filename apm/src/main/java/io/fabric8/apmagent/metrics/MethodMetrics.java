@@ -15,7 +15,9 @@
  */
 package io.fabric8.apmagent.metrics;
 
-import com.codahale.metrics.Timer;
+import io.fabric8.common.util.LatencyHistogram;
+import io.fabric8.common.util.LatencySnapshot;
+import io.fabric8.common.util.LatencyWindow;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -25,12 +27,27 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 public class MethodMetrics {
-    protected final Timer timer;
+    private static final long SNAPSHOT_INTERVAL = TimeUnit.MILLISECONDS.toNanos(ApmAgentContext.HOUSE_KEEPING_TIME);
+    //the latency statistics cover the last one to two minutes of calls
+    private static final long LATENCY_WINDOW_MINUTES = 1;
+    //reading the cpu time of a thread costs around a microsecond, which is only worth it for slow calls of a millisecond or more
+    private static final long MIN_CPU_TIMED_THRESHOLD = TimeUnit.MILLISECONDS.toNanos(1);
+    protected final LatencyHistogram histogram;
+    private final LatencyWindow window;
     private final String name;
-    private final double rateFactor;
     private final double durationFactor;
+    private final long startTime;
     private int percentage;
     private boolean active = true;
+    private volatile LatencySnapshot snapshot = LatencySnapshot.EMPTY;
+    private volatile long snapshotTime;
+    private long snapshotCount;
+    private volatile double oneMinuteRate = -1;
+    private volatile double fiveMinuteRate = -1;
+    private volatile double fifteenMinuteRate = -1;
+    private volatile long slowCallThreshold = Long.MAX_VALUE;
+    private volatile boolean cpuTimed;
+    private volatile SlowCallBuffer slowCallBuffer;
 
     /**
      * Constructor.
@@ -38,11 +55,16 @@ public class MethodMetrics {
      * @param name - the fully qualified method name
      */
     public MethodMetrics(String name) {
-        this.name = name;
-        this.timer = new Timer();
+        this(name, new LatencyHistogram());
+    }
 
-        this.rateFactor = TimeUnit.SECONDS.toSeconds(1);
+    protected MethodMetrics(String name, LatencyHistogram histogram) {
+        this.name = name;
+        this.histogram = histogram;
+        this.window = new LatencyWindow(histogram, LATENCY_WINDOW_MINUTES, TimeUnit.MINUTES);
         this.durationFactor = 1.0 / TimeUnit.MILLISECONDS.toNanos(1);
+        this.startTime = System.nanoTime();
+        this.snapshotTime = startTime;
     }
 
     public String getName() {
@@ -58,63 +80,67 @@ public class MethodMetrics {
     }
 
     public long getCount() {
-        return timer.getCount();
+        return histogram.getCount();
     }
 
     public double getMeanRate() {
-        return timer.getMeanRate() * rateFactor;
+        long elapsed = System.nanoTime() - startTime;
+        return elapsed > 0 ? getCount() / (elapsed / (double) TimeUnit.SECONDS.toNanos(1)) : 0;
     }
 
     public double getOneMinuteRate() {
-        return timer.getOneMinuteRate() * rateFactor;
+        getSnapshot();
+        return Math.max(0, oneMinuteRate);
     }
 
     public double getFiveMinuteRate() {
-        return timer.getFiveMinuteRate() * rateFactor;
+        getSnapshot();
+        return Math.max(0, fiveMinuteRate);
     }
 
     public double getFifteenMinuteRate() {
-        return timer.getFifteenMinuteRate() * rateFactor;
+        getSnapshot();
+        return Math.max(0, fifteenMinuteRate);
     }
 
     public double getMin() {
-        return timer.getSnapshot().getMin() * durationFactor;
+        return getSnapshot().getMin() * durationFactor;
     }
 
     public double getMax() {
-        return timer.getSnapshot().getMax() * durationFactor;
+        return getSnapshot().getMax() * durationFactor;
     }
 
     public double getMean() {
-        return timer.getSnapshot().getMean() * durationFactor;
+        return getSnapshot().getMean() * durationFactor;
     }
 
     public double getStdDev() {
-        return timer.getSnapshot().getStdDev() * durationFactor;
+        return getSnapshot().getStdDev() * durationFactor;
     }
 
     public double get50thPercentile() {
-        return timer.getSnapshot().getMedian() * durationFactor;
+        return getSnapshot().getValue(0.5) * durationFactor;
     }
 
     public double get75thPercentile() {
-        return timer.getSnapshot().get75thPercentile() * durationFactor;
+        return getSnapshot().getValue(0.75) * durationFactor;
     }
 
     public double get95thPercentile() {
-        return timer.getSnapshot().get95thPercentile() * durationFactor;
+        return getSnapshot().getValue(0.95) * durationFactor;
     }
 
     public double get98thPercentile() {
-        return timer.getSnapshot().get98thPercentile() * durationFactor;
+        return getSnapshot().getValue(0.98) * durationFactor;
     }
 
     public double get99thPercentile() {
-        return timer.getSnapshot().get99thPercentile() * durationFactor;
+        return getSnapshot().getValue(0.99) * durationFactor;
     }
 
     public double get999thPercentile() {
-        return timer.getSnapshot().get999thPercentile() * durationFactor;
+        return getSnapshot().getValue(0.999) * durationFactor;
     }
 
     /**
@@ -123,7 +149,7 @@ public class MethodMetrics {
      * @return estimated load
      */
     public double getLoad() {
-        return timer.getSnapshot().size() * getMean();
+        return getSnapshot().size() * getMean();
     }
 
     public int getPercentage() {
@@ -135,12 +161,93 @@ public class MethodMetrics {
     }
 
     public long[] values() {
-        return timer.getSnapshot().getValues();
+        return getSnapshot().getValues();
     }
 
     public void update(long elapsed) {
-        if (elapsed >= 0) {
-            timer.update(elapsed, TimeUnit.NANOSECONDS);
+        histogram.record(elapsed);
+    }
+
+    /**
+     * @return the elapsed time in nanoseconds above which a call is recorded as a slow call
+     */
+    public long getSlowCallThreshold() {
+        return slowCallThreshold;
+    }
+
+    /**
+     * @return true if the cpu time of calls is measured, so it can be reported for slow calls
+     */
+    boolean isCpuTimed() {
+        return cpuTimed;
+    }
+
+    /**
+     * Sets the slow call threshold to the given percentile of the latest snapshot - once
+     * there are enough samples for the percentile to be meaningful. As the snapshot only
+     * covers the latest window, the threshold follows changes in the latency of the method.
+     */
+    void updateSlowCallThreshold(double percentile, int minSamples) {
+        LatencySnapshot latest = getSnapshot();
+        if (percentile > 0 && latest.size() >= minSamples) {
+            slowCallThreshold = Math.max(1, (long) latest.getValue(percentile / 100));
+            cpuTimed = slowCallThreshold >= MIN_CPU_TIMED_THRESHOLD;
+        } else {
+            slowCallThreshold = Long.MAX_VALUE;
+            cpuTimed = false;
+        }
+    }
+
+    void addSlowCall(SlowCall slowCall, int bufferSize) {
+        SlowCallBuffer buffer = slowCallBuffer;
+        if (buffer == null || buffer.size() != bufferSize) {
+            buffer = createSlowCallBuffer(bufferSize);
+        }
+        buffer.add(slowCall);
+    }
+
+    /**
+     * @return the most recent slow calls, the latest first
+     */
+    public List<SlowCall> getSlowCalls() {
+        SlowCallBuffer buffer = slowCallBuffer;
+        return buffer != null ? buffer.getSlowCalls() : Collections.<SlowCall>emptyList();
+    }
+
+    private synchronized SlowCallBuffer createSlowCallBuffer(int bufferSize) {
+        SlowCallBuffer buffer = slowCallBuffer;
+        if (buffer == null || buffer.size() != bufferSize) {
+            buffer = new SlowCallBuffer(bufferSize);
+            slowCallBuffer = buffer;
+        }
+        return buffer;
+    }
+
+    /**
+     * The snapshot is only rebuilt once per house keeping interval, and shared by all the getters
+     *
+     * @return the latencies recorded over the latest window
+     */
+    protected LatencySnapshot getSnapshot() {
+        if (System.nanoTime() - snapshotTime >= SNAPSHOT_INTERVAL) {
+            refreshSnapshot();
+        }
+        return snapshot;
+    }
+
+    private synchronized void refreshSnapshot() {
+        long now = System.nanoTime();
+        long elapsed = now - snapshotTime;
+        if (elapsed >= SNAPSHOT_INTERVAL) {
+            long count = histogram.getCount();
+            double seconds = elapsed / (double) TimeUnit.SECONDS.toNanos(1);
+            double rate = Math.max(0, count - snapshotCount) / seconds;
+            oneMinuteRate = ewma(oneMinuteRate, rate, seconds, 60);
+            fiveMinuteRate = ewma(fiveMinuteRate, rate, seconds, 5 * 60);
+            fifteenMinuteRate = ewma(fifteenMinuteRate, rate, seconds, 15 * 60);
+            snapshot = window.update();
+            snapshotCount = count;
+            snapshotTime = now;
         }
     }
 
@@ -168,5 +275,11 @@ public class MethodMetrics {
         }
         return list;
     }
-}
 
+    private static double ewma(double average, double rate, double seconds, double windowSeconds) {
+        if (average < 0) {
+            return rate;
+        }
+        return average + (1 - Math.exp(-seconds / windowSeconds)) * (rate - average);
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import io.fabric8.insight.metrics.model.MetricsStorageService;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleReference;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.instrument.Instrumentation;
+
+/**
+ * Looks up the {@link MetricsStorageService} in the OSGi service registry, when the agent runs in an
+ * OSGi container such as Karaf. The agent is on the system class path rather than in a bundle, so it
+ * uses the system bundle context, found through the class loader of any bundle class that is loaded.
+ * <p/>
+ * A registered service can only be used if the io.fabric8.insight.metrics.model package is boot
+ * delegated, like io.fabric8.apmagent, so that the bundles and the agent share its classes.
+ * <p/>
+ * This class must only be loaded when the OSGi framework classes are available.
+ */
+class OsgiMetricsStorageServiceLookup {
+    private static final Logger LOG = LoggerFactory.getLogger(OsgiMetricsStorageServiceLookup.class);
+    private final Instrumentation instrumentation;
+    private BundleContext systemBundleContext;
+    private boolean warnedNotShared;
+
+    OsgiMetricsStorageServiceLookup(Instrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+    }
+
+    /**
+     * @return the first registered storage service the agent can use, or null if there is none
+     */
+    MetricsStorageService lookup() {
+        BundleContext context = getSystemBundleContext();
+        if (context == null) {
+            return null;
+        }
+        try {
+            ServiceReference<?>[] references = context.getServiceReferences(MetricsStorageService.class.getName(), null);
+            if (references != null) {
+                for (ServiceReference<?> reference : references) {
+                    Object service = context.getService(reference);
+                    if (service instanceof MetricsStorageService) {
+                        return (MetricsStorageService) service;
+                    }
+                    if (service != null) {
+                        context.ungetService(reference);
+                        if (!warnedNotShared) {
+                            warnedNotShared = true;
+                            LOG.warn("Found " + service + ", but cannot use it as the " + MetricsStorageService.class.getPackage().getName()
+                                    + " package is not boot delegated");
+                        }
+                    }
+                }
+            }
+        } catch (InvalidSyntaxException e) {
+            //cannot happen without a filter
+        } catch (IllegalStateException e) {
+            //the framework has been stopped
+            systemBundleContext = null;
+        }
+        return null;
+    }
+
+    private BundleContext getSystemBundleContext() {
+        if (systemBundleContext == null && instrumentation != null) {
+            for (Class<?> clazz : instrumentation.getAllLoadedClasses()) {
+                ClassLoader classLoader = clazz.getClassLoader();
+                if (classLoader instanceof BundleReference) {
+                    Bundle bundle = ((BundleReference) classLoader).getBundle();
+                    BundleContext context = bundle != null ? bundle.getBundleContext() : null;
+                    if (context != null) {
+                        try {
+                            Bundle systemBundle = context.getBundle(0);
+                            systemBundleContext = systemBundle != null ? systemBundle.getBundleContext() : null;
+                        } catch (IllegalStateException e) {
+                            //the bundle has just been stopped
+                        }
+                        if (systemBundleContext != null) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return systemBundleContext;
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+/**
+ * The slow calls of a single thread, kept as raw method ids until house keeping turns them into
+ * {@link SlowCall}s, so that recording a slow call doesn't allocate on the thread that made it.
+ * <p/>
+ * Only the owning thread adds calls. If house keeping falls behind, the oldest calls are dropped.
+ */
+class PendingSlowCalls {
+    private static final int SIZE = 16;
+    private static final int MASK = SIZE - 1;
+    private final int[] methodIds = new int[SIZE];
+    private final long[] timestamps = new long[SIZE];
+    private final long[] elapsedTimes = new long[SIZE];
+    private final long[] cpuTimes = new long[SIZE];
+    private final int[] depths = new int[SIZE];
+    private final int[][] callers = new int[SIZE][];
+    //the number of calls added, written after the call itself so house keeping can tell when it is complete
+    private volatile long written;
+    private long read;
+
+    /**
+     * Called by the owning thread
+     *
+     * @param stack - the method ids of the thread's stack, the callers are the first depth of them
+     */
+    void add(int methodId, long timestamp, long elapsed, long cpuTime, int[] stack, int depth) {
+        long position = written;
+        int index = (int) (position & MASK);
+        int[] slotCallers = callers[index];
+        if (slotCallers == null || slotCallers.length < depth) {
+            //only allocates the first time a slot sees a call this deep
+            slotCallers = new int[Math.max(depth, SIZE)];
+            callers[index] = slotCallers;
+        }
+        System.arraycopy(stack, 0, slotCallers, 0, depth);
+        methodIds[index] = methodId;
+        timestamps[index] = timestamp;
+        elapsedTimes[index] = elapsed;
+        cpuTimes[index] = cpuTime;
+        depths[index] = depth;
+        written = position + 1;
+    }
+
+    /**
+     * Called by house keeping - adds the calls made since the last time to the slow calls of their methods
+     */
+    synchronized void drain(Thread thread, ApmAgentContext context, int bufferSize) {
+        long end = written;
+        for (long position = Math.max(read, end - SIZE); position < end; position++) {
+            int index = (int) (position & MASK);
+            int methodId = methodIds[index];
+            long timestamp = timestamps[index];
+            long elapsed = elapsedTimes[index];
+            long cpuTime = cpuTimes[index];
+            int[] slotCallers = callers[index];
+            int depth = Math.min(depths[index], slotCallers != null ? slotCallers.length : 0);
+            String[] callerNames = new String[depth];
+            for (int i = 0; i < depth; i++) {
+                callerNames[i] = context.getMethodName(slotCallers[i]);
+            }
+            if (written - position > SIZE - 1) {
+                //the owning thread has started overwriting the call while it was being read
+                continue;
+            }
+            MethodMetrics methodMetrics = context.getMethodMetrics(methodId);
+            if (methodMetrics != null && bufferSize > 0) {
+                methodMetrics.addSlowCall(new SlowCall(methodMetrics.getName(), timestamp, elapsed, cpuTime, thread, callerNames), bufferSize);
+            }
+        }
+        read = end;
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single call of a method that took longer than the method's slow call threshold,
+ * with the methods that called it and the cpu time it used.
+ */
+public class SlowCall {
+    private final String name;
+    private final long timestamp;
+    private final long elapsed;
+    private final long cpuTime;
+    private final String threadName;
+    private final long threadId;
+    private final String[] callers;
+
+    SlowCall(String name, long timestamp, long elapsed, long cpuTime, Thread thread, String[] callers) {
+        this.name = name;
+        this.timestamp = timestamp;
+        this.elapsed = elapsed;
+        this.cpuTime = cpuTime;
+        this.threadName = thread.getName();
+        this.threadId = thread.getId();
+        this.callers = callers;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the elapsed time of the call in nanoseconds
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return the cpu time used by the thread during the call in nanoseconds, or -1 if it wasn't measured
+     */
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    public String getThreadName() {
+        return threadName + "[" + threadId + "]";
+    }
+
+    /**
+     * @return the calling methods, the outermost first
+     */
+    public String[] getCallers() {
+        return callers.clone();
+    }
+
+    public String toString() {
+        double factor = 1.0 / TimeUnit.MILLISECONDS.toNanos(1);
+        StringBuilder result = new StringBuilder();
+        result.append(name).append(" elapsed=").append(elapsed * factor).append("ms");
+        result.append(" thread=").append(getThreadName());
+        if (cpuTime >= 0) {
+            result.append(" cpuTime=").append(cpuTime * factor).append("ms");
+        }
+        result.append(" timestamp=").append(timestamp);
+        result.append(" callers=[");
+        for (int i = callers.length - 1; i >= 0; i--) {
+            result.append(callers[i]);
+            if (i > 0) {
+                result.append(" <- ");
+            }
+        }
+        result.append(']');
+        return result.toString();
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed size ring buffer of the most recent slow calls of a method
+ */
+class SlowCallBuffer {
+    private final AtomicReferenceArray<SlowCall> slowCalls;
+    private final AtomicLong next = new AtomicLong();
+
+    SlowCallBuffer(int size) {
+        slowCalls = new AtomicReferenceArray<>(size);
+    }
+
+    int size() {
+        return slowCalls.length();
+    }
+
+    void add(SlowCall slowCall) {
+        slowCalls.set((int) (next.getAndIncrement() % slowCalls.length()), slowCall);
+    }
+
+    /**
+     * @return the slow calls, the most recent first
+     */
+    List<SlowCall> getSlowCalls() {
+        List<SlowCall> result = new ArrayList<>(slowCalls.length());
+        for (int i = 0; i < slowCalls.length(); i++) {
+            SlowCall slowCall = slowCalls.get(i);
+            if (slowCall != null) {
+                result.add(slowCall);
+            }
+        }
+        Collections.sort(result, new Comparator<SlowCall>() {
+            @Override
+            public int compare(SlowCall slowCall1, SlowCall slowCall2) {
+                return Long.compare(slowCall2.getTimestamp(), slowCall1.getTimestamp());
+            }
+        });
+        return result;
+    }
+}
@@ -15,19 +15,16 @@
  */
 package io.fabric8.apmagent.metrics;
 
-import com.codahale.metrics.Timer;
-
-import java.util.concurrent.atomic.AtomicReference;
+import io.fabric8.common.util.LatencyHistogram;
 
 public class ThreadContextMethodMetrics extends MethodMetrics {
     private final Thread thread;
-    private final AtomicReference<ThreadContextMethodMetricsStack> stackRef;
-    private Timer.Context timerContext;
+    private long selfTime;
 
-    public ThreadContextMethodMetrics(Thread thread, AtomicReference<ThreadContextMethodMetricsStack> stackRef, String name) {
-        super(name);
+    public ThreadContextMethodMetrics(Thread thread, String name) {
+        //only ever updated by the owning thread
+        super(name, new LatencyHistogram(1));
         this.thread = thread;
-        this.stackRef = stackRef;
     }
 
     public String getThreadName() {
@@ -38,28 +35,15 @@ public class ThreadContextMethodMetrics extends MethodMetrics {
         return thread.getId();
     }
 
-    public void onEnter() {
-        timerContext = timer.time();
-        stackRef.get().push(this);
+    /**
+     * @return the total time spent in this method, excluding the time spent in the methods it called
+     */
+    public long getSelfTime() {
+        return selfTime;
     }
 
-    public long onExit() {
-        long result = -1;
-        ThreadContextMethodMetrics last = stackRef.get().pop();
-        if (last == this) {
-            result = timerContext.stop();
-        } else {
-            //the exit could have jumped a few methods if its
-            //caused by an exception
-            while (last != null && last != this) {
-                result = last.timerContext.stop();
-                last = stackRef.get().pop();
-            }
-            if (last == this) {
-                result = timerContext.stop();
-            }
-        }
-        return result;
+    void addSelfTime(long time) {
+        selfTime += time;
     }
 
     public String toString() {
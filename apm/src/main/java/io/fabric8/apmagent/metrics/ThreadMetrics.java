@@ -20,24 +20,40 @@ import io.fabric8.apmagent.ApmConfiguration;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicReference;
 
 public class ThreadMetrics {
-    private final AtomicReference<ThreadContextMethodMetricsStack> methodStackRef;
+    private static final int MAX_CALL_PATHS = 1 << 12;
+    private static final int INITIAL_STACK_DEPTH = 64;
     private final ApmAgentContext apmAgentContext;
     private final ThreadInfo threadInfo;
     private final Thread thread;
     private final ThreadMXBean threadMXBean;
-    private final ConcurrentMap<String, ThreadContextMethodMetrics> methods = new ConcurrentHashMap<>();
+    private final boolean cpuTimeSupported;
+    private final PendingSlowCalls pendingSlowCalls = new PendingSlowCalls();
+    private volatile ThreadContextMethodMetrics[] methods = new ThreadContextMethodMetrics[16];
     private final MonitoredThreadMethodMetrics monitoredThreadMethodMetrics;
+    //only ever modified by the owning thread, readers take a copy
+    private final CallTree callTree = new CallTree(MAX_CALL_PATHS);
+    //the method stack of the thread - only ever accessed by the owning thread
+    private int[] stackNodes = new int[INITIAL_STACK_DEPTH];
+    private int[] stackMethods = new int[INITIAL_STACK_DEPTH];
+    private long[] stackStartTimes = new long[INITIAL_STACK_DEPTH];
+    private long[] stackChildTimes = new long[INITIAL_STACK_DEPTH];
+    //the cpu time of the thread when the method was entered, or -1 if it isn't measured
+    private long[] stackCpuTimes = new long[INITIAL_STACK_DEPTH];
+    private int stackDepth;
+    private long activity;
+    private long lastActivity;
+    private long lastActiveTime = System.currentTimeMillis();
+    private volatile boolean evicted;
 
     public ThreadMetrics(ApmAgentContext apmAgentContext, Thread thread) {
-        this.methodStackRef = new AtomicReference<>(new ThreadContextMethodMetricsStack());
         this.apmAgentContext = apmAgentContext;
         this.threadMXBean = ManagementFactory.getThreadMXBean();
+        this.cpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported();
         this.threadInfo = threadMXBean.getThreadInfo(thread.getId());
         this.thread = thread;
         ApmConfiguration configuration = apmAgentContext.getConfiguration();
@@ -65,6 +81,30 @@ public class ThreadMetrics {
         return threadMXBean.getThreadUserTime(thread.getId());
     }
 
+    /**
+     * @return the last time, as seen by house keeping, that this thread entered a method
+     */
+    public long getLastActiveTime() {
+        return lastActiveTime;
+    }
+
+    void updateLastActiveTime(long now) {
+        //the activity count is only written by the owning thread, so may be a little stale
+        long currentActivity = activity;
+        if (currentActivity != lastActivity) {
+            lastActivity = currentActivity;
+            lastActiveTime = now;
+        }
+    }
+
+    boolean isEvicted() {
+        return evicted;
+    }
+
+    void setEvicted() {
+        evicted = true;
+    }
+
     public ThreadInfo getThreadInfo() {
         return threadInfo;
     }
@@ -73,33 +113,131 @@ public class ThreadMetrics {
         monitoredThreadMethodMetrics.setMonitorSize(monitorSize);
     }
 
-    public void enter(String methodName, boolean alwaysActive) {
-        ThreadContextMethodMetrics threadContextMethodMetrics = methods.get(methodName);
-        if (threadContextMethodMetrics == null) {
-            threadContextMethodMetrics = new ThreadContextMethodMetrics(thread, this.methodStackRef, methodName);
-            threadContextMethodMetrics.setActive(apmAgentContext.isMonitorByDefault());
-            methods.putIfAbsent(methodName, threadContextMethodMetrics);
-        }
-        if (alwaysActive || threadContextMethodMetrics.isActive()) {
-            threadContextMethodMetrics.onEnter();
+    public void enter(int methodId, boolean alwaysActive) {
+        activity++;
+        ThreadContextMethodMetrics threadContextMethodMetrics = getThreadContextMethodMetrics(methodId);
+        if (threadContextMethodMetrics != null && (alwaysActive || threadContextMethodMetrics.isActive())) {
+            push(methodId);
         }
     }
 
-    public long exit(String methodName, boolean alwaysActive) {
+    /**
+     * @return the elapsed time of the method, or -1 if it wasn't being timed
+     */
+    public long exit(int methodId, boolean alwaysActive) {
         long result = -1;
-        ThreadContextMethodMetrics threadContextMethodMetrics = methods.get(methodName);
-        if (threadContextMethodMetrics != null) {
-            if (alwaysActive || threadContextMethodMetrics.isActive()) {
-                result = threadContextMethodMetrics.onExit();
+        ThreadContextMethodMetrics[] array = methods;
+        ThreadContextMethodMetrics threadContextMethodMetrics = methodId < array.length ? array[methodId] : null;
+        if (threadContextMethodMetrics != null && (alwaysActive || threadContextMethodMetrics.isActive())) {
+            result = pop(methodId);
+        } else if (stackDepth > 0 && stackMethods[stackDepth - 1] == methodId) {
+            //the method was evicted or deactivated while it was being timed
+            result = pop(methodId);
+        }
+        return result;
+    }
+
+    /**
+     * Adds the number of calls and the self time of each method called by this thread
+     * to the given arrays, indexed by method id
+     */
+    public void addMethodTimes(long[] calls, long[] selfTimes) {
+        ThreadContextMethodMetrics[] array = methods;
+        for (int i = 0; i < array.length && i < selfTimes.length; i++) {
+            ThreadContextMethodMetrics threadContextMethodMetrics = array[i];
+            if (threadContextMethodMetrics != null) {
+                calls[i] += threadContextMethodMetrics.getCount();
+                selfTimes[i] += threadContextMethodMetrics.getSelfTime();
             }
-        } else {
-            //something weird happended reset the stack
-            methodStackRef.set(new ThreadContextMethodMetricsStack());
+        }
+    }
 
+    /**
+     * Adds the call paths recorded by this thread to the given tree
+     */
+    public void mergeCallTree(CallTree target) {
+        target.mergeConcurrently(callTree);
+    }
+
+    private void push(int methodId) {
+        int parent = stackDepth > 0 ? stackNodes[stackDepth - 1] : CallTree.ROOT;
+        int node = callTree.child(parent, methodId);
+        if (stackDepth == stackNodes.length) {
+            resizeStack(stackNodes.length * 2);
+        }
+        stackNodes[stackDepth] = node;
+        stackMethods[stackDepth] = methodId;
+        stackChildTimes[stackDepth] = 0;
+        //reading the cpu time is too expensive for every call, only methods whose slow calls are slow enough get it
+        MethodMetrics methodMetrics = apmAgentContext.getMethodMetrics(methodId);
+        stackCpuTimes[stackDepth] = cpuTimeSupported && methodMetrics != null && methodMetrics.isCpuTimed() ? threadMXBean.getCurrentThreadCpuTime() : -1;
+        stackStartTimes[stackDepth++] = System.nanoTime();
+    }
+
+    private long pop(int methodId) {
+        //the exit could have jumped a few methods if its caused by an exception - but if the
+        //method isn't on the stack at all, it was activated after it was entered
+        int target = stackDepth - 1;
+        while (target >= 0 && stackMethods[target] != methodId) {
+            target--;
+        }
+        if (target < 0) {
+            return -1;
+        }
+        long result = -1;
+        long now = System.nanoTime();
+        while (stackDepth > target) {
+            int depth = --stackDepth;
+            long elapsed = now - stackStartTimes[depth];
+            long exclusive = Math.max(0, elapsed - stackChildTimes[depth]);
+            callTree.add(stackNodes[depth], 1, elapsed, exclusive);
+            ThreadContextMethodMetrics[] array = methods;
+            int stackMethod = stackMethods[depth];
+            ThreadContextMethodMetrics threadContextMethodMetrics = stackMethod < array.length ? array[stackMethod] : null;
+            if (threadContextMethodMetrics != null) {
+                threadContextMethodMetrics.update(elapsed);
+                threadContextMethodMetrics.addSelfTime(exclusive);
+            }
+            if (depth > 0) {
+                stackChildTimes[depth - 1] += elapsed;
+            }
+            result = elapsed;
+            if (stackMethod == methodId) {
+                checkSlowCall(methodId, depth, elapsed);
+                break;
+            }
         }
         return result;
     }
 
+    /**
+     * Records the call with its callers, if it took longer than the slow call threshold of the method.
+     * House keeping turns the recorded calls into {@link SlowCall}s, see {@link #drainSlowCalls()}
+     */
+    private void checkSlowCall(int methodId, int depth, long elapsed) {
+        MethodMetrics methodMetrics = apmAgentContext.getMethodMetrics(methodId);
+        if (methodMetrics != null && elapsed > methodMetrics.getSlowCallThreshold()
+                && apmAgentContext.getConfiguration().getSlowCallBufferSize() > 0) {
+            long cpuTime = stackCpuTimes[depth] >= 0 ? threadMXBean.getCurrentThreadCpuTime() - stackCpuTimes[depth] : -1;
+            pendingSlowCalls.add(methodId, System.currentTimeMillis(), elapsed, cpuTime, stackMethods, depth);
+        }
+    }
+
+    /**
+     * Called by house keeping - adds the slow calls recorded since the last time to their methods
+     */
+    void drainSlowCalls() {
+        pendingSlowCalls.drain(thread, apmAgentContext, apmAgentContext.getConfiguration().getSlowCallBufferSize());
+    }
+
+    private void resizeStack(int newCapacity) {
+        stackNodes = Arrays.copyOf(stackNodes, newCapacity);
+        stackMethods = Arrays.copyOf(stackMethods, newCapacity);
+        stackStartTimes = Arrays.copyOf(stackStartTimes, newCapacity);
+        stackChildTimes = Arrays.copyOf(stackChildTimes, newCapacity);
+        stackCpuTimes = Arrays.copyOf(stackCpuTimes, newCapacity);
+    }
+
     public String toString() {
         return "ThreadMetrics:" + getName();
     }
@@ -109,24 +247,76 @@ public class ThreadMetrics {
     }
 
     public ThreadContextMethodMetrics remove(String fullMethodName) {
-        ThreadContextMethodMetrics result = methods.remove(fullMethodName);
+        return remove(apmAgentContext.getMethodId(fullMethodName));
+    }
+
+    public synchronized ThreadContextMethodMetrics remove(int methodId) {
+        ThreadContextMethodMetrics result = null;
+        ThreadContextMethodMetrics[] array = methods;
+        if (methodId >= 0 && methodId < array.length) {
+            result = array[methodId];
+            array[methodId] = null;
+        }
         return result;
     }
 
     public void calculateMethodMetrics() {
-        List<ThreadContextMethodMetrics> list = (List<ThreadContextMethodMetrics>) MethodMetrics.sortedMetrics(this.methods.values());
-        monitoredThreadMethodMetrics.calculateMethodMetrics(list);
+        List<ThreadContextMethodMetrics> list = new ArrayList<>();
+        for (ThreadContextMethodMetrics threadContextMethodMetrics : methods) {
+            if (threadContextMethodMetrics != null) {
+                list.add(threadContextMethodMetrics);
+            }
+        }
+        monitoredThreadMethodMetrics.calculateMethodMetrics(MethodMetrics.sortedMetrics(list));
     }
 
     public void setActive(String methodName, boolean flag) {
-        ThreadContextMethodMetrics threadContextMethodMetrics = methods.get(methodName);
+        ThreadContextMethodMetrics threadContextMethodMetrics = get(methodName);
         if (threadContextMethodMetrics != null) {
             threadContextMethodMetrics.setActive(flag);
         }
     }
 
     public boolean isActive(String methodName) {
-        ThreadContextMethodMetrics threadContextMethodMetrics = methods.get(methodName);
+        ThreadContextMethodMetrics threadContextMethodMetrics = get(methodName);
         return threadContextMethodMetrics != null ? threadContextMethodMetrics.isActive() : false;
     }
+
+    private ThreadContextMethodMetrics get(String methodName) {
+        int methodId = apmAgentContext.getMethodId(methodName);
+        ThreadContextMethodMetrics[] array = methods;
+        return methodId >= 0 && methodId < array.length ? array[methodId] : null;
+    }
+
+    /**
+     * @return the metrics of the method for this thread, or null if the method was evicted
+     */
+    private ThreadContextMethodMetrics getThreadContextMethodMetrics(int methodId) {
+        ThreadContextMethodMetrics[] array = methods;
+        if (methodId < array.length) {
+            ThreadContextMethodMetrics result = array[methodId];
+            if (result != null) {
+                return result;
+            }
+        }
+        //only the methods tracked by the context are tracked per thread, which bounds the metrics of a thread
+        return apmAgentContext.isMethodEvicted(methodId) ? null : createThreadContextMethodMetrics(methodId);
+    }
+
+    private synchronized ThreadContextMethodMetrics createThreadContextMethodMetrics(int methodId) {
+        ThreadContextMethodMetrics[] array = methods;
+        if (methodId >= array.length) {
+            array = Arrays.copyOf(array, Math.max(array.length * 2, methodId + 1));
+            methods = array;
+        }
+        ThreadContextMethodMetrics result = array[methodId];
+        if (result == null) {
+            result = new ThreadContextMethodMetrics(thread, apmAgentContext.getMethodName(methodId));
+            //threads that call the method for the first time follow the state set on the method
+            MethodMetrics methodMetrics = apmAgentContext.getMethodMetrics(methodId);
+            result.setActive(methodMetrics != null ? methodMetrics.isActive() : apmAgentContext.isMonitorByDefault());
+            array[methodId] = result;
+        }
+        return result;
+    }
 }
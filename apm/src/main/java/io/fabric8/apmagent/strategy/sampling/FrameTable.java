@@ -0,0 +1,71 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.strategy.sampling;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns sampled stack frames into compact int ids. Lookups are keyed on the
+ * class and method name strings of the frame, so interning a frame that has
+ * been seen before does not allocate. The table holds at most a fixed number of
+ * frames, once it is full new frames are no longer interned.
+ * <p/>
+ * This class is not thread safe.
+ */
+class FrameTable {
+    static final int FULL = -1;
+    private final int maxFrames;
+    private final Map<String, Map<String, Integer>> frameIds = new HashMap<>();
+    private final List<String> frameNames = new ArrayList<>();
+
+    FrameTable(int maxFrames) {
+        this.maxFrames = maxFrames;
+    }
+
+    /**
+     * @return the id of the frame, or {@link #FULL} if it is new and the table is full
+     */
+    int intern(StackTraceElement element) {
+        String className = element.getClassName();
+        String methodName = element.getMethodName();
+        Map<String, Integer> methods = frameIds.get(className);
+        Integer id = methods != null ? methods.get(methodName) : null;
+        if (id == null) {
+            if (frameNames.size() >= maxFrames) {
+                return FULL;
+            }
+            if (methods == null) {
+                methods = new HashMap<>();
+                frameIds.put(className, methods);
+            }
+            id = frameNames.size();
+            frameNames.add(className + "." + methodName);
+            methods.put(methodName, id);
+        }
+        return id;
+    }
+
+    String getName(int frameId) {
+        return frameId >= 0 && frameId < frameNames.size() ? frameNames.get(frameId) : null;
+    }
+
+    int size() {
+        return frameNames.size();
+    }
+}
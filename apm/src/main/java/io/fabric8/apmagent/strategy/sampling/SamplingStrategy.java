@@ -18,7 +18,9 @@ package io.fabric8.apmagent.strategy.sampling;
 import io.fabric8.apmagent.ApmConfiguration;
 import io.fabric8.apmagent.Strategy;
 import io.fabric8.apmagent.metrics.ApmAgentContext;
+import io.fabric8.apmagent.metrics.CallTree;
 
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
@@ -28,14 +30,36 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Samples the stacks of running threads at a fixed interval.
+ * <p/>
+ * By default every thread is sampled on each interval through {@link Thread#getAllStackTraces()},
+ * which stops the whole JVM at a safepoint. When {@link ApmConfiguration#getSamplingThreadCount()}
+ * is set, only that many threads are sampled per interval, rotating through all live threads,
+ * with their stacks truncated to {@link ApmConfiguration#getSamplingStackDepth()} frames. That
+ * still stops the whole JVM at a safepoint, but only the requested stacks are walked, so the pause
+ * is shorter.
+ * <p/>
+ * Samples are aggregated into a {@link CallTree} of interned frame ids.
+ */
 public class SamplingStrategy implements Strategy, Runnable {
     private static final long CLEANUP_INTERVAL = 1000;
+    private static final int MAX_CALL_PATHS = 1 << 16;
     private ApmAgentContext context;
     private ApmConfiguration configuration;
     private AtomicBoolean initialized = new AtomicBoolean();
     private AtomicBoolean started = new AtomicBoolean();
     private Thread samplingThread;
     private final Map<Long, String> currentMethods = new HashMap<>();
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final FrameTable frameTable = new FrameTable(MAX_CALL_PATHS);
+    private final CallTree callTree = new CallTree(MAX_CALL_PATHS);
+    private Thread[] liveThreads = new Thread[64];
+    private int liveThreadCount;
+    private int nextThread;
+    private long lastCleanupTime;
+    private long[] sampledIds = new long[0];
+    private Thread[] sampledThreads = new Thread[0];
 
     public SamplingStrategy(ApmAgentContext context) {
         this.context = context;
@@ -75,6 +99,28 @@ public class SamplingStrategy implements Strategy, Runnable {
         }
     }
 
+    /**
+     * @return the sampled call paths in collapsed stack format, with the number of samples
+     * in which each path was on the top of the stack
+     */
+    @Override
+    public String getCollapsedStacks() {
+        StringBuilder result = new StringBuilder();
+        synchronized (callTree) {
+            try {
+                callTree.writeCollapsedStacks(result, new CallTree.FrameNames() {
+                    @Override
+                    public String getName(int frame) {
+                        return frameTable.getName(frame);
+                    }
+                });
+            } catch (IOException e) {
+                //cannot happen with a StringBuilder
+            }
+        }
+        return result.toString();
+    }
+
     @Override
     public void configurationChanged() {
 
@@ -82,20 +128,9 @@ public class SamplingStrategy implements Strategy, Runnable {
 
     @Override
     public void run() {
-        long lastTime = 0;
         while (started.get()) {
             try {
-                for (Map.Entry<Thread, StackTraceElement[]> threadEntry : Thread.getAllStackTraces().entrySet()) {
-                    if (threadEntry.getKey() != Thread.currentThread()) {
-                        addMeasurement(threadEntry.getKey(), threadEntry.getValue());
-                    }
-                }
-                long currentTime = System.currentTimeMillis();
-
-                if ((currentTime - lastTime) > CLEANUP_INTERVAL) {
-                    cleanup();
-                    lastTime = currentTime;
-                }
+                sample();
                 Thread.sleep(configuration.getSamplingInterval());
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
@@ -103,9 +138,106 @@ public class SamplingStrategy implements Strategy, Runnable {
         }
     }
 
+    /**
+     * Takes a single sample of the running threads - called on every interval by the sampling thread
+     */
+    public void sample() {
+        long currentTime = System.currentTimeMillis();
+        int samplingThreadCount = configuration.getSamplingThreadCount();
+
+        if ((currentTime - lastCleanupTime) > CLEANUP_INTERVAL) {
+            cleanup();
+            if (samplingThreadCount > 0) {
+                refreshLiveThreads();
+            }
+            lastCleanupTime = currentTime;
+        }
+        if (samplingThreadCount > 0) {
+            sampleThreads(samplingThreadCount, configuration.getSamplingStackDepth());
+        } else {
+            sampleAllThreads();
+        }
+    }
+
+    private void sampleAllThreads() {
+        synchronized (callTree) {
+            for (Map.Entry<Thread, StackTraceElement[]> threadEntry : Thread.getAllStackTraces().entrySet()) {
+                if (threadEntry.getKey() != Thread.currentThread()) {
+                    addSample(threadEntry.getValue());
+                    addMeasurement(threadEntry.getKey(), threadEntry.getValue());
+                }
+            }
+        }
+    }
+
+    private void sampleThreads(int maxThreads, int stackDepth) {
+        int count = Math.min(maxThreads, liveThreadCount);
+        if (count == 0) {
+            return;
+        }
+        if (sampledIds.length != count) {
+            sampledIds = new long[count];
+            sampledThreads = new Thread[count];
+        }
+        for (int i = 0; i < count; i++) {
+            Thread thread = liveThreads[(nextThread + i) % liveThreadCount];
+            sampledThreads[i] = thread;
+            sampledIds[i] = thread.getId();
+        }
+        nextThread = (nextThread + count) % liveThreadCount;
+
+        //this is still a global safepoint on HotSpot, but only the requested stacks are walked
+        ThreadInfo[] threadInfos = threadMXBean.getThreadInfo(sampledIds, stackDepth);
+        synchronized (callTree) {
+            for (int i = 0; i < threadInfos.length; i++) {
+                ThreadInfo threadInfo = threadInfos[i];
+                if (threadInfo != null && sampledThreads[i] != Thread.currentThread()) {
+                    StackTraceElement[] stackTraceElements = threadInfo.getStackTrace();
+                    addSample(stackTraceElements);
+                    addMeasurement(sampledThreads[i], stackTraceElements);
+                }
+            }
+        }
+    }
+
+    private void refreshLiveThreads() {
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        int count;
+        while ((count = root.enumerate(liveThreads, true)) == liveThreads.length) {
+            liveThreads = new Thread[liveThreads.length * 2];
+        }
+        for (int i = count; i < liveThreadCount; i++) {
+            liveThreads[i] = null;
+        }
+        liveThreadCount = count;
+        if (nextThread >= count) {
+            nextThread = 0;
+        }
+    }
+
+    private void addSample(StackTraceElement[] stackTraceElements) {
+        if (stackTraceElements != null && stackTraceElements.length > 0) {
+            int node = CallTree.ROOT;
+            callTree.add(node, 1, 1, 0);
+            for (int i = stackTraceElements.length - 1; i >= 0; i--) {
+                int frame = frameTable.intern(stackTraceElements[i]);
+                int child = frame == FrameTable.FULL ? node : callTree.child(node, frame);
+                if (child == node) {
+                    //the tree or the frame table is full - attribute the rest of the stack to the deepest known path
+                    callTree.add(node, 0, 0, 1);
+                    break;
+                }
+                node = child;
+                callTree.add(node, 1, 1, i == 0 ? 1 : 0);
+            }
+        }
+    }
+
     private void cleanup() {
         List<ThreadInfo> removeList = null;
-        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
         for (Long id : currentMethods.keySet()) {
             ThreadInfo threadInfo = threadMXBean.getThreadInfo(id);
             if (threadInfo != null) {
@@ -0,0 +1,230 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.strategy.trace;
+
+import io.fabric8.apmagent.ApmConfiguration;
+import io.fabric8.apmagent.metrics.ApmAgentContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Periodically compares the self time of each instrumented method with the cost of the
+ * instrumentation itself, and stops instrumenting methods that are too cheap to be worth
+ * it - or, when the instrumentation as a whole uses more than its cpu budget, the most
+ * frequently called methods.
+ * <p/>
+ * Governed methods are removed from the byte code by re-transforming their class.
+ */
+class OverheadGovernor implements Runnable {
+    private static final Logger LOG = LoggerFactory.getLogger(OverheadGovernor.class);
+    private static final long INTERVAL = TimeUnit.SECONDS.toMillis(10);
+    private static final int CALIBRATION_ITERATIONS = 100000;
+    private static final long MIN_CALLS = 100;
+    private static final String CALIBRATION_METHOD = OverheadGovernor.class.getName() + "@calibrate() void";
+
+    private final TraceStrategy traceStrategy;
+    private final ApmAgentContext context;
+    private final ApmConfiguration configuration;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private Thread governorThread;
+    private long probeCost;
+    private long[] lastCalls = new long[0];
+    private long[] lastSelfTimes = new long[0];
+    private long lastCpuTime;
+    private long lastTime;
+
+    OverheadGovernor(TraceStrategy traceStrategy) {
+        this.traceStrategy = traceStrategy;
+        this.context = traceStrategy.getContext();
+        this.configuration = context.getConfiguration();
+    }
+
+    void start() {
+        if (started.compareAndSet(false, true)) {
+            governorThread = new Thread(this, "ApmOverheadGovernor");
+            governorThread.setDaemon(true);
+            governorThread.start();
+        }
+    }
+
+    /**
+     * Stops the governor, and instruments the methods it governed again
+     */
+    void stop() {
+        if (started.compareAndSet(true, false)) {
+            Thread t = governorThread;
+            governorThread = null;
+            if (t != null) {
+                t.interrupt();
+            }
+            if (!context.getGovernedMethods().isEmpty()) {
+                LOG.info("Overhead governor stopped - instrumenting governed methods again");
+                traceStrategy.retransform(context.clearGovernedMethods());
+            }
+        }
+    }
+
+    /**
+     * @return the measured cost, in nanoseconds, of the enter and exit probes of a single call
+     */
+    long getProbeCost() {
+        return probeCost;
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (probeCost == 0) {
+                probeCost = calibrate();
+                LOG.info("Measured instrumentation cost of " + probeCost + " ns per call");
+            }
+            resetBaseline();
+            while (started.get()) {
+                Thread.sleep(INTERVAL);
+                govern();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            LOG.error("Overhead governor failed", e);
+        }
+    }
+
+    /**
+     * Measures the enter/exit probes of an empty method, through the same entry points as
+     * the instrumented code. The calibration method and the metrics of this thread are
+     * discarded afterwards, so the calibration doesn't show up in the collected metrics
+     */
+    private long calibrate() {
+        int methodId = context.registerMethod(CALIBRATION_METHOD);
+        long result = Long.MAX_VALUE;
+        try {
+            //take the best of a few runs, so the JIT has had a chance to kick in
+            for (int run = 0; run < 5; run++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < CALIBRATION_ITERATIONS; i++) {
+                    context.enterMethod(methodId);
+                    context.exitMethod(methodId);
+                }
+                result = Math.min(result, (System.nanoTime() - start) / CALIBRATION_ITERATIONS);
+            }
+        } finally {
+            context.unregisterMethod(methodId);
+            context.discardThreadMetrics(Thread.currentThread());
+        }
+        return Math.max(1, result);
+    }
+
+    private void govern() {
+        int methodCount = context.getMethodCount();
+        long[] calls = new long[methodCount];
+        long[] selfTimes = new long[methodCount];
+        context.collectMethodTimes(calls, selfTimes);
+        long now = System.nanoTime();
+        long cpuTime = getProcessCpuTime(now);
+        long cpuDelta = cpuTime - lastCpuTime;
+
+        final long[] callDeltas = new long[methodCount];
+        long totalCalls = 0;
+        boolean changed = false;
+        int multiple = configuration.getOverheadProbeCostMultiple();
+        for (int id = 0; id < methodCount; id++) {
+            long callDelta = calls[id] - (id < lastCalls.length ? lastCalls[id] : 0);
+            long selfTimeDelta = selfTimes[id] - (id < lastSelfTimes.length ? lastSelfTimes[id] : 0);
+            //a thread that died takes its counts with it, so deltas can be negative
+            if (callDelta <= 0 || selfTimeDelta < 0 || context.isGoverned(context.getMethodName(id))) {
+                continue;
+            }
+            if (multiple > 0 && callDelta >= MIN_CALLS && selfTimeDelta / callDelta < multiple * probeCost) {
+                governMethod(id, "self time of " + (selfTimeDelta / callDelta) + " ns");
+                changed = true;
+            } else {
+                callDeltas[id] = callDelta;
+                totalCalls += callDelta;
+            }
+        }
+
+        double budget = configuration.getOverheadCpuBudget();
+        long allowed = (long) (cpuDelta * budget / 100);
+        long overhead = totalCalls * probeCost;
+        if (budget > 0 && cpuDelta > 0 && overhead > allowed) {
+            //the most frequently called methods cost the most to instrument
+            List<Integer> ids = new ArrayList<>();
+            for (int id = 0; id < methodCount; id++) {
+                if (callDeltas[id] > 0) {
+                    ids.add(id);
+                }
+            }
+            Collections.sort(ids, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer id1, Integer id2) {
+                    return Long.compare(callDeltas[id2], callDeltas[id1]);
+                }
+            });
+            for (int i = 0; i < ids.size() && overhead > allowed; i++) {
+                int id = ids.get(i);
+                governMethod(id, "cpu budget of " + budget + "% exceeded");
+                overhead -= callDeltas[id] * probeCost;
+                changed = true;
+            }
+        }
+
+        lastCalls = calls;
+        lastSelfTimes = selfTimes;
+        lastCpuTime = cpuTime;
+        lastTime = now;
+        if (changed) {
+            traceStrategy.retransform(context.buildDeltaList());
+        }
+    }
+
+    private void governMethod(int methodId, String reason) {
+        LOG.info("No longer instrumenting " + context.getMethodName(methodId) + ": " + reason);
+        context.governMethod(methodId);
+    }
+
+    private void resetBaseline() {
+        int methodCount = context.getMethodCount();
+        lastCalls = new long[methodCount];
+        lastSelfTimes = new long[methodCount];
+        context.collectMethodTimes(lastCalls, lastSelfTimes);
+        lastTime = System.nanoTime();
+        lastCpuTime = getProcessCpuTime(lastTime);
+    }
+
+    private long getProcessCpuTime(long now) {
+        OperatingSystemMXBean osMXBean = ManagementFactory.getOperatingSystemMXBean();
+        try {
+            if (osMXBean instanceof com.sun.management.OperatingSystemMXBean) {
+                return ((com.sun.management.OperatingSystemMXBean) osMXBean).getProcessCpuTime();
+            }
+        } catch (Throwable e) {
+            //not available on this jvm
+        }
+        //assume every processor was busy since the last time
+        long elapsed = lastTime > 0 ? now - lastTime : 0;
+        return lastCpuTime + elapsed * Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -48,6 +48,7 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
     private AtomicBoolean started = new AtomicBoolean();
     private AtomicBoolean cleanUp = new AtomicBoolean();
     private Thread transformThread;
+    private OverheadGovernor overheadGovernor;
 
     public TraceStrategy(ApmAgentContext context, Instrumentation instrumentation) {
         this.context = context;
@@ -67,13 +68,14 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
         if (started.compareAndSet(false, true)) {
             initialize();
             instrumentApplication();
+            updateOverheadGovernor();
         }
     }
 
     @Override
     public void stop() {
         if (started.compareAndSet(true, false)) {
-
+            updateOverheadGovernor();
         }
     }
 
@@ -98,6 +100,11 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
         }
     }
 
+    @Override
+    public String getCollapsedStacks() {
+        return context.getCollapsedStacks();
+    }
+
     public boolean isAudit(String className) {
         return configuration.isAudit(className);
     }
@@ -149,29 +156,50 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
     public void configurationChanged() {
         if (started.get()) {
             if (configuration.isFilterChanged()) {
-                List<ClassInfo> deltas = context.buildDeltaList();
-                if (deltas != null && !deltas.isEmpty()) {
-                    for (ClassInfo classInfo : deltas) {
-                        if (configuration.isAsyncTransformation()) {
-                            try {
-                                blockingQueue.put(classInfo.getOriginalClass());
-                            } catch (InterruptedException e) {
-                                Thread.currentThread().interrupt();
-                                break;
-                            }
-                        } else {
-                            try {
-                                instrumentation.retransformClasses(new Class[]{classInfo.getOriginalClass()});
-                            } catch (Throwable e) {
-                                LOG.error("Could not transform " + classInfo.getClassName(), e);
-                            }
-                        }
+                retransform(context.buildDeltaList());
+            }
+            if (configuration.isOverheadGovernorChanged()) {
+                updateOverheadGovernor();
+            }
+        }
+    }
+
+    /**
+     * The overhead governor, and its calibration, only run while the strategy is started
+     * and the governor is enabled
+     */
+    private synchronized void updateOverheadGovernor() {
+        if (started.get() && configuration.isOverheadGovernor()) {
+            if (overheadGovernor == null) {
+                overheadGovernor = new OverheadGovernor(this);
+            }
+            overheadGovernor.start();
+        } else if (overheadGovernor != null) {
+            overheadGovernor.stop();
+        }
+    }
+
+    void retransform(List<ClassInfo> deltas) {
+        if (deltas != null && !deltas.isEmpty()) {
+            for (ClassInfo classInfo : deltas) {
+                if (configuration.isAsyncTransformation()) {
+                    try {
+                        blockingQueue.put(classInfo.getOriginalClass());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
                     }
-                    if (configuration.isAsyncTransformation() && !blockingQueue.isEmpty()) {
-                        startTransformThread();
+                } else {
+                    try {
+                        instrumentation.retransformClasses(new Class[]{classInfo.getOriginalClass()});
+                    } catch (Throwable e) {
+                        LOG.error("Could not transform " + classInfo.getClassName(), e);
                     }
                 }
             }
+            if (configuration.isAsyncTransformation() && !blockingQueue.isEmpty()) {
+                startTransformThread();
+            }
         }
     }
 
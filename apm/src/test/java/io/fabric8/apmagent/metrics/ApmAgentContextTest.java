@@ -0,0 +1,77 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import io.fabric8.apmagent.ApmAgent;
+import io.fabric8.apmagent.ApmConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ApmAgentContextTest {
+    private ApmConfiguration configuration;
+    private int maxMethodMetrics;
+    private ApmAgentContext context;
+
+    @Before
+    public void setUp() {
+        configuration = ApmAgent.INSTANCE.getConfiguration();
+        maxMethodMetrics = configuration.getMaxMethodMetrics();
+        configuration.setMaxMethodMetrics(10);
+        context = new ApmAgentContext(ApmAgent.INSTANCE);
+    }
+
+    @After
+    public void tearDown() {
+        configuration.setMaxMethodMetrics(maxMethodMetrics);
+    }
+
+    @Test
+    public void testMethodsAreEvictedBelowTheMaximum() {
+        List<MethodMetrics> list = createMethodMetrics("a", 11);
+        //room is left for evicted methods to come back
+        assertEquals(9, context.evictMethodMetrics(list).size());
+        assertEquals(2, context.getArchivedMethodMetrics().size());
+        assertEquals(2, context.getMethodMetricsEvictions());
+
+        //no more are evicted until the maximum is exceeded again
+        assertEquals(10, context.evictMethodMetrics(createMethodMetrics("b", 10)).size());
+        assertEquals(2, context.getArchivedMethodMetrics().size());
+    }
+
+    @Test
+    public void testArchiveIsCapped() {
+        for (int i = 0; i < 5; i++) {
+            context.evictMethodMetrics(createMethodMetrics("m" + i, 14));
+        }
+        assertEquals(10, context.getArchivedMethodMetrics().size());
+    }
+
+    private List<MethodMetrics> createMethodMetrics(String prefix, int count) {
+        List<MethodMetrics> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = ApmAgentContextTest.class.getName() + "@" + prefix + i + "() void";
+            context.registerMethod(name);
+            list.add(new MethodMetrics(name));
+        }
+        return list;
+    }
+}
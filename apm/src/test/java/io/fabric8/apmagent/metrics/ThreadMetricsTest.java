@@ -0,0 +1,110 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import io.fabric8.apmagent.ApmAgent;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadMetricsTest {
+    private static final String OUTER = ThreadMetricsTest.class.getName() + "@outer() void";
+    private static final String INNER = ThreadMetricsTest.class.getName() + "@inner() void";
+
+    private ApmAgentContext context;
+    private ThreadMetrics threadMetrics;
+    private int outer;
+    private int inner;
+
+    @Before
+    public void setUp() {
+        context = new ApmAgentContext(ApmAgent.INSTANCE);
+        threadMetrics = new ThreadMetrics(context, Thread.currentThread());
+        outer = context.registerMethod(OUTER);
+        inner = context.registerMethod(INNER);
+    }
+
+    @Test
+    public void testNestedCalls() {
+        threadMetrics.enter(outer, false);
+        threadMetrics.enter(inner, false);
+        assertTrue(threadMetrics.exit(inner, false) >= 0);
+        assertTrue(threadMetrics.exit(outer, false) >= 0);
+
+        assertCalls(1, 1);
+    }
+
+    @Test
+    public void testExitSkippedByException() {
+        threadMetrics.enter(outer, false);
+        threadMetrics.enter(inner, false);
+        //the exception thrown by inner is caught by the caller of outer
+        assertTrue(threadMetrics.exit(outer, false) >= 0);
+
+        assertCalls(1, 1);
+        threadMetrics.enter(outer, false);
+        assertTrue(threadMetrics.exit(outer, false) >= 0);
+        assertCalls(2, 1);
+    }
+
+    @Test
+    public void testActivatedMidCall() {
+        threadMetrics.enter(outer, false);
+        threadMetrics.enter(inner, false);
+        assertTrue(threadMetrics.exit(inner, false) >= 0);
+        threadMetrics.setActive(INNER, false);
+
+        threadMetrics.enter(inner, false);
+        threadMetrics.setActive(INNER, true);
+        //inner was not timed when it was entered, so its exit must leave outer on the stack
+        assertEquals(-1, threadMetrics.exit(inner, false));
+        assertCalls(0, 1);
+
+        assertTrue(threadMetrics.exit(outer, false) >= 0);
+        assertCalls(1, 1);
+    }
+
+    @Test
+    public void testDeactivatedMidCall() {
+        threadMetrics.enter(outer, false);
+        threadMetrics.enter(inner, false);
+        threadMetrics.setActive(INNER, false);
+        //inner was timed when it was entered, so its frame is popped
+        assertTrue(threadMetrics.exit(inner, false) >= 0);
+        assertTrue(threadMetrics.exit(outer, false) >= 0);
+
+        assertCalls(1, 1);
+    }
+
+    @Test
+    public void testExitOfUnknownMethod() {
+        int unknown = context.registerMethod(ThreadMetricsTest.class.getName() + "@unknown() void");
+        threadMetrics.enter(outer, false);
+        assertEquals(-1, threadMetrics.exit(unknown, false));
+        assertTrue(threadMetrics.exit(outer, false) >= 0);
+
+        assertCalls(1, 0);
+    }
+
+    private void assertCalls(long outerCalls, long innerCalls) {
+        long[] calls = new long[context.getMethodCount()];
+        threadMetrics.addMethodTimes(calls, new long[calls.length]);
+        assertEquals("calls of outer", outerCalls, calls[outer]);
+        assertEquals("calls of inner", innerCalls, calls[inner]);
+    }
+}
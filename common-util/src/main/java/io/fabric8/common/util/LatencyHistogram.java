@@ -0,0 +1,172 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.common.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock free latency histogram with logarithmic buckets, each power of two
+ * being split into {@link #SUB_BUCKET_COUNT} linear sub buckets, which bounds
+ * the relative error of a recorded value to 1/{@link #SUB_BUCKET_COUNT}.
+ * <p/>
+ * Recording threads are spread over one stripe per processor (at most 16), each
+ * allocated on first use, so they don't contend on the same counters. The stripes
+ * are only merged when a {@link LatencySnapshot} is taken.
+ * <p/>
+ * Besides the lifetime snapshot, {@link #getIntervalSnapshot()} returns the values
+ * recorded since it was last called, see {@link LatencyWindow}.
+ */
+public class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    //values above 2^40 (~18 minutes in nanos) are recorded in the last bucket
+    static final int MAX_EXPONENT = 40;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+    private static final int COUNT_INDEX = BUCKET_COUNT;
+    private static final int SUM_INDEX = BUCKET_COUNT + 1;
+    private static final int LENGTH = BUCKET_COUNT + 2;
+    private static final int MAX_STRIPES = 16;
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes;
+    private final int stripeMask;
+    //the totals at the time of the last interval snapshot, guarded by this
+    private long[] intervalStart;
+
+    public LatencyHistogram() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param stripeCount - the number of stripes, rounded up to a power of two and capped at 16.
+     *                    Use 1 when only a single thread records into the histogram
+     */
+    public LatencyHistogram(int stripeCount) {
+        int size = 1;
+        while (size < Math.min(stripeCount, MAX_STRIPES)) {
+            size <<= 1;
+        }
+        this.stripes = new AtomicReferenceArray<>(size);
+        this.stripeMask = size - 1;
+    }
+
+    /**
+     * Records a value, negative values are ignored
+     */
+    public void record(long value) {
+        if (value >= 0) {
+            AtomicLongArray stripe = getStripe();
+            stripe.incrementAndGet(bucketIndex(value));
+            stripe.incrementAndGet(COUNT_INDEX);
+            stripe.addAndGet(SUM_INDEX, value);
+        }
+    }
+
+    /**
+     * @return the number of values recorded so far - this is cheaper than taking a snapshot
+     */
+    public long getCount() {
+        long result = 0;
+        for (int i = 0; i < stripes.length(); i++) {
+            AtomicLongArray stripe = stripes.get(i);
+            if (stripe != null) {
+                result += stripe.get(COUNT_INDEX);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return all the values recorded so far
+     */
+    public LatencySnapshot getSnapshot() {
+        return createSnapshot(getTotals(), null);
+    }
+
+    /**
+     * @return the values recorded since the previous call of this method, or since the histogram was created
+     */
+    public synchronized LatencySnapshot getIntervalSnapshot() {
+        long[] totals = getTotals();
+        LatencySnapshot result = createSnapshot(totals, intervalStart);
+        intervalStart = totals;
+        return result;
+    }
+
+    private long[] getTotals() {
+        long[] totals = new long[LENGTH];
+        for (int i = 0; i < stripes.length(); i++) {
+            AtomicLongArray stripe = stripes.get(i);
+            if (stripe != null) {
+                for (int j = 0; j < LENGTH; j++) {
+                    totals[j] += stripe.get(j);
+                }
+            }
+        }
+        return totals;
+    }
+
+    private static LatencySnapshot createSnapshot(long[] totals, long[] start) {
+        long[] buckets = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = start != null ? Math.max(0, totals[i] - start[i]) : totals[i];
+        }
+        long count = start != null ? totals[COUNT_INDEX] - start[COUNT_INDEX] : totals[COUNT_INDEX];
+        long sum = start != null ? totals[SUM_INDEX] - start[SUM_INDEX] : totals[SUM_INDEX];
+        return new LatencySnapshot(buckets, Math.max(0, count), Math.max(0, sum));
+    }
+
+    private AtomicLongArray getStripe() {
+        int index = (int) Thread.currentThread().getId() & stripeMask;
+        AtomicLongArray result = stripes.get(index);
+        if (result == null) {
+            result = new AtomicLongArray(LENGTH);
+            if (!stripes.compareAndSet(index, null, result)) {
+                result = stripes.get(index);
+            }
+        }
+        return result;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT;
+        return (SUB_BUCKET_COUNT + subBucket) << shift;
+    }
+
+    static long bucketWidth(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return 1;
+        }
+        return 1L << (index / SUB_BUCKET_COUNT - 1);
+    }
+}
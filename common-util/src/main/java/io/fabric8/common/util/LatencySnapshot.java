@@ -0,0 +1,167 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.common.util;
+
+/**
+ * An immutable view of the values recorded by a {@link LatencyHistogram}.
+ * Values are reported as the midpoint of the bucket they fall into.
+ */
+public class LatencySnapshot {
+    public static final LatencySnapshot EMPTY = new LatencySnapshot(new long[LatencyHistogram.BUCKET_COUNT], 0, 0);
+    private static final int MAX_VALUES = 1024;
+
+    private final long[] buckets;
+    private final long count;
+    private final long sumCount;
+    private final long sum;
+    private final int minIndex;
+    private final int maxIndex;
+    private final double stdDev;
+
+    /**
+     * @param buckets - the merged bucket counts
+     * @param sumCount - the number of values that make up the sum
+     * @param sum - the exact sum of the recorded values
+     */
+    LatencySnapshot(long[] buckets, long sumCount, long sum) {
+        //the histogram is read while values are being recorded, so the
+        //bucket counts and the sum may be off by a few in-flight values
+        this.buckets = buckets;
+        this.sumCount = sumCount;
+        this.sum = sum;
+        long total = 0;
+        int min = -1;
+        int max = -1;
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] > 0) {
+                if (min < 0) {
+                    min = i;
+                }
+                max = i;
+                total += buckets[i];
+            }
+        }
+        this.count = total;
+        this.minIndex = min;
+        this.maxIndex = max;
+        this.stdDev = calculateStdDev();
+    }
+
+    /**
+     * @return a snapshot holding the values of both this and the given snapshot
+     */
+    public LatencySnapshot merge(LatencySnapshot other) {
+        if (other.count == 0 && other.sumCount == 0) {
+            return this;
+        }
+        if (count == 0 && sumCount == 0) {
+            return other;
+        }
+        long[] merged = new long[buckets.length];
+        for (int i = 0; i < merged.length; i++) {
+            merged[i] = buckets[i] + other.buckets[i];
+        }
+        return new LatencySnapshot(merged, sumCount + other.sumCount, sum + other.sum);
+    }
+
+    public long size() {
+        return count;
+    }
+
+    /**
+     * @return the exact sum of the values
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMin() {
+        return minIndex >= 0 ? bucketValue(minIndex) : 0;
+    }
+
+    public long getMax() {
+        return maxIndex >= 0 ? bucketValue(maxIndex) : 0;
+    }
+
+    public double getMean() {
+        return sumCount > 0 ? (double) sum / sumCount : 0;
+    }
+
+    public double getStdDev() {
+        return stdDev;
+    }
+
+    /**
+     * @param quantile - a value between 0 and 1
+     * @return the value at the given quantile
+     */
+    public long getValue(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        if (rank < 1) {
+            rank = 1;
+        }
+        long seen = 0;
+        for (int i = minIndex; i <= maxIndex; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return bucketValue(i);
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * @return up to {@link #MAX_VALUES} values, evenly spread over the recorded distribution, in ascending order
+     */
+    public long[] getValues() {
+        int size = (int) Math.min(count, MAX_VALUES);
+        long[] result = new long[size];
+        if (size > 0) {
+            int bucket = minIndex;
+            long seen = buckets[bucket];
+            for (int i = 0; i < size; i++) {
+                long rank = (long) Math.ceil((i + 0.5) * count / size);
+                while (seen < rank && bucket < maxIndex) {
+                    seen += buckets[++bucket];
+                }
+                result[i] = bucketValue(bucket);
+            }
+        }
+        return result;
+    }
+
+    private double calculateStdDev() {
+        if (count <= 1) {
+            return 0;
+        }
+        double mean = getMean();
+        double variance = 0;
+        for (int i = minIndex; i <= maxIndex; i++) {
+            if (buckets[i] > 0) {
+                double diff = bucketValue(i) - mean;
+                variance += buckets[i] * diff * diff;
+            }
+        }
+        return Math.sqrt(variance / (count - 1));
+    }
+
+    private static long bucketValue(int index) {
+        return LatencyHistogram.bucketLowerBound(index) + (LatencyHistogram.bucketWidth(index) - 1) / 2;
+    }
+}
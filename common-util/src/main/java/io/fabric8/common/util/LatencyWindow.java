@@ -0,0 +1,68 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.common.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The values recorded by a {@link LatencyHistogram} over a sliding window, so that the reported
+ * percentiles follow the recent behaviour rather than the whole lifetime of the histogram.
+ * <p/>
+ * Each {@link #update()} adds the values recorded since the previous update to the current window.
+ * Once the window is full it becomes the previous one, and the snapshot covers the previous
+ * window and the current, partial, one.
+ * <p/>
+ * The values are only told apart by the update which collects them, so the window should be updated
+ * periodically, more than once a window. If it was not updated for two windows or more, the previous
+ * window is dropped and the snapshot covers the values recorded since the last update.
+ */
+public class LatencyWindow {
+    private final LatencyHistogram histogram;
+    private final long windowNanos;
+    private LatencySnapshot previous = LatencySnapshot.EMPTY;
+    private LatencySnapshot current = LatencySnapshot.EMPTY;
+    private long windowStart;
+
+    public LatencyWindow(LatencyHistogram histogram, long window, TimeUnit unit) {
+        this.histogram = histogram;
+        this.windowNanos = unit.toNanos(window);
+        this.windowStart = System.nanoTime();
+    }
+
+    /**
+     * @return the values of the previous and the current window, including those recorded since the last update
+     */
+    public LatencySnapshot update() {
+        return update(System.nanoTime());
+    }
+
+    synchronized LatencySnapshot update(long now) {
+        LatencySnapshot interval = histogram.getIntervalSnapshot();
+        if (now - windowStart >= 2 * windowNanos) {
+            previous = LatencySnapshot.EMPTY;
+            current = interval;
+            windowStart = now;
+            return current;
+        }
+        current = current.merge(interval);
+        if (now - windowStart >= windowNanos) {
+            previous = current;
+            current = LatencySnapshot.EMPTY;
+            windowStart = now;
+        }
+        return previous.merge(current);
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.common.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsAreContiguous() {
+        int previous = -1;
+        for (long value = 0; value < 100000; value++) {
+            int bucket = LatencyHistogram.bucketIndex(value);
+            assertTrue("bucket of " + value, bucket == previous || bucket == previous + 1);
+            assertTrue("lower bound of " + value, LatencyHistogram.bucketLowerBound(bucket) <= value);
+            assertTrue("upper bound of " + value, LatencyHistogram.bucketLowerBound(bucket) + LatencyHistogram.bucketWidth(bucket) > value);
+            previous = bucket;
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        LatencySnapshot snapshot = histogram.getSnapshot();
+
+        assertEquals(1000, snapshot.size());
+        assertEquals(1000, histogram.getCount());
+        assertWithin(TimeUnit.MILLISECONDS.toNanos(1000), snapshot.getMax());
+        assertWithin(TimeUnit.MILLISECONDS.toNanos(500), snapshot.getValue(0.5));
+        assertWithin(TimeUnit.MILLISECONDS.toNanos(990), snapshot.getValue(0.99));
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(500500), (long) snapshot.getMean());
+    }
+
+    @Test
+    public void testIntervalSnapshots() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.record(1000);
+        assertEquals(2, histogram.getIntervalSnapshot().size());
+
+        histogram.record(5000);
+        LatencySnapshot interval = histogram.getIntervalSnapshot();
+        assertEquals(1, interval.size());
+        assertEquals(5000, interval.getSum());
+        assertEquals(0, histogram.getIntervalSnapshot().size());
+        assertEquals(3, histogram.getSnapshot().size());
+    }
+
+    @Test
+    public void testWindowForgetsOldValues() {
+        LatencyHistogram histogram = new LatencyHistogram(1);
+        LatencyWindow window = new LatencyWindow(histogram, 1, TimeUnit.MINUTES);
+        long now = System.nanoTime();
+
+        histogram.record(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(1, window.update(now).size());
+
+        // the slow startup call is kept while its window is the previous one
+        now += TimeUnit.MINUTES.toNanos(1);
+        histogram.record(1000);
+        assertEquals(2, window.update(now).size());
+
+        now += TimeUnit.MINUTES.toNanos(1);
+        histogram.record(1000);
+        LatencySnapshot snapshot = window.update(now);
+        assertEquals(1, snapshot.size());
+        assertWithin(1000, snapshot.getValue(0.99));
+    }
+
+    @Test
+    public void testWindowNotUpdatedForLongDropsThePreviousWindow() {
+        LatencyHistogram histogram = new LatencyHistogram(1);
+        LatencyWindow window = new LatencyWindow(histogram, 1, TimeUnit.MINUTES);
+        long now = System.nanoTime();
+
+        histogram.record(TimeUnit.SECONDS.toNanos(10));
+        now += TimeUnit.MINUTES.toNanos(1);
+        assertEquals(1, window.update(now).size());
+
+        // only the values recorded since the last update are reported
+        histogram.record(1000);
+        now += TimeUnit.MINUTES.toNanos(60);
+        LatencySnapshot snapshot = window.update(now);
+        assertEquals(1, snapshot.size());
+        assertWithin(1000, snapshot.getValue(0.99));
+
+        now += TimeUnit.SECONDS.toNanos(10);
+        assertEquals(1, window.update(now).size());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected " + expected + " but was " + actual, Math.abs(expected - actual) <= expected / 8);
+    }
+}
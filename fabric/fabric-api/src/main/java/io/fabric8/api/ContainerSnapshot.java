@@ -0,0 +1,159 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable view of all the containers of the fabric, as seen by the {@link DataStore} at one point in time.
+ *
+ * The snapshot is stamped with a version which changes whenever the underlying container data changes,
+ * so callers can tell whether two snapshots are the same without comparing their content.
+ */
+public final class ContainerSnapshot {
+
+    private final long version;
+    private final Map<String, ContainerData> containers;
+
+    public ContainerSnapshot(long version, Collection<ContainerData> containers) {
+        this.version = version;
+        Map<String, ContainerData> map = new LinkedHashMap<String, ContainerData>();
+        for (ContainerData container : containers) {
+            map.put(container.getId(), container);
+        }
+        this.containers = Collections.unmodifiableMap(map);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<String> getContainerIds() {
+        return new ArrayList<String>(containers.keySet());
+    }
+
+    public Collection<ContainerData> getContainers() {
+        return containers.values();
+    }
+
+    /**
+     * Returns the data of the given container or null if it does not exist in this snapshot
+     */
+    public ContainerData getContainer(String containerId) {
+        return containers.get(containerId);
+    }
+
+    public boolean hasContainer(String containerId) {
+        return containers.containsKey(containerId);
+    }
+
+    /**
+     * Returns the ids of the containers of the given version which have the given profile assigned.
+     * Containers without profiles are associated with the default profile of the version if it has one,
+     * as {@link Container#getProfiles()} does.
+     */
+    public List<String> getAssociatedContainerIds(Version version, String profileId) {
+        String versionId = version.getId();
+        boolean defaultProfile = ZkDefs.DEFAULT_PROFILE.equals(profileId) && version.hasProfile(ZkDefs.DEFAULT_PROFILE);
+        List<String> answer = new ArrayList<String>();
+        for (ContainerData container : containers.values()) {
+            if (!versionId.equals(container.getVersionId())) {
+                continue;
+            }
+            List<String> profileIds = container.getProfileIds();
+            if (profileIds.contains(profileId) || (profileIds.isEmpty() && defaultProfile)) {
+                answer.add(container.getId());
+            }
+        }
+        return answer;
+    }
+
+    @Override
+    public String toString() {
+        return "ContainerSnapshot[version=" + version + ", containers=" + containers.keySet() + "]";
+    }
+
+    /**
+     * The data of a single container. Attributes are the raw values stored for the container,
+     * i.e. without any placeholder substitution.
+     */
+    public static final class ContainerData {
+
+        private final String id;
+        private final String parentId;
+        private final String versionId;
+        private final List<String> profileIds;
+        private final boolean alive;
+        private final Map<DataStore.ContainerAttribute, String> attributes;
+
+        public ContainerData(String id, String parentId, String versionId, List<String> profileIds, boolean alive, Map<DataStore.ContainerAttribute, String> attributes) {
+            this.id = id;
+            this.parentId = parentId != null ? parentId : "";
+            this.versionId = versionId;
+            this.profileIds = Collections.unmodifiableList(new ArrayList<String>(profileIds));
+            this.alive = alive;
+            Map<DataStore.ContainerAttribute, String> copy = new EnumMap<DataStore.ContainerAttribute, String>(DataStore.ContainerAttribute.class);
+            copy.putAll(attributes);
+            this.attributes = Collections.unmodifiableMap(copy);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Returns the id of the parent container or an empty string for root containers
+         */
+        public String getParentId() {
+            return parentId;
+        }
+
+        public boolean isRoot() {
+            return parentId.isEmpty();
+        }
+
+        public String getVersionId() {
+            return versionId;
+        }
+
+        public List<String> getProfileIds() {
+            return profileIds;
+        }
+
+        public boolean isAlive() {
+            return alive;
+        }
+
+        public String getAttribute(DataStore.ContainerAttribute attribute) {
+            return attributes.get(attribute);
+        }
+
+        public Map<DataStore.ContainerAttribute, String> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public String toString() {
+            return "ContainerData[id=" + id + ", version=" + versionId + ", profiles=" + profileIds + ", alive=" + alive + "]";
+        }
+    }
+}
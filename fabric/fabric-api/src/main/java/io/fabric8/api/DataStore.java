@@ -70,6 +70,14 @@ public interface DataStore {
 
     void setContainerAlive(String id, boolean flag);
 
+    /**
+     * Returns an immutable snapshot of all the containers, which can be read without going back to the data store.
+     * The snapshot is only eventually consistent: it is built from caches which are updated asynchronously, so
+     * a container which has just been created, deleted or changed may not be reflected yet. Callers which need to
+     * see their own changes, such as checks before deleting a container, should read the data store directly.
+     */
+    ContainerSnapshot getContainerSnapshot();
+
 
 
     public enum ContainerAttribute {
@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.api;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ContainerSnapshotTest {
+
+    @Test
+    public void testAssociatedContainers() {
+        ContainerSnapshot snapshot = new ContainerSnapshot(1, Arrays.asList(
+                container("root", "", "1.0", Arrays.asList("fabric", "mq")),
+                container("child", "root", "1.0", Arrays.asList("mq")),
+                container("other", "", "1.1", Arrays.asList("mq")),
+                container("bare", "", "1.0", Collections.<String>emptyList())));
+
+        Version version10 = version("1.0", ZkDefs.DEFAULT_PROFILE, "fabric", "mq");
+        Version version11 = version("1.1", "mq");
+        Assert.assertEquals(Arrays.asList("root", "child"), snapshot.getAssociatedContainerIds(version10, "mq"));
+        Assert.assertEquals(Arrays.asList("other"), snapshot.getAssociatedContainerIds(version11, "mq"));
+        Assert.assertEquals(Arrays.asList("bare"), snapshot.getAssociatedContainerIds(version10, ZkDefs.DEFAULT_PROFILE));
+        Assert.assertTrue(snapshot.getAssociatedContainerIds(version11, "fabric").isEmpty());
+    }
+
+    @Test
+    public void testNoDefaultProfileInVersion() {
+        ContainerSnapshot snapshot = new ContainerSnapshot(1, Arrays.asList(
+                container("bare", "", "1.1", Collections.<String>emptyList())));
+
+        // as Container.getProfiles(), a container without profiles only gets the default profile if its version has one
+        Assert.assertTrue(snapshot.getAssociatedContainerIds(version("1.1", "mq"), ZkDefs.DEFAULT_PROFILE).isEmpty());
+        Assert.assertEquals(Arrays.asList("bare"), snapshot.getAssociatedContainerIds(version("1.1", ZkDefs.DEFAULT_PROFILE), ZkDefs.DEFAULT_PROFILE));
+    }
+
+    @Test
+    public void testContainerData() {
+        Map<DataStore.ContainerAttribute, String> attributes = new HashMap<DataStore.ContainerAttribute, String>();
+        attributes.put(DataStore.ContainerAttribute.Resolver, "localhostname");
+        ContainerSnapshot.ContainerData data = new ContainerSnapshot.ContainerData("child", null, "1.0", Arrays.asList("mq"), true, attributes);
+        attributes.clear();
+
+        ContainerSnapshot snapshot = new ContainerSnapshot(7, Collections.singletonList(data));
+        Assert.assertEquals(7, snapshot.getVersion());
+        Assert.assertTrue(snapshot.hasContainer("child"));
+        Assert.assertNull(snapshot.getContainer("root"));
+
+        ContainerSnapshot.ContainerData container = snapshot.getContainer("child");
+        Assert.assertTrue(container.isRoot());
+        Assert.assertTrue(container.isAlive());
+        Assert.assertEquals("localhostname", container.getAttribute(DataStore.ContainerAttribute.Resolver));
+        Assert.assertNull(container.getAttribute(DataStore.ContainerAttribute.Ip));
+    }
+
+    private static Version version(final String versionId, String... profileIds) {
+        final List<String> profiles = Arrays.asList(profileIds);
+        return (Version) Proxy.newProxyInstance(Version.class.getClassLoader(), new Class<?>[]{Version.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("getId")) {
+                    return versionId;
+                } else if (method.getName().equals("hasProfile")) {
+                    return profiles.contains(args[0]);
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static ContainerSnapshot.ContainerData container(String id, String parentId, String versionId, List<String> profileIds) {
+        return new ContainerSnapshot.ContainerData(id, parentId, versionId, profileIds, false, Collections.<DataStore.ContainerAttribute, String>emptyMap());
+    }
+}
@@ -16,6 +16,8 @@
 package io.fabric8.core.jmx;
 
 import io.fabric8.api.Container;
+import io.fabric8.api.ContainerSnapshot;
+import io.fabric8.api.DataStore;
 import io.fabric8.api.FabricException;
 import io.fabric8.api.FabricService;
 import io.fabric8.api.Ids;
@@ -213,20 +215,21 @@ public class BeanUtils {
         return ids;
     }
 
+    /**
+     * Returns the ids of the containers of the profile from the container snapshot, as profiles are usually
+     * converted in bulk for JMX and do not need to see changes which have only just been made
+     */
     public static List<String> fetchContainers(FabricService fabricService, Profile self) {
-        List<String> answer = new ArrayList<String>();
-        String versionId = self.getVersion();
-        String profileId = self.getId();
-        for (Container c : fabricService.getAssociatedContainers(versionId, profileId)) {
-            answer.add(c.getId());
+        Version version = fabricService.adapt(ProfileService.class).getVersion(self.getVersion());
+        if (version == null) {
+            return new ArrayList<String>();
         }
-        return answer;
+        ContainerSnapshot snapshot = fabricService.adapt(DataStore.class).getContainerSnapshot();
+        return snapshot.getAssociatedContainerIds(version, self.getId());
     }
 
     public static int fetchContainerCount(FabricService fabricService, Profile self) {
-        String versionId = self.getVersion();
-        String profileId = self.getId();
-        return fabricService.getAssociatedContainers(versionId, profileId).length;
+        return fetchContainers(fabricService, self).size();
     }
 
     public static List<String> fetchConfigurations(Profile self) {
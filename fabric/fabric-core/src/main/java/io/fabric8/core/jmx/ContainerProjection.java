@@ -0,0 +1,434 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.core.jmx;
+
+import io.fabric8.api.Container;
+import io.fabric8.api.ContainerSnapshot;
+import io.fabric8.api.DataStore;
+import io.fabric8.api.FabricException;
+import io.fabric8.api.FabricService;
+import io.fabric8.api.Profile;
+import io.fabric8.api.ProfileService;
+import io.fabric8.api.Profiles;
+import io.fabric8.api.Version;
+import io.fabric8.api.ZkDefs;
+import io.fabric8.internal.ContainerImpl;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.beanutils.PropertyUtils;
+
+/**
+ * Converts containers to maps of the requested fields, as {@link BeanUtils#convertContainerToMap} does.
+ *
+ * The fields are resolved to accessors once. Fields known to the {@link ContainerSnapshot} are read from it,
+ * lookups that span containers (such as children or ensemble membership) are done once per projection,
+ * and only the remaining fields go to the {@link Container} getters.
+ */
+final class ContainerProjection {
+
+    private static final Map<String, Method> CONTAINER_GETTERS = getContainerGetters();
+
+    private final List<String> fields;
+    private final List<FieldAccessor> accessors;
+    private final boolean containersRequired;
+
+    private ContainerProjection(List<String> fields, List<FieldAccessor> accessors) {
+        this.fields = fields;
+        this.accessors = accessors;
+        boolean required = false;
+        for (FieldAccessor accessor : accessors) {
+            required |= accessor.requiresContainer();
+        }
+        this.containersRequired = required;
+    }
+
+    static ContainerProjection compile(List<String> fields) {
+        List<FieldAccessor> accessors = new ArrayList<FieldAccessor>(fields.size());
+        for (String field : fields) {
+            accessors.add(createAccessor(field));
+        }
+        return new ContainerProjection(new ArrayList<String>(fields), accessors);
+    }
+
+    /**
+     * Projects all the containers of the snapshot
+     */
+    List<Map<String, Object>> project(FabricService fabricService, ContainerSnapshot snapshot) {
+        return project(fabricService, snapshot, null);
+    }
+
+    /**
+     * Projects all the containers of the snapshot, adding the given fields of their profiles as "profiles"
+     */
+    List<Map<String, Object>> project(FabricService fabricService, ContainerSnapshot snapshot, List<String> profileFields) {
+        Context context = new Context(fabricService, snapshot);
+        List<Map<String, Object>> answer = new ArrayList<Map<String, Object>>(snapshot.getContainers().size());
+        for (ContainerSnapshot.ContainerData data : snapshot.getContainers()) {
+            Map<String, Object> map = project(context, data);
+            if (map == null) {
+                continue;
+            }
+            if (profileFields != null) {
+                map.put("profiles", context.getProfileMaps(data, profileFields));
+            }
+            answer.add(map);
+        }
+        return answer;
+    }
+
+    private Map<String, Object> project(Context context, ContainerSnapshot.ContainerData data) {
+        Container container = null;
+        if (containersRequired) {
+            container = context.getContainer(data.getId());
+            if (container == null) {
+                // deleted after the snapshot was taken
+                return null;
+            }
+        }
+        Map<String, Object> answer = new TreeMap<String, Object>();
+        for (int i = 0; i < accessors.size(); i++) {
+            answer.put(fields.get(i), accessors.get(i).get(context, data, container));
+        }
+        return answer;
+    }
+
+    private static FieldAccessor createAccessor(String field) {
+        if (field.equalsIgnoreCase("profiles") || field.equalsIgnoreCase("profileIds")) {
+            return new FieldAccessor() {
+                @Override
+                Object get(Context context, ContainerSnapshot.ContainerData data, Container container) {
+                    return context.getProfileIds(data);
+                }
+            };
+        } else if (field.equalsIgnoreCase("childrenIds") || field.equalsIgnoreCase("children")) {
+            return new FieldAccessor() {
+                @Override
+                Object get(Context context, ContainerSnapshot.ContainerData data, Container container) {
+                    return context.getChildrenIds(data.getId());
+                }
+            };
+        } else if (field.equalsIgnoreCase("parent") || field.equalsIgnoreCase("parentId")) {
+            return new FieldAccessor() {
+                @Override
+                Object get(Context context, ContainerSnapshot.ContainerData data, Container container) {
+                    return data.isRoot() ? null : data.getParentId();
+                }
+            };
+        } else if (field.equalsIgnoreCase("version") || field.equalsIgnoreCase("versionId")) {
+            return new FieldAccessor() {
+                @Override
+                Object get(Context context, ContainerSnapshot.ContainerData data, Container container) {
+                    return data.getVersionId();
+                }
+            };
+        } else if (field.equals("id")) {
+            return new FieldAccessor() {
+                @Override
+                Object get(Context context, ContainerSnapshot.ContainerData data, Container container) {
+                    return data.getId();
+                }
+            };
+        } else if (field.equals("alive")) {
+            return new FieldAccessor() {
+                @Override
+                Object get(Context context, ContainerSnapshot.ContainerData data, Container container) {
+                    return data.isAlive();
+                }
+            };
+        } else if (field.equals("root")) {
+            return new FieldAccessor() {
+                @Override
+                Object get(Context context, ContainerSnapshot.ContainerData data, Container container) {
+                    return data.isRoot();
+                }
+            };
+        } else if (field.equals("ensembleServer")) {
+            return new FieldAccessor() {
+                @Override
+                Object get(Context context, ContainerSnapshot.ContainerData data, Container container) {
+                    return context.getEnsembleContainers().contains(data.getId());
+                }
+            };
+        } else if (field.equals("location")) {
+            return new AttributeAccessor(DataStore.ContainerAttribute.Location);
+        } else if (field.equals("geoLocation")) {
+            return new AttributeAccessor(DataStore.ContainerAttribute.GeoLocation);
+        } else if (field.equals("minimumPort")) {
+            return new PortAccessor(DataStore.ContainerAttribute.PortMin);
+        } else if (field.equals("maximumPort")) {
+            return new PortAccessor(DataStore.ContainerAttribute.PortMax);
+        } else if (field.equalsIgnoreCase("overlayProfile")) {
+            return new ContainerAccessor() {
+                @Override
+                Object get(Context context, ContainerSnapshot.ContainerData data, Container container) {
+                    Profile effectiveProfile = Profiles.getEffectiveProfile(context.fabricService, container.getOverlayProfile());
+                    return BeanUtils.convertProfileToMap(context.fabricService, effectiveProfile, BeanUtils.getFields(Profile.class));
+                }
+            };
+        }
+        Method getter = CONTAINER_GETTERS.get(field);
+        if (getter != null) {
+            return new GetterAccessor(getter);
+        }
+        // nested or unknown properties are left to bean utils
+        return new PropertyAccessor(field);
+    }
+
+    private static Map<String, Method> getContainerGetters() {
+        Map<String, Method> answer = new HashMap<String, Method>();
+        for (PropertyDescriptor desc : PropertyUtils.getPropertyDescriptors(Container.class)) {
+            if (desc.getReadMethod() != null) {
+                answer.put(desc.getName(), desc.getReadMethod());
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * The lookups shared by all the containers of one projection, which are only done when a field needs them.
+     */
+    private static final class Context {
+
+        private final FabricService fabricService;
+        private final ContainerSnapshot snapshot;
+        private Map<String, Container> containers;
+        private Set<String> existingContainers;
+        private Map<String, List<String>> childrenIds;
+        private Set<String> ensembleContainers;
+        private final Map<String, Version> versions = new HashMap<String, Version>();
+        private final Map<String, Map<String, Object>> profileMaps = new HashMap<String, Map<String, Object>>();
+
+        Context(FabricService fabricService, ContainerSnapshot snapshot) {
+            this.fabricService = fabricService;
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * Returns the container of the snapshot or null if it no longer exists
+         */
+        Container getContainer(String containerId) {
+            if (containers == null) {
+                containers = new HashMap<String, Container>();
+            }
+            if (!containers.containsKey(containerId)) {
+                Container container = null;
+                if (snapshot.hasContainer(containerId) && getExistingContainers().contains(containerId)) {
+                    container = createContainer(containerId);
+                }
+                containers.put(containerId, container);
+            }
+            return containers.get(containerId);
+        }
+
+        // read once, as DataStore.hasContainer() reads all the containers each time
+        private Set<String> getExistingContainers() {
+            if (existingContainers == null) {
+                existingContainers = new HashSet<String>(fabricService.adapt(DataStore.class).getContainers());
+            }
+            return existingContainers;
+        }
+
+        // the parents are taken from the snapshot too
+        private Container createContainer(String containerId) {
+            ContainerSnapshot.ContainerData data = snapshot.getContainer(containerId);
+            Container parent = data.isRoot() ? null : getContainer(data.getParentId());
+            return new ContainerImpl(parent, containerId, fabricService);
+        }
+
+        List<String> getChildrenIds(String containerId) {
+            if (childrenIds == null) {
+                childrenIds = new HashMap<String, List<String>>();
+                for (ContainerSnapshot.ContainerData data : snapshot.getContainers()) {
+                    if (!data.isRoot()) {
+                        List<String> ids = childrenIds.get(data.getParentId());
+                        if (ids == null) {
+                            ids = new ArrayList<String>();
+                            childrenIds.put(data.getParentId(), ids);
+                        }
+                        ids.add(data.getId());
+                    }
+                }
+            }
+            List<String> answer = childrenIds.get(containerId);
+            return answer != null ? new ArrayList<String>(answer) : new ArrayList<String>();
+        }
+
+        Set<String> getEnsembleContainers() {
+            if (ensembleContainers == null) {
+                ensembleContainers = new HashSet<String>(fabricService.adapt(DataStore.class).getEnsembleContainers());
+            }
+            return ensembleContainers;
+        }
+
+        /**
+         * Returns the profile ids of the container, falling back to the default profile of its version
+         * as {@link Container#getProfiles()} does
+         */
+        List<String> getProfileIds(ContainerSnapshot.ContainerData data) {
+            List<String> profileIds = data.getProfileIds();
+            if (!profileIds.isEmpty()) {
+                return profileIds;
+            }
+            Version version = getVersion(data.getVersionId());
+            if (version != null && version.getProfile(ZkDefs.DEFAULT_PROFILE) != null) {
+                return Collections.singletonList(ZkDefs.DEFAULT_PROFILE);
+            }
+            return Collections.emptyList();
+        }
+
+        List<Map<String, Object>> getProfileMaps(ContainerSnapshot.ContainerData data, List<String> profileFields) {
+            List<Map<String, Object>> answer = new ArrayList<Map<String, Object>>();
+            Version version = getVersion(data.getVersionId());
+            if (version == null) {
+                return answer;
+            }
+            for (String profileId : data.getProfileIds()) {
+                answer.add(getProfileMap(version, version.getRequiredProfile(profileId), profileFields));
+            }
+            if (data.getProfileIds().isEmpty()) {
+                Profile defaultProfile = version.getProfile(ZkDefs.DEFAULT_PROFILE);
+                if (defaultProfile != null) {
+                    answer.add(getProfileMap(version, defaultProfile, profileFields));
+                }
+            }
+            return answer;
+        }
+
+        // containers usually share their profiles, so each profile is only converted once
+        private Map<String, Object> getProfileMap(Version version, Profile profile, List<String> profileFields) {
+            String key = version.getId() + "/" + profile.getId();
+            Map<String, Object> answer = profileMaps.get(key);
+            if (answer == null) {
+                answer = BeanUtils.convertProfileToMap(fabricService, profile, profileFields);
+                profileMaps.put(key, answer);
+            }
+            return answer;
+        }
+
+        private Version getVersion(String versionId) {
+            if (versionId == null) {
+                return null;
+            }
+            Version version = versions.get(versionId);
+            if (version == null) {
+                version = fabricService.adapt(ProfileService.class).getVersion(versionId);
+                versions.put(versionId, version);
+            }
+            return version;
+        }
+    }
+
+    private abstract static class FieldAccessor {
+
+        abstract Object get(Context context, ContainerSnapshot.ContainerData data, Container container);
+
+        boolean requiresContainer() {
+            return false;
+        }
+    }
+
+    private abstract static class ContainerAccessor extends FieldAccessor {
+
+        @Override
+        boolean requiresContainer() {
+            return true;
+        }
+    }
+
+    private static class AttributeAccessor extends FieldAccessor {
+
+        private final DataStore.ContainerAttribute attribute;
+
+        AttributeAccessor(DataStore.ContainerAttribute attribute) {
+            this.attribute = attribute;
+        }
+
+        @Override
+        Object get(Context context, ContainerSnapshot.ContainerData data, Container container) {
+            String value = data.getAttribute(attribute);
+            return value != null ? value : "";
+        }
+    }
+
+    private static class PortAccessor extends FieldAccessor {
+
+        private final DataStore.ContainerAttribute attribute;
+
+        PortAccessor(DataStore.ContainerAttribute attribute) {
+            this.attribute = attribute;
+        }
+
+        @Override
+        Object get(Context context, ContainerSnapshot.ContainerData data, Container container) {
+            String value = data.getAttribute(attribute);
+            try {
+                return value != null ? Integer.parseInt(value) : 0;
+            } catch (NumberFormatException e) {
+                // Ignore and fallback to 0
+                return 0;
+            }
+        }
+    }
+
+    private static class GetterAccessor extends ContainerAccessor {
+
+        private final Method getter;
+
+        GetterAccessor(Method getter) {
+            this.getter = getter;
+        }
+
+        @Override
+        Object get(Context context, ContainerSnapshot.ContainerData data, Container container) {
+            try {
+                return getter.invoke(container);
+            } catch (InvocationTargetException e) {
+                throw new FabricException("Failed to initialize DTO", e.getCause());
+            } catch (Exception e) {
+                throw new FabricException("Failed to initialize DTO", e);
+            }
+        }
+    }
+
+    private static class PropertyAccessor extends ContainerAccessor {
+
+        private final String field;
+
+        PropertyAccessor(String field) {
+            this.field = field;
+        }
+
+        @Override
+        Object get(Context context, ContainerSnapshot.ContainerData data, Container container) {
+            try {
+                return PropertyUtils.getProperty(container, field);
+            } catch (Exception e) {
+                throw new FabricException("Failed to initialize DTO", e);
+            }
+        }
+    }
+}
@@ -24,6 +24,7 @@ import io.fabric8.api.AutoScaleStatus;
 import io.fabric8.api.Constants;
 import io.fabric8.api.Container;
 import io.fabric8.api.ContainerProvider;
+import io.fabric8.api.ContainerSnapshot;
 import io.fabric8.api.CreateContainerBasicMetadata;
 import io.fabric8.api.CreateContainerBasicOptions;
 import io.fabric8.api.CreateContainerMetadata;
@@ -474,26 +475,14 @@ public final class FabricManager implements FabricManagerMBean {
 
     @Override
     public List<Map<String, Object>> containers(List<String> fields) {
-        List<Map<String, Object>> answer = new ArrayList<Map<String, Object>>();
-        for (Container c : fabricService.getContainers()) {
-            answer.add(BeanUtils.convertContainerToMap(fabricService, c, fields));
-        }
-        return answer;
+        ContainerSnapshot snapshot = fabricService.adapt(DataStore.class).getContainerSnapshot();
+        return ContainerProjection.compile(fields).project(fabricService, snapshot);
     }
 
     @Override
     public List<Map<String, Object>> containers(List<String> fields, List<String> profileFields) {
-        List<Map<String, Object>> answer = new ArrayList<Map<String, Object>>();
-        for (Container c : fabricService.getContainers()) {
-            Map<String, Object> map = BeanUtils.convertContainerToMap(fabricService, c, fields);
-            List<Map<String, Object>> profiles = new ArrayList<Map<String, Object>>();
-            for (Profile p : c.getProfiles()) {
-                profiles.add(BeanUtils.convertProfileToMap(fabricService, p, profileFields));
-            }
-            map.put("profiles", profiles);
-            answer.add(map);
-        }
-        return answer;
+        ContainerSnapshot snapshot = fabricService.adapt(DataStore.class).getContainerSnapshot();
+        return ContainerProjection.compile(fields).project(fabricService, snapshot, profileFields);
     }
 
     private CreateContainerMetadata<?> getContainerMetaData(String id) {
@@ -37,8 +37,12 @@ import io.fabric8.utils.DataStoreUtils;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import io.fabric8.utils.FabricValidations;
 import org.apache.felix.scr.annotations.Activate;
@@ -68,6 +72,12 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
         Map<String, Profile> overlayProfiles = new HashMap<String, Profile>();
     }
 
+    // the overlays of each version, which are dropped when the version is reloaded
+    private final ConcurrentMap<String, VersionOverlays> overlayCache = new ConcurrentHashMap<>();
+    // the properties parsed from the file configurations of the profiles by the identity of the file content,
+    // so that the files of the parents shared by sibling profiles are only parsed once
+    private final Map<byte[], Properties> parsedProperties = new WeakHashMap<>();
+
     @Activate
     @VisibleForExternal
     public void activate() throws Exception {
@@ -176,41 +186,53 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
         assertValid();
         LOGGER.info("deleteVersion: {}", versionId);
         profileRegistry.get().deleteVersion(versionId);
+        overlayCache.remove(versionId);
     }
 
     @Override
     public Profile getOverlayProfile(Profile profile) {
         assertValid();
+        if (profile.isOverlay()) {
+            LOGGER.debug("getOverlayProfile, given profile is already an overlay: " + profile);
+            return profile;
+        }
+
+        String profileId = profile.getId();
+        String environment = runtimeProperties.get().getProperty(SystemProperties.FABRIC_ENVIRONMENT);
+        if (environment == null) {
+            // lets default to the environment from the current active
+            // set of profiles (e.g. docker or openshift)
+            environment = System.getProperty(SystemProperties.FABRIC_PROFILE_ENVIRONMENT);
+        }
+        Version version = getRequiredVersion(profile.getVersion());
+        List<Profile> inheritedProfiles = OverlayOptionsProvider.getInheritedProfiles(version, profile);
+
+        // profiles are immutable, so the overlay only changes when one of the inherited profiles is replaced
+        ConcurrentMap<String, OverlayEntry> overlays = getOverlays(version);
+        String cacheKey = profileId + "#" + environment;
+        OverlayEntry entry = overlays.get(cacheKey);
+        if (entry != null && entry.matches(inheritedProfiles)) {
+            return entry.overlayProfile;
+        }
+
         Profile overlayProfile;
         synchronized (this) {
-            if (profile.isOverlay()) {
-                LOGGER.debug("getOverlayProfile, given profile is already an overlay: " + profile);
-                overlayProfile = profile;
-            } else {
-                String profileId = profile.getId();
-                String environment = runtimeProperties.get().getProperty(SystemProperties.FABRIC_ENVIRONMENT);
-                if (environment == null) {
-                    // lets default to the environment from the current active
-                    // set of profiles (e.g. docker or openshift)
-                    environment = System.getProperty(SystemProperties.FABRIC_PROFILE_ENVIRONMENT);
-                }
-                Version version = getRequiredVersion(profile.getVersion());
-                ProfileBuilder builder = ProfileBuilder.Factory.create(profile.getVersion(), profileId);
-                builder.addOptions(new OverlayOptionsProvider(version, profile, environment));
-                overlayProfile = builder.getProfile();
-
-                // Log the overlay profile difference
-                if (LOGGER.isDebugEnabled()) {
-                    OverlayAudit audit = getOverlayAudit();
-                    synchronized (audit) {
-                        Profile lastOverlay = audit.overlayProfiles.get(profileId);
-                        if (lastOverlay == null) {
-                            LOGGER.debug("Overlay" + Profiles.getProfileInfo(overlayProfile));
-                            audit.overlayProfiles.put(profileId, overlayProfile);
-                        } else if (!lastOverlay.equals(overlayProfile)) {
-                            LOGGER.debug("Overlay" + Profiles.getProfileDifference(lastOverlay, overlayProfile));
-                            audit.overlayProfiles.put(profileId, overlayProfile);
-                        }
+            ProfileBuilder builder = ProfileBuilder.Factory.create(profile.getVersion(), profileId);
+            builder.addOptions(new OverlayOptionsProvider(version, profile, environment, inheritedProfiles, parsedProperties));
+            overlayProfile = builder.getProfile();
+            overlays.put(cacheKey, new OverlayEntry(inheritedProfiles, overlayProfile));
+
+            // Log the overlay profile difference
+            if (LOGGER.isDebugEnabled()) {
+                OverlayAudit audit = getOverlayAudit();
+                synchronized (audit) {
+                    Profile lastOverlay = audit.overlayProfiles.get(profileId);
+                    if (lastOverlay == null) {
+                        LOGGER.debug("Overlay" + Profiles.getProfileInfo(overlayProfile));
+                        audit.overlayProfiles.put(profileId, overlayProfile);
+                    } else if (!lastOverlay.equals(overlayProfile)) {
+                        LOGGER.debug("Overlay" + Profiles.getProfileDifference(lastOverlay, overlayProfile));
+                        audit.overlayProfiles.put(profileId, overlayProfile);
                     }
                 }
             }
@@ -218,6 +240,66 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
         return overlayProfile;
     }
 
+    /**
+     * Returns the overlays of the given version, dropping those of any previous version with the same id,
+     * so that the overlays of profiles which have been removed or replaced don't outlive them
+     */
+    private ConcurrentMap<String, OverlayEntry> getOverlays(Version version) {
+        String versionId = version.getId();
+        while (true) {
+            VersionOverlays current = overlayCache.get(versionId);
+            if (current != null && current.version == version) {
+                return current.overlays;
+            }
+            VersionOverlays created = new VersionOverlays(version);
+            if (current == null ? overlayCache.putIfAbsent(versionId, created) == null : overlayCache.replace(versionId, current, created)) {
+                return created.overlays;
+            }
+        }
+    }
+
+    private void evictOverlays(String versionId, String profileId) {
+        VersionOverlays current = overlayCache.get(versionId);
+        if (current != null) {
+            for (Iterator<String> it = current.overlays.keySet().iterator(); it.hasNext(); ) {
+                if (it.next().startsWith(profileId + "#")) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private static class VersionOverlays {
+        private final Version version;
+        private final ConcurrentMap<String, OverlayEntry> overlays = new ConcurrentHashMap<>();
+
+        VersionOverlays(Version version) {
+            this.version = version;
+        }
+    }
+
+    private static class OverlayEntry {
+        private final List<Profile> inheritedProfiles;
+        private final Profile overlayProfile;
+
+        OverlayEntry(List<Profile> inheritedProfiles, Profile overlayProfile) {
+            this.inheritedProfiles = inheritedProfiles;
+            this.overlayProfile = overlayProfile;
+        }
+
+        boolean matches(List<Profile> profiles) {
+            if (profiles.size() != inheritedProfiles.size()) {
+                return false;
+            }
+            for (int i = 0; i < profiles.size(); i++) {
+                if (profiles.get(i) != inheritedProfiles.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     @Override
     public void deleteProfile(String versionId, String profileId, boolean force) {
         deleteProfile(null, versionId, profileId, force);
@@ -234,11 +316,13 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
         Container[] containers = fabricService != null ? fabricService.getAssociatedContainers(versionId, profileId) : new Container[0];
         if (containers.length == 0) {
             profileRegistry.get().deleteProfile(versionId, profileId);
+            evictOverlays(versionId, profileId);
         } else if (force) {
             for (Container container : containers) {
                 container.removeProfiles(profileId);
             }
             profileRegistry.get().deleteProfile(versionId, profileId);
+            evictOverlays(versionId, profileId);
         } else {
             StringBuilder sb = new StringBuilder();
             sb.append("Cannot delete profile:").append(profileId).append(".");
@@ -266,72 +350,44 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
         private final Version version;
         private final Profile self;
         private final String environment;
+        private final List<Profile> inheritedProfiles;
+        private final Map<byte[], Properties> parsedProperties;
 
-        private static class SupplementControl {
-            byte[] data;
-            Properties props;
+        OverlayOptionsProvider(Version version, Profile self, String environment) {
+            this(version, self, environment, getInheritedProfiles(version, self), new HashMap<byte[], Properties>());
         }
 
-        OverlayOptionsProvider(Version version, Profile self, String environment) {
+        OverlayOptionsProvider(Version version, Profile self, String environment, List<Profile> inheritedProfiles, Map<byte[], Properties> parsedProperties) {
             this.version = version;
             this.self = self;
             this.environment = environment;
+            this.inheritedProfiles = inheritedProfiles;
+            this.parsedProperties = parsedProperties;
         }
 
         @Override
         public ProfileBuilder addOptions(ProfileBuilder builder) {
-            builder.setAttributes(self.getAttributes());
-            builder.setFileConfigurations(getFileConfigurations());
-            builder.setConfigurations(getConfigurations());
-            builder.setLastModified(getLastModified());
-            builder.setOverlay(true);
-            return builder;
-        }
-
-        private Map<String, byte[]> getFileConfigurations() {
+            Map<String, byte[]> fileConfigurations = new HashMap<String, byte[]>();
+            Map<String, Map<String, String>> configurations = new HashMap<String, Map<String, String>>();
             try {
-                Map<String, SupplementControl> aggregate = new HashMap<String, SupplementControl>();
-                for (Profile profile : getInheritedProfiles()) {
-                    supplement(profile, aggregate);
-                }
-
-                Map<String, byte[]> rc = new HashMap<String, byte[]>();
-                for (Map.Entry<String, SupplementControl> entry : aggregate.entrySet()) {
-                    SupplementControl ctrl = entry.getValue();
-                    if (ctrl.props != null) {
-                        ctrl.data = DataStoreUtils.toBytes(ctrl.props);
-                    }
-                    rc.put(entry.getKey(), ctrl.data);
+                for (Profile profile : inheritedProfiles) {
+                    supplement(profile, fileConfigurations, configurations);
                 }
-                return rc;
-            } catch (Exception e) {
-                throw FabricException.launderThrowable(e);
-            }
-        }
-
-        private Map<String, Map<String, String>> getConfigurations() {
-            try {
-                Map<String, SupplementControl> aggregate = new HashMap<String, SupplementControl>();
-                for (Profile profile : getInheritedProfiles()) {
-                    supplement(profile, aggregate);
-                }
-
-                Map<String, Map<String, String>> rc = new HashMap<String, Map<String, String>>();
-                for (Map.Entry<String, SupplementControl> entry : aggregate.entrySet()) {
-                    SupplementControl ctrl = entry.getValue();
-                    if (ctrl.props != null) {
-                        rc.put(DataStoreUtils.stripSuffix(entry.getKey(), ".properties"), ctrl.props);
-                    }
-                }
-                return rc;
             } catch (Exception e) {
                 throw FabricException.launderThrowable(e);
             }
+            builder.setAttributes(self.getAttributes());
+            builder.setFileConfigurations(fileConfigurations);
+            // the properties files are added by the builder from their configurations
+            builder.setConfigurations(configurations);
+            builder.setLastModified(getLastModified());
+            builder.setOverlay(true);
+            return builder;
         }
 
-        private List<Profile> getInheritedProfiles() {
+        static List<Profile> getInheritedProfiles(Version version, Profile self) {
             List<Profile> profiles = new ArrayList<>();
-            fillParentProfiles(self, profiles);
+            fillParentProfiles(version, self, profiles);
             // always prepend "default" as first profile
             if(profiles.size() > 0){
                 if(!"default".equals(profiles.get(0).getId())){
@@ -341,17 +397,17 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
             return profiles;
         }
 
-        private void fillParentProfiles(Profile profile, List<Profile> profiles) {
+        private static void fillParentProfiles(Version version, Profile profile, List<Profile> profiles) {
             if (!profiles.contains(profile)) {
                 for (String parentId : profile.getParentIds()) {
                     Profile parent = version.getRequiredProfile(parentId);
-                    fillParentProfiles(parent, profiles);
+                    fillParentProfiles(version, parent, profiles);
                 }
                 profiles.add(profile);
             }
         }
 
-        private void supplement(Profile profile, Map<String, SupplementControl> aggregate) throws Exception {
+        private void supplement(Profile profile, Map<String, byte[]> fileConfigurations, Map<String, Map<String, String>> configurations) throws Exception {
 
             Map<String, byte[]> configs = profile.getFileConfigurations();
             for (String key : configs.keySet()) {
@@ -367,38 +423,51 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
                 // a properties file.
                 String fileName = key;
                 if (fileName.endsWith(".properties")) {
-                    SupplementControl ctrl = aggregate.get(fileName);
-                    if (ctrl != null) {
+                    String pid = DataStoreUtils.stripSuffix(fileName, ".properties");
+                    Map<String, String> props = configurations.get(pid);
+                    // the parsed properties are shared, so they are only read
+                    Properties childMap = getParsedProperties(value);
+                    if (props != null) {
                         // we can update the file..
-                        Properties childMap = ProfileUtils.toProperties(value);
-                        if (childMap.remove(Profile.DELETED) != null) {
-                            ctrl.props.clear();
+                        if (childMap.containsKey(Profile.DELETED)) {
+                            props.clear();
                         }
 
                         // Update the entries...
                         for (Map.Entry<String, String> p : childMap.entrySet()) {
+                            if (Profile.DELETED.equals(p.getKey())) {
+                                continue;
+                            }
                             if (Profile.DELETED.equals(p.getValue())) {
-                                ctrl.props.remove(p.getKey());
+                                props.remove(p.getKey());
                             } else {
-                                ctrl.props.put(p.getKey(), p.getValue());
+                                props.put(p.getKey(), p.getValue());
                             }
                         }
 
                     } else {
                         // new file..
-                        ctrl = new SupplementControl();
-                        ctrl.props = ProfileUtils.toProperties(value);
-                        aggregate.put(fileName, ctrl);
+                        configurations.put(pid, new HashMap<String, String>(childMap));
                     }
                 } else {
                     // not a properties file? we can only overwrite.
-                    SupplementControl ctrl = new SupplementControl();
-                    ctrl.data = value;
-                    aggregate.put(fileName, ctrl);
+                    fileConfigurations.put(fileName, value);
                 }
             }
         }
 
+        private Properties getParsedProperties(byte[] value) {
+            if (value == null) {
+                return ProfileUtils.toProperties(value);
+            }
+            Properties answer = parsedProperties.get(value);
+            if (answer == null) {
+                answer = ProfileUtils.toProperties(value);
+                parsedProperties.put(value, answer);
+            }
+            return answer;
+        }
+
         private String getLastModified() {
             StringBuilder sb = new StringBuilder();
             sb.append(self.getProfileHash());
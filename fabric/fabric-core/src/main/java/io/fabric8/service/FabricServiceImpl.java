@@ -18,7 +18,6 @@ package io.fabric8.service;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -71,6 +70,7 @@ import io.fabric8.api.ProfileService;
 import io.fabric8.api.Profiles;
 import io.fabric8.api.RuntimeProperties;
 import io.fabric8.api.Version;
+import io.fabric8.api.ZkDefs;
 import io.fabric8.api.jcip.ThreadSafe;
 import io.fabric8.api.scr.AbstractComponent;
 import io.fabric8.api.scr.Configurer;
@@ -277,6 +277,8 @@ public final class FabricServiceImpl extends AbstractComponent implements Fabric
     @Override
     public Container[] getContainers() {
         assertValid();
+        // read directly rather than from the container snapshot, so that the containers this service has just
+        // created or deleted are seen, as the children and destroy checks of the containers rely on it
         Map<String, Container> containers = new HashMap<String, Container>();
         List<String> containerIds = dataStore.get().getContainers();
         for (String containerId : containerIds) {
@@ -302,13 +304,25 @@ public final class FabricServiceImpl extends AbstractComponent implements Fabric
 	@Override
 	public Container[] getAssociatedContainers(String versionId, String profileId) {
 		assertValid();
+        // only the profile ids are compared, containers without profiles get the default profile of their version
+        Boolean defaultProfile = null;
         List<Container> containers = new ArrayList<>();
         for (Container container : getContainers()) {
-        	for (Profile profile : Arrays.asList(container.getProfiles())) {
-                if (profile.getId().equals(profileId) && profile.getVersion().equals(versionId)) {
+            if (!versionId.equals(container.getVersionId())) {
+                continue;
+            }
+            List<String> profileIds = container.getProfileIds();
+            if (profileIds.contains(profileId)) {
+                containers.add(container);
+            } else if (profileIds.isEmpty() && ZkDefs.DEFAULT_PROFILE.equals(profileId)) {
+                if (defaultProfile == null) {
+                    Version version = profileService.get().getVersion(versionId);
+                    defaultProfile = version != null && version.hasProfile(ZkDefs.DEFAULT_PROFILE);
+                }
+                if (defaultProfile) {
                     containers.add(container);
-            	}
-        	}
+                }
+            }
         }
         return containers.toArray(new Container[containers.size()]);
 	}
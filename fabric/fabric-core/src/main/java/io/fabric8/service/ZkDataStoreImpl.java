@@ -24,6 +24,7 @@ import static io.fabric8.zookeeper.utils.ZooKeeperUtils.getStringData;
 import static io.fabric8.zookeeper.utils.ZooKeeperUtils.getSubstitutedPath;
 import static io.fabric8.zookeeper.utils.ZooKeeperUtils.setData;
 import io.fabric8.api.AutoScaleStatus;
+import io.fabric8.api.ContainerSnapshot;
 import io.fabric8.api.CreateContainerMetadata;
 import io.fabric8.api.CreateContainerOptions;
 import io.fabric8.api.DataStore;
@@ -53,6 +54,8 @@ import java.io.ObjectStreamClass;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -60,6 +63,7 @@ import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.recipes.cache.ChildData;
@@ -100,6 +104,10 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
     private final ExecutorService callbacksExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("zk-datastore"));
     private TreeCache configCache;
     private TreeCache containerCache;
+    private TreeCache aliveCache;
+    // bumped on every cache event, so that the container snapshot is only rebuilt when something changed
+    private final AtomicLong containerSnapshotVersion = new AtomicLong();
+    private volatile ContainerSnapshot containerSnapshot;
 
     @Activate
     void activate() throws Exception {
@@ -122,6 +130,9 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
         containerCache.start(TreeCache.StartMode.NORMAL);
         containerCache.getListenable().addListener(this);
 
+        aliveCache = new TreeCache(curator.get(), ZkPath.CONTAINERS_ALIVE.getPath(), true, false, true, cacheExecutor);
+        aliveCache.start(TreeCache.StartMode.NORMAL);
+        aliveCache.getListenable().addListener(this);
     }
 
     private void deactivateInternal() {
@@ -131,12 +142,16 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
         containerCache.getListenable().removeListener(this);
         Closeables.closeQuietly(containerCache);
 
+        aliveCache.getListenable().removeListener(this);
+        Closeables.closeQuietly(aliveCache);
+
         callbacksExecutor.shutdownNow();
         cacheExecutor.shutdownNow();
     }
 
     @Override
     public void childEvent(CuratorFramework client, PathChildrenCacheEvent event) throws Exception {
+        containerSnapshotVersion.incrementAndGet();
         if (isValid()) {
 
             // guard against events with null data or path
@@ -438,12 +453,16 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
                     str = getStringData(configCache, ZkPath.CONFIG_VERSIONS_CONTAINER.getPath(versionId, containerId));
                 }
             }
-            return str == null || str.isEmpty() ? Collections.<String> emptyList() : Arrays.asList(str.trim().split(" +"));
+            return parseProfileIds(str);
         } catch (Exception e) {
             throw FabricException.launderThrowable(e);
         }
     }
 
+    private static List<String> parseProfileIds(String str) {
+        return str == null || str.isEmpty() ? Collections.<String> emptyList() : Arrays.asList(str.trim().split(" +"));
+    }
+
     @Override
     public void setContainerProfiles(String containerId, List<String> profileIds) {
         assertValid();
@@ -495,6 +514,71 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
         }
     }
 
+    @Override
+    public ContainerSnapshot getContainerSnapshot() {
+        assertValid();
+        long version = containerSnapshotVersion.get();
+        ContainerSnapshot snapshot = containerSnapshot;
+        if (snapshot == null || snapshot.getVersion() != version) {
+            try {
+                snapshot = createContainerSnapshot(version);
+            } catch (Exception e) {
+                throw FabricException.launderThrowable(e);
+            }
+            containerSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Builds the snapshot from the caches only. Nodes are only read when their parent lists them,
+     * as the caches go back to ZooKeeper for the nodes they don't know about.
+     */
+    private ContainerSnapshot createContainerSnapshot(long version) throws Exception {
+        Set<String> aliveIds = new HashSet<String>(aliveCache.getChildrenNames(ZkPath.CONTAINERS_ALIVE.getPath()));
+        Map<String, Set<String>> versionContainers = new HashMap<String, Set<String>>();
+        List<ContainerSnapshot.ContainerData> containers = new ArrayList<ContainerSnapshot.ContainerData>();
+        for (String containerId : configCache.getChildrenNames(ZkPath.CONFIGS_CONTAINERS.getPath())) {
+            String versionId = getStringData(configCache, ZkPath.CONFIG_CONTAINER.getPath(containerId));
+            List<String> profileIds = Collections.emptyList();
+            if (Strings.isNotBlank(versionId)) {
+                Set<String> containerIds = versionContainers.get(versionId);
+                if (containerIds == null) {
+                    containerIds = new HashSet<String>(configCache.getChildrenNames(ZkPath.CONFIG_VERSIONS_CONTAINERS.getPath(versionId)));
+                    versionContainers.put(versionId, containerIds);
+                }
+                if (containerIds.contains(containerId)) {
+                    profileIds = parseProfileIds(getStringData(configCache, ZkPath.CONFIG_VERSIONS_CONTAINER.getPath(versionId, containerId)));
+                }
+            }
+
+            String containerPath = ZkPath.CONTAINER.getPath(containerId);
+            Set<String> entries = new HashSet<String>(containerCache.getChildrenNames(containerPath));
+            String parentId = null;
+            if (entries.contains("parent")) {
+                parentId = getStringData(containerCache, ZkPath.CONTAINER_PARENT.getPath(containerId));
+            }
+            Map<ContainerAttribute, String> attributes = new EnumMap<ContainerAttribute, String>(ContainerAttribute.class);
+            for (ContainerAttribute attribute : ContainerAttribute.values()) {
+                if (attribute == ContainerAttribute.Domains) {
+                    continue;
+                }
+                // only the attributes stored in the container config node are cached
+                String path = getAttributePath(containerId, attribute);
+                String entry = path.startsWith(containerPath + "/") ? path.substring(containerPath.length() + 1) : null;
+                if (entry != null && entries.contains(entry)) {
+                    String value = getStringData(containerCache, path);
+                    if (value != null) {
+                        attributes.put(attribute, value);
+                    }
+                }
+            }
+            boolean alive = aliveIds.contains(containerId);
+            containers.add(new ContainerSnapshot.ContainerData(containerId, parentId != null ? parentId.trim() : "", versionId, profileIds, alive, attributes));
+        }
+        return new ContainerSnapshot(version, containers);
+    }
+
     @Override
     public String getContainerAttribute(String containerId, ContainerAttribute attribute, String def, boolean mandatory, boolean substituted) {
         assertValid();
@@ -0,0 +1,111 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.core.jmx;
+
+import io.fabric8.api.ContainerSnapshot;
+import io.fabric8.api.DataStore;
+import io.fabric8.api.FabricService;
+import io.fabric8.api.ProfileBuilder;
+import io.fabric8.api.ProfileService;
+import io.fabric8.api.VersionBuilder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ContainerProjectionTest {
+
+    @Test
+    public void testSnapshotFields() {
+        Map<DataStore.ContainerAttribute, String> attributes = new HashMap<DataStore.ContainerAttribute, String>();
+        attributes.put(DataStore.ContainerAttribute.Location, "london");
+        attributes.put(DataStore.ContainerAttribute.PortMin, "9000");
+        ContainerSnapshot snapshot = new ContainerSnapshot(1, Arrays.asList(
+                new ContainerSnapshot.ContainerData("root", "", "1.0", Arrays.asList("fabric"), true, attributes),
+                new ContainerSnapshot.ContainerData("child", "root", "1.0", Collections.<String>emptyList(), false,
+                        Collections.<DataStore.ContainerAttribute, String>emptyMap()),
+                new ContainerSnapshot.ContainerData("other", "", "2.0", Collections.<String>emptyList(), false,
+                        Collections.<DataStore.ContainerAttribute, String>emptyMap())));
+
+        List<String> fields = Arrays.asList("id", "parentId", "childrenIds", "profileIds", "alive", "location", "minimumPort");
+        // none of these fields need the containers, only the versions are looked up for the default profile
+        List<Map<String, Object>> rows = ContainerProjection.compile(fields).project(createFabricService(), snapshot);
+        Assert.assertEquals(3, rows.size());
+
+        Map<String, Object> root = rows.get(0);
+        Assert.assertEquals("root", root.get("id"));
+        Assert.assertNull(root.get("parentId"));
+        Assert.assertEquals(Arrays.asList("child"), root.get("childrenIds"));
+        Assert.assertEquals(Arrays.asList("fabric"), root.get("profileIds"));
+        Assert.assertEquals(Boolean.TRUE, root.get("alive"));
+        Assert.assertEquals("london", root.get("location"));
+        Assert.assertEquals(9000, root.get("minimumPort"));
+
+        Map<String, Object> child = rows.get(1);
+        Assert.assertEquals("root", child.get("parentId"));
+        Assert.assertEquals(Collections.emptyList(), child.get("childrenIds"));
+        Assert.assertEquals(Arrays.asList("default"), child.get("profileIds"));
+        Assert.assertEquals(Boolean.FALSE, child.get("alive"));
+        Assert.assertEquals("", child.get("location"));
+        Assert.assertEquals(0, child.get("minimumPort"));
+        Assert.assertEquals(fields.size(), child.size());
+
+        // the version of this container has no default profile
+        Assert.assertEquals(Collections.emptyList(), rows.get(2).get("profileIds"));
+    }
+
+    @Test
+    public void testDeletedContainersAreSkipped() {
+        ContainerSnapshot snapshot = new ContainerSnapshot(1, Arrays.asList(
+                new ContainerSnapshot.ContainerData("root", "", "1.0", Arrays.asList("fabric"), true,
+                        Collections.<DataStore.ContainerAttribute, String>emptyMap()),
+                new ContainerSnapshot.ContainerData("deleted", "root", "1.0", Collections.<String>emptyList(), false,
+                        Collections.<DataStore.ContainerAttribute, String>emptyMap())));
+
+        FabricService fabricService = createFabricService();
+        DataStore dataStore = fabricService.adapt(DataStore.class);
+        when(dataStore.getContainers()).thenReturn(Arrays.asList("root"));
+        when(dataStore.getContainerAttribute("root", DataStore.ContainerAttribute.ProvisionStatus, "", false, false)).thenReturn("installing");
+
+        List<Map<String, Object>> rows = ContainerProjection.compile(Arrays.asList("id", "provisionResult")).project(fabricService, snapshot);
+        Assert.assertEquals(1, rows.size());
+        Assert.assertEquals("root", rows.get(0).get("id"));
+        Assert.assertEquals("installing", rows.get(0).get("provisionResult"));
+    }
+
+    private FabricService createFabricService() {
+        ProfileService profileService = mock(ProfileService.class);
+        when(profileService.getVersion("1.0")).thenReturn(VersionBuilder.Factory.create("1.0")
+                .addProfile(ProfileBuilder.Factory.create("1.0", "default").getProfile())
+                .addProfile(ProfileBuilder.Factory.create("1.0", "fabric").getProfile())
+                .getVersion());
+        when(profileService.getVersion("2.0")).thenReturn(VersionBuilder.Factory.create("2.0")
+                .addProfile(ProfileBuilder.Factory.create("2.0", "fabric").getProfile())
+                .getVersion());
+        FabricService fabricService = mock(FabricService.class);
+        when(fabricService.adapt(ProfileService.class)).thenReturn(profileService);
+        when(fabricService.adapt(DataStore.class)).thenReturn(mock(DataStore.class));
+        return fabricService;
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.internal;
+
+import io.fabric8.api.Profile;
+import io.fabric8.api.ProfileBuilder;
+import io.fabric8.api.ProfileRegistry;
+import io.fabric8.api.RuntimeProperties;
+import io.fabric8.api.SystemProperties;
+import io.fabric8.api.Version;
+import io.fabric8.api.VersionBuilder;
+import io.fabric8.api.scr.AbstractComponent;
+import io.fabric8.api.scr.ValidationSupport;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test cases for the overlay profiles of the {@link ProfileServiceImpl}
+ */
+public class ProfileServiceImplTest {
+
+    private static final String PID_FILE = "my.pid.properties";
+
+    private ProfileRegistry profileRegistry;
+    private RuntimeProperties runtimeProperties;
+    private ProfileServiceImpl profileService;
+
+    @Before
+    public void setUp() throws Exception {
+        profileRegistry = mock(ProfileRegistry.class);
+        runtimeProperties = mock(RuntimeProperties.class);
+        profileService = new ProfileServiceImpl();
+        profileService.bindProfileRegistry(profileRegistry);
+        profileService.bindRuntimeProperties(runtimeProperties);
+        Field active = AbstractComponent.class.getDeclaredField("active");
+        active.setAccessible(true);
+        ((ValidationSupport) active.get(profileService)).setValid();
+
+        setVersion(createVersion("c=3"));
+    }
+
+    @Test
+    public void testOverlayAppliesDeletions() throws Exception {
+        Map<String, String> expected = new HashMap<>();
+        expected.put("a", "1");
+        expected.put("c", "3");
+        assertEquals(expected, getOverlay("child").getConfiguration("my.pid"));
+
+        expected.clear();
+        expected.put("d", "4");
+        assertEquals(expected, getOverlay("reset").getConfiguration("my.pid"));
+    }
+
+    @Test
+    public void testOverlayIsCached() throws Exception {
+        Profile overlay = getOverlay("child");
+        assertSame(overlay, getOverlay("child"));
+    }
+
+    @Test
+    public void testOverlayIsRebuiltWhenVersionIsReloaded() throws Exception {
+        Profile overlay = getOverlay("child");
+        setVersion(createVersion("c=30"));
+
+        Profile reloaded = getOverlay("child");
+        assertNotSame(overlay, reloaded);
+        assertEquals("30", reloaded.getConfiguration("my.pid").get("c"));
+        assertSame(reloaded, getOverlay("child"));
+    }
+
+    @Test
+    public void testOverlayIsRebuiltWhenProfileIsDeleted() throws Exception {
+        Profile overlay = getOverlay("child");
+        profileService.deleteProfile("1.0", "child", false);
+
+        assertNotSame(overlay, getOverlay("child"));
+    }
+
+    @Test
+    public void testOverlayIsCachedPerEnvironment() throws Exception {
+        Profile overlay = getOverlay("child");
+        when(runtimeProperties.getProperty(SystemProperties.FABRIC_ENVIRONMENT)).thenReturn("docker");
+
+        Profile dockerOverlay = getOverlay("child");
+        assertNotSame(overlay, dockerOverlay);
+        assertEquals("docker", dockerOverlay.getConfiguration("my.pid").get("c"));
+        assertSame(dockerOverlay, getOverlay("child"));
+
+        when(runtimeProperties.getProperty(SystemProperties.FABRIC_ENVIRONMENT)).thenReturn(null);
+        assertSame(overlay, getOverlay("child"));
+    }
+
+    private Profile getOverlay(String profileId) {
+        return profileService.getOverlayProfile(profileService.getRequiredProfile("1.0", profileId));
+    }
+
+    private void setVersion(Version version) {
+        when(profileRegistry.getRequiredVersion("1.0")).thenReturn(version);
+        for (Profile profile : version.getProfiles()) {
+            when(profileRegistry.getRequiredProfile("1.0", profile.getId())).thenReturn(profile);
+        }
+    }
+
+    private Version createVersion(String childConfiguration) throws Exception {
+        Profile defaultProfile = ProfileBuilder.Factory.create("1.0", "default")
+                .addFileConfiguration(PID_FILE, "a=1\nb=2\n".getBytes("UTF-8"))
+                .getProfile();
+        Profile child = ProfileBuilder.Factory.create("1.0", "child")
+                .addParent("default")
+                .addFileConfiguration(PID_FILE, ("b=" + Profile.DELETED + "\n" + childConfiguration + "\n").getBytes("UTF-8"))
+                .addFileConfiguration(PID_FILE + "#docker", ("b=" + Profile.DELETED + "\nc=docker\n").getBytes("UTF-8"))
+                .getProfile();
+        // a deleted key clears the configuration inherited from the parents
+        Profile reset = ProfileBuilder.Factory.create("1.0", "reset")
+                .addParent("default")
+                .addFileConfiguration(PID_FILE, "\\#deleted\\#=true\nd=4\n".getBytes("UTF-8"))
+                .getProfile();
+        return VersionBuilder.Factory.create("1.0")
+                .addProfile(defaultProfile)
+                .addProfile(child)
+                .addProfile(reset)
+                .getVersion();
+    }
+}
@@ -72,6 +72,8 @@ import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -95,6 +97,8 @@ import org.apache.zookeeper.KeeperException;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.internal.storage.file.LockFile;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
@@ -182,6 +186,9 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
     private boolean gitGcOnLoad = false;
     
     private final LoadingCache<String, Version> versionCache = CacheBuilder.newBuilder().build(new VersionCacheLoader());
+    // the profiles of the last load of each version by profile id and git tree id, which are reused by the next load
+    // of the version for the profiles whose tree did not change
+    private final ConcurrentMap<String, Map<String, Profile>> versionProfiles = new ConcurrentHashMap<String, Map<String, Profile>>();
     private final Set<String> versions = new HashSet<String>();
 
     @Activate
@@ -491,37 +498,12 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         return Collections.unmodifiableMap(dataStoreProperties);
     }
 
+    /**
+     * Returns the version from the cache, loading it under the read lock as the versions are read
+     * from the commit trees of the branches without checking them out
+     */
     private Version getVersionFromCache(String versionId, String profileId) {
-        Version result = getVersionFromCacheRO(versionId, profileId);
-        if (result == null) {
-            return getVersionFromCacheRW(versionId, profileId);
-        }
-        return result;
-    }
-    
-    private Version getVersionFromCacheRO(String versionId, String profileId){
         LockHandle readLock = aquireReadLock();
-        try {
-            assertValid();
-            String branch = GitHelpers.getProfileBranch(versionId, profileId);
-            if (GitHelpers.localBranchExists(getGit(), branch)) {
-                if( versionCache.asMap().containsKey(versionId) ) {
-                    return versionCache.asMap().get(versionId);
-                } else {
-                    return null;
-                }
-            } else {
-                return null;
-            }
-        } catch (Exception e) {
-            throw FabricException.launderThrowable(e);
-        } finally {
-            readLock.unlock();
-        }
-    }
-
-    private Version getVersionFromCacheRW(String versionId, String profileId){
-        LockHandle writeLock = aquireWriteLock();
         try {
             assertValid();
             String branch = GitHelpers.getProfileBranch(versionId, profileId);
@@ -533,7 +515,7 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         } catch (Exception e) {
             throw FabricException.launderThrowable(e);
         } finally {
-            writeLock.unlock();
+            readLock.unlock();
         }
     }
 
@@ -1302,6 +1284,7 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
 
     private void removeVersionFromCaches(String versionId) {
         versionCache.invalidate(versionId);
+        versionProfiles.remove(versionId);
         versions.remove(versionId);
     }
     
@@ -1791,104 +1774,56 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         
         @Override
         public Version load(final String versionId) {
-            assertWriteLock();
+            assertReadLock();
             GitOperation<Version> gitop = new GitOperation<Version>() {
                 public Version call(Git git, GitContext context) throws Exception {
                     String revision = git.getRepository().getRefDatabase().getRef(versionId).getObjectId().getName();
                     return loadVersion(git, context, versionId, revision);
                 }
             };
-            GitContext context = new GitContext();
-            return executeInternal(context, null, gitop);
+            return executeInternal(newGitReadContext(), null, gitop);
         }
         
         private Version loadVersion(Git git, GitContext context, String versionId, String revision) throws Exception {
             VersionBuilder vbuilder = VersionBuilder.Factory.create(versionId).setRevision(revision);
             vbuilder.setAttributes(getVersionAttributes(git, context, versionId));
-            populateVersionBuilder(git, context, vbuilder, GitHelpers.MASTER_BRANCH, versionId);
-            populateVersionBuilder(git, context, vbuilder, versionId, versionId);
-            return vbuilder.getVersion();
-        }
-
-        private void populateVersionBuilder(Git git, GitContext context, VersionBuilder builder, String branch, String versionId) throws GitAPIException, IOException {
-            checkoutRequiredProfileBranch(git, context, branch, null);
-            File profilesDir = GitHelpers.getProfilesDirectory(git);
-            if (profilesDir.exists()) {
-                String[] files = profilesDir.list();
-                if (files != null) {
-                    for (String childName : files) {
-                        Path childPath = profilesDir.toPath().resolve(childName);
-                        if (childPath.toFile().isDirectory()) {
-                            populateProfile(git, builder, branch, versionId, childPath.toFile(), "");
-
-                        }
-                    }
-                }
-            }
-        }
-
-        private void populateProfile(Git git, VersionBuilder versionBuilder, String branch, String versionId, File profileFile, String prefix) throws IOException {
-            String profileName = profileFile.getName();
-            String profileId = profileName;
-            if (profileId.endsWith(Profiles.PROFILE_FOLDER_SUFFIX)) {
-                profileId = prefix + profileId.substring(0, profileId.length() - Profiles.PROFILE_FOLDER_SUFFIX.length());
-            } else {
-                // lets recurse all children
-                File[] files = profileFile.listFiles();
-                if (files != null) {
-                    for (File childFile : files) {
-                        if (childFile.isDirectory()) {
-                            populateProfile(git, versionBuilder, branch, versionId, childFile, prefix + profileFile.getName() + "-");
-                        }
-                    }
-                }
-                return;
-            }
-
-            Map<String, byte[]> fileConfigurations = doGetFileConfigurations(git, profileId);
-            
-            ProfileBuilder profileBuilder = ProfileBuilder.Factory.create(versionId, profileId);
-            profileBuilder.setFileConfigurations(fileConfigurations);
-            versionBuilder.addProfile(profileBuilder.getProfile());
-        }
-
-        private Map<String, byte[]> doGetFileConfigurations(Git git, String profileId) throws IOException {
-            Map<String, byte[]> configurations = new HashMap<String, byte[]>();
-            File profileDirectory = GitHelpers.getProfileDirectory(git, profileId);
-            populateFileConfigurations(configurations, profileDirectory, profileDirectory);
-            return configurations;
-        }
-
-        private void populateFileConfigurations(Map<String, byte[]> configurations, File profileDirectory, File directory) throws IOException {
-            File[] files = directory.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isFile()) {
-                        String relativePath = getFilePattern(profileDirectory, file);
-                        configurations.put(relativePath, loadFileConfiguration(file));
-                    } else if (file.isDirectory()) {
-                        populateFileConfigurations(configurations, profileDirectory, file);
-                    }
-                }
+            Map<String, Profile> previous = versionProfiles.get(versionId);
+            Map<String, Profile> profiles = new HashMap<String, Profile>();
+            ObjectReader reader = git.getRepository().newObjectReader();
+            try {
+                populateVersionBuilder(git, reader, vbuilder, GitHelpers.MASTER_BRANCH, versionId, previous, profiles);
+                populateVersionBuilder(git, reader, vbuilder, versionId, versionId, previous, profiles);
+            } finally {
+                reader.close();
             }
+            versionProfiles.put(versionId, profiles);
+            return vbuilder.getVersion();
         }
 
-        private byte[] loadFileConfiguration(File file) throws IOException {
-            if (file.isDirectory()) {
-                // Not sure why we do this, but for directory pids, lets recurse...
-                StringBuilder buf = new StringBuilder();
-                File[] files = file.listFiles();
-                if (files != null) {
-                    for (File child : files) {
-                        String value = Files.toString(child);
-                        buf.append(String.format("%s = %s\n", child.getName(), value));
-                    }
+        /**
+         * Adds the profiles of the branch to the builder, only reading the files of the profiles
+         * whose tree changed since the previous load of the version
+         */
+        private void populateVersionBuilder(Git git, ObjectReader reader, VersionBuilder builder, String branch, String versionId,
+                                            Map<String, Profile> previous, Map<String, Profile> profiles) throws IOException {
+            Map<String, ObjectId> trees = GitHelpers.getProfileTrees(git.getRepository(), reader, branch);
+            IllegalStateAssertion.assertNotNull(trees, "Cannot find profile branch: " + branch);
+            int reused = 0;
+            for (Map.Entry<String, ObjectId> entry : trees.entrySet()) {
+                String profileId = entry.getKey();
+                String key = profileId + "@" + entry.getValue().getName();
+                Profile profile = previous != null ? previous.get(key) : null;
+                if (profile != null) {
+                    reused++;
+                } else {
+                    ProfileBuilder profileBuilder = ProfileBuilder.Factory.create(versionId, profileId);
+                    profileBuilder.setFileConfigurations(GitHelpers.getFileConfigurations(reader, entry.getValue()));
+                    profile = profileBuilder.getProfile();
                 }
-                return buf.toString().getBytes();
-            } else if (file.exists() && file.isFile()) {
-                return Files.readBytes(file);
+                profiles.put(key, profile);
+                builder.addProfile(profile);
             }
-            return null;
+            LOGGER.debug("Loaded {} profiles of version {} from branch {}, {} of them unchanged", trees.size(), versionId, branch, reused);
         }
     }
 
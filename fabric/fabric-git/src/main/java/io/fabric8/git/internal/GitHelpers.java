@@ -20,7 +20,10 @@ import io.fabric8.common.util.Strings;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 import org.eclipse.jgit.api.CheckoutCommand;
@@ -31,9 +34,12 @@ import org.eclipse.jgit.api.errors.NoHeadException;
 import org.eclipse.jgit.errors.CorruptObjectException;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
@@ -53,6 +59,7 @@ public class GitHelpers {
 
     static final String CONFIGS = "fabric";
     static final String CONFIGS_PROFILES = CONFIGS + File.separator + "profiles";
+    static final String CONFIGS_PROFILES_PATH = CONFIGS + "/profiles";
     static final String VERSION_ATTRIBUTES = "version.attributes";
     static final String REMOTE_ORIGIN = "origin";
     static final String MASTER_BRANCH = "master";
@@ -255,6 +262,89 @@ public class GitHelpers {
         }
     }
 
+    /**
+     * Reads the files of the profiles of a branch from the commit tree of the branch, so that the
+     * branch does not need to be checked out and the working copy is not touched
+     * @param repository the repository
+     * @param reader the reader used to read the tree and the files of the branch
+     * @param branch short branch name
+     * @return the files of each profile by profile id, or <code>null</code> if no such branch exists
+     */
+    public static Map<String, Map<String, byte[]>> getProfileFileConfigurations(Repository repository, ObjectReader reader, String branch) throws IOException {
+        Map<String, ObjectId> trees = getProfileTrees(repository, reader, branch);
+        if (trees == null) {
+            return null;
+        }
+        Map<String, Map<String, byte[]>> answer = new LinkedHashMap<String, Map<String, byte[]>>();
+        for (Map.Entry<String, ObjectId> entry : trees.entrySet()) {
+            answer.put(entry.getKey(), getFileConfigurations(reader, entry.getValue()));
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the id of the tree of each profile of a branch, which only changes when a file of the profile changes,
+     * without reading the files of the profiles
+     * @param repository the repository
+     * @param reader the reader used to read the trees of the branch
+     * @param branch short branch name
+     * @return the tree id of each profile by profile id, or <code>null</code> if no such branch exists
+     */
+    public static Map<String, ObjectId> getProfileTrees(Repository repository, ObjectReader reader, String branch) throws IOException {
+        Ref ref = repository.getRef("refs/heads/" + branch);
+        if (ref == null) {
+            return null;
+        }
+        Map<String, ObjectId> answer = new LinkedHashMap<String, ObjectId>();
+        RevWalk revWalk = new RevWalk(reader);
+        TreeWalk treeWalk = new TreeWalk(reader);
+        try {
+            treeWalk.addTree(revWalk.parseCommit(ref.getObjectId()).getTree());
+            treeWalk.setFilter(PathFilter.create(CONFIGS_PROFILES_PATH));
+            String suffix = Profiles.PROFILE_FOLDER_SUFFIX;
+            while (treeWalk.next()) {
+                if (!treeWalk.isSubtree()) {
+                    continue;
+                }
+                // the foo-bar profile is in the fabric/profiles/foo/bar.profile tree
+                String path = treeWalk.getPathString();
+                String name = treeWalk.getNameString();
+                if (path.length() > CONFIGS_PROFILES_PATH.length() && name.endsWith(suffix) && name.length() > suffix.length()) {
+                    String profilePath = path.substring(CONFIGS_PROFILES_PATH.length() + 1, path.length() - suffix.length());
+                    answer.put(profilePath.replace('/', '-'), treeWalk.getObjectId(0));
+                } else {
+                    treeWalk.enterSubtree();
+                }
+            }
+        } finally {
+            treeWalk.close();
+            revWalk.close();
+        }
+        return answer;
+    }
+
+    /**
+     * Reads the files of the given profile tree by their path relative to the profile
+     */
+    public static Map<String, byte[]> getFileConfigurations(ObjectReader reader, ObjectId tree) throws IOException {
+        Map<String, byte[]> answer = new HashMap<String, byte[]>();
+        TreeWalk treeWalk = new TreeWalk(reader);
+        try {
+            treeWalk.addTree(tree);
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                FileMode mode = treeWalk.getFileMode(0);
+                if (mode == FileMode.REGULAR_FILE || mode == FileMode.EXECUTABLE_FILE) {
+                    ObjectLoader loader = reader.open(treeWalk.getObjectId(0));
+                    answer.put(treeWalk.getPathString(), loader.getBytes(Integer.MAX_VALUE));
+                }
+            }
+        } finally {
+            treeWalk.close();
+        }
+        return answer;
+    }
+
     private static ObjectId objectIdOfResource(Git git, RevCommit rw, String fileName) throws IOException {
         TreeWalk tw = new TreeWalk(git.getRepository());
         if (rw.getTree() == null)
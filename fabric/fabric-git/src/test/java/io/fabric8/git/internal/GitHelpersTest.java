@@ -0,0 +1,117 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.git.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import io.fabric8.common.util.Files;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test reading the profiles of a branch from its commit tree
+ */
+public class GitHelpersTest {
+
+    private File root;
+    private Git git;
+
+    @Before
+    public void init() throws Exception {
+        root = new File("target/git-helpers-test");
+        FileUtils.deleteDirectory(root);
+        git = Git.init().setDirectory(root).call();
+    }
+
+    @After
+    public void destroy() throws IOException {
+        git.getRepository().close();
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Test
+    public void testProfileFileConfigurations() throws Exception {
+        writeFile("fabric/profiles/default.profile/io.fabric8.agent.properties", "a=b");
+        writeFile("fabric/profiles/foo/bar.profile/io.fabric8.agent.properties", "c=d");
+        writeFile("fabric/profiles/foo/bar.profile/data/file.txt", "text");
+        writeFile("fabric/profiles/foo/ReadMe.md", "not in a profile");
+        writeFile("version.attributes", "");
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("profiles").call();
+
+        // the working copy is not read
+        FileUtils.deleteDirectory(new File(root, "fabric"));
+
+        ObjectReader reader = git.getRepository().newObjectReader();
+        try {
+            Map<String, Map<String, byte[]>> profiles = GitHelpers.getProfileFileConfigurations(git.getRepository(), reader, GitHelpers.MASTER_BRANCH);
+            assertEquals(2, profiles.size());
+            assertEquals("a=b", new String(profiles.get("default").get("io.fabric8.agent.properties")));
+            Map<String, byte[]> configurations = profiles.get("foo-bar");
+            assertEquals(2, configurations.size());
+            assertEquals("c=d", new String(configurations.get("io.fabric8.agent.properties")));
+            assertEquals("text", new String(configurations.get("data/file.txt")));
+            assertTrue(!profiles.containsKey("foo"));
+
+            assertNull(GitHelpers.getProfileFileConfigurations(git.getRepository(), reader, "1.1"));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testProfileTreesOnlyChangeWithTheirFiles() throws Exception {
+        writeFile("fabric/profiles/default.profile/io.fabric8.agent.properties", "a=b");
+        writeFile("fabric/profiles/foo/bar.profile/io.fabric8.agent.properties", "c=d");
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("profiles").call();
+
+        ObjectReader reader = git.getRepository().newObjectReader();
+        try {
+            Map<String, ObjectId> trees = GitHelpers.getProfileTrees(git.getRepository(), reader, GitHelpers.MASTER_BRANCH);
+            assertEquals(2, trees.size());
+
+            writeFile("fabric/profiles/foo/bar.profile/io.fabric8.agent.properties", "c=e");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("update foo-bar").call();
+
+            Map<String, ObjectId> updatedTrees = GitHelpers.getProfileTrees(git.getRepository(), reader, GitHelpers.MASTER_BRANCH);
+            assertEquals(trees.get("default"), updatedTrees.get("default"));
+            assertFalse(trees.get("foo-bar").equals(updatedTrees.get("foo-bar")));
+            assertEquals("c=e", new String(GitHelpers.getFileConfigurations(reader, updatedTrees.get("foo-bar")).get("io.fabric8.agent.properties")));
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void writeFile(String path, String content) throws IOException {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        Files.writeToFile(file, content.getBytes());
+    }
+}
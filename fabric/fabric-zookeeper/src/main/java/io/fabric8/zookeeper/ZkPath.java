@@ -85,6 +85,7 @@ public enum ZkPath {
     CONTAINER                      ("/fabric/registry/containers/config/{container}"),
     CONTAINER_DOMAINS              ("/fabric/registry/containers/domains/{container}"),
     CONTAINER_DOMAIN               ("/fabric/registry/containers/domains/{container}/{domain}"),
+    CONTAINERS_ALIVE               ("/fabric/registry/containers/alive"),
     CONTAINER_ALIVE                ("/fabric/registry/containers/alive/{container}"),
     CONTAINER_PROCESS_ID           ("/fabric/registry/containers/status/{container}/pid"),
     CONTAINER_PROVISION            ("/fabric/registry/containers/provision/{container}"),
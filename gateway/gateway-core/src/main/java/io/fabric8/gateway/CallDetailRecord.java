@@ -19,15 +19,39 @@ import java.util.Date;
 
 /**
  * Detailed Record of a Gateway call. This info can be used to report on gateway requests.
+ * <p/>
+ * The times of the phases of a call are measured from the start of the call, and are negative
+ * when the call did not reach the phase.
  */
 public class CallDetailRecord {
 
 	private final long callTimeNanos;
 	private final String error;
-	private final Date callDate;
+	private final long callTimeMillis;
+	private final String path;
+	private final int statusCode;
+	private final long dispatchTimeNanos;
+	private final long firstByteTimeNanos;
+
 	public CallDetailRecord(long callTimeNanos, String error) {
+		this(null, 0, -1, -1, callTimeNanos, error);
+	}
+
+	/**
+	 * @param path the mapped path of the call or null if the call was not mapped
+	 * @param statusCode the status code returned to the client or 0 if there was no response
+	 * @param dispatchTimeNanos the time until the call was dispatched to the proxied service
+	 * @param firstByteTimeNanos the time until the proxied service responded
+	 * @param callTimeNanos the total time of the call
+	 * @param error the error of the call or null
+	 */
+	public CallDetailRecord(String path, int statusCode, long dispatchTimeNanos, long firstByteTimeNanos, long callTimeNanos, String error) {
 		super();
-		this.callDate = new Date();
+		this.callTimeMillis = System.currentTimeMillis();
+		this.path = path;
+		this.statusCode = statusCode;
+		this.dispatchTimeNanos = dispatchTimeNanos;
+		this.firstByteTimeNanos = firstByteTimeNanos;
 		this.callTimeNanos = callTimeNanos;
 		this.error = error;
 	}
@@ -41,6 +65,26 @@ public class CallDetailRecord {
 	}
 	
 	public Date getCallDate() {
-		return callDate;
+		return new Date(callTimeMillis);
+	}
+
+	public long getCallTimeMillis() {
+		return callTimeMillis;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public long getDispatchTimeNanos() {
+		return dispatchTimeNanos;
+	}
+
+	public long getFirstByteTimeNanos() {
+		return firstByteTimeNanos;
 	}
 }
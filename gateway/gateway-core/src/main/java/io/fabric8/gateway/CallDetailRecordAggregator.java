@@ -0,0 +1,212 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.common.util.LatencyHistogram;
+import io.fabric8.common.util.LatencySnapshot;
+import io.fabric8.common.util.LatencyWindow;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Aggregates the {@link CallDetailRecord}s of a gateway per mapped path into latency histograms of the
+ * phases of the calls and counters of the status codes, without locking so that the records can be
+ * added by the event loops.
+ * <p/>
+ * The percentiles cover the calls of the last minute or two, as long as {@link #updateWindows()} is called
+ * every {@link #WINDOW_UPDATE_PERIOD}, while the counts cover all the calls.
+ * Once {@link #MAXIMUM_PATHS} paths have been seen, the calls of any other path are aggregated together.
+ */
+public class CallDetailRecordAggregator {
+    /**
+     * The path the calls which were not mapped to a service are aggregated under
+     */
+    public static final String UNMAPPED_PATH = "<unmapped>";
+    /**
+     * The path the calls of the paths beyond the {@link #MAXIMUM_PATHS} are aggregated under
+     */
+    public static final String OTHER_PATHS = "<other>";
+    static final int MAXIMUM_PATHS = 1024;
+    /**
+     * The number of milliseconds between the updates of the latency windows
+     */
+    public static final long WINDOW_UPDATE_PERIOD = TimeUnit.SECONDS.toMillis(10);
+
+    private static final String[] STATUS_NAMES = {"none", "1xx", "2xx", "3xx", "4xx", "5xx"};
+    private static final int ERRORS = STATUS_NAMES.length;
+    private static final int COUNTERS = ERRORS + 1;
+    private static final int STRIPES = 16;
+
+    private final ConcurrentMap<String, PathStatistics> statistics = new ConcurrentHashMap<String, PathStatistics>();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public void add(CallDetailRecord cdr) {
+        String path = cdr.getPath() != null ? cdr.getPath() : UNMAPPED_PATH;
+        PathStatistics answer = statistics.get(path);
+        if (answer == null && statistics.size() >= MAXIMUM_PATHS) {
+            path = OTHER_PATHS;
+            answer = statistics.get(path);
+        }
+        if (answer == null) {
+            answer = new PathStatistics();
+            PathStatistics existing = statistics.putIfAbsent(path, answer);
+            if (existing != null) {
+                answer = existing;
+            }
+        }
+        answer.add(cdr);
+    }
+
+    /**
+     * Returns the total number of calls
+     */
+    public long getCount() {
+        long answer = 0;
+        for (PathStatistics pathStatistics : statistics.values()) {
+            answer += pathStatistics.total.getCount();
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the average time of all the calls
+     */
+    public long getAverageCallTimeNanos() {
+        long count = 0;
+        long sum = 0;
+        for (PathStatistics pathStatistics : statistics.values()) {
+            LatencySnapshot snapshot = pathStatistics.total.getSnapshot();
+            count += snapshot.size();
+            sum += snapshot.getSum();
+        }
+        return count > 0 ? sum / count : 0;
+    }
+
+    /**
+     * Returns the statistics of each path, with the latencies in microseconds
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> answer = new TreeMap<String, Object>();
+        for (Map.Entry<String, PathStatistics> entry : statistics.entrySet()) {
+            answer.put(entry.getKey(), entry.getValue().toMap());
+        }
+        return answer;
+    }
+
+    /**
+     * Moves the latency windows of all the paths forward, so that the percentiles cover the last minute or two
+     * however often the statistics are read
+     */
+    public void updateWindows() {
+        for (PathStatistics pathStatistics : statistics.values()) {
+            pathStatistics.updateWindows();
+        }
+    }
+
+    /**
+     * Returns the statistics of each path as JSON
+     */
+    public String toJson() throws IOException {
+        return mapper.writeValueAsString(getStatistics());
+    }
+
+    public void reset() {
+        statistics.clear();
+    }
+
+    private static class PathStatistics {
+        private final LatencyHistogram dispatch = new LatencyHistogram();
+        private final LatencyHistogram firstByte = new LatencyHistogram();
+        private final LatencyHistogram total = new LatencyHistogram();
+        private final LatencyWindow dispatchWindow = new LatencyWindow(dispatch, 1, TimeUnit.MINUTES);
+        private final LatencyWindow firstByteWindow = new LatencyWindow(firstByte, 1, TimeUnit.MINUTES);
+        private final LatencyWindow totalWindow = new LatencyWindow(total, 1, TimeUnit.MINUTES);
+        private final AtomicLongArray[] counters = new AtomicLongArray[STRIPES];
+
+        PathStatistics() {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = new AtomicLongArray(COUNTERS);
+            }
+        }
+
+        void add(CallDetailRecord cdr) {
+            dispatch.record(cdr.getDispatchTimeNanos());
+            firstByte.record(cdr.getFirstByteTimeNanos());
+            total.record(cdr.getCallTimeNanos());
+
+            AtomicLongArray stripe = counters[(int) Thread.currentThread().getId() & (STRIPES - 1)];
+            int statusCode = cdr.getStatusCode();
+            stripe.incrementAndGet(statusCode >= 100 && statusCode < 600 ? statusCode / 100 : 0);
+            if (cdr.getError() != null) {
+                stripe.incrementAndGet(ERRORS);
+            }
+        }
+
+        void updateWindows() {
+            dispatchWindow.update();
+            firstByteWindow.update();
+            totalWindow.update();
+        }
+
+        Map<String, Object> toMap() {
+            long[] values = new long[COUNTERS];
+            for (AtomicLongArray stripe : counters) {
+                for (int i = 0; i < COUNTERS; i++) {
+                    values[i] += stripe.get(i);
+                }
+            }
+            Map<String, Long> status = new LinkedHashMap<String, Long>();
+            for (int i = 0; i < STATUS_NAMES.length; i++) {
+                if (values[i] > 0) {
+                    status.put(STATUS_NAMES[i], values[i]);
+                }
+            }
+
+            Map<String, Object> answer = new LinkedHashMap<String, Object>();
+            answer.put("count", total.getCount());
+            answer.put("errors", values[ERRORS]);
+            answer.put("status", status);
+            answer.put("dispatch", toMap(dispatchWindow.update()));
+            answer.put("firstByte", toMap(firstByteWindow.update()));
+            answer.put("total", toMap(totalWindow.update()));
+            return answer;
+        }
+
+        static Map<String, Object> toMap(LatencySnapshot snapshot) {
+            Map<String, Object> answer = new LinkedHashMap<String, Object>();
+            answer.put("count", snapshot.size());
+            answer.put("meanMicros", toMicros((long) snapshot.getMean()));
+            answer.put("p50Micros", toMicros(snapshot.getValue(0.5)));
+            answer.put("p90Micros", toMicros(snapshot.getValue(0.9)));
+            answer.put("p99Micros", toMicros(snapshot.getValue(0.99)));
+            answer.put("p999Micros", toMicros(snapshot.getValue(0.999)));
+            answer.put("maxMicros", toMicros(snapshot.getMax()));
+            return answer;
+        }
+
+        static long toMicros(long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos);
+        }
+    }
+}
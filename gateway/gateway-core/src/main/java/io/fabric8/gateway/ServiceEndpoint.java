@@ -0,0 +1,63 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway;
+
+import java.net.URI;
+
+/**
+ * A parsed URL of a service, so that the URL does not need to be parsed
+ * each time a connection is routed to the service
+ */
+public class ServiceEndpoint {
+    private final String url;
+    private final URI uri;
+    private final String scheme;
+    private final String host;
+    private final int port;
+
+    public ServiceEndpoint(String url, URI uri) {
+        this.url = url;
+        this.uri = uri;
+        this.scheme = uri.getScheme();
+        this.host = uri.getHost();
+        this.port = uri.getPort();
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    public String getScheme() {
+        return scheme;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+}
@@ -15,7 +15,15 @@
  */
 package io.fabric8.gateway;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -23,50 +31,121 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * Maintains a mapping of services which is then use by the proxy to update in process
  * proxy handlers, or used to create new proxy handers
+ * <p/>
+ * The services of each path are published as an immutable {@link Snapshot}, with the URLs of the services
+ * already parsed, which is replaced when the services change; so looking up the services allocates nothing.
  */
 public class ServiceMap {
-    private ConcurrentHashMap<String, Map<String, ServiceDetails>> map = new ConcurrentHashMap<String, Map<String, ServiceDetails>>();
+    private static final transient Logger LOG = LoggerFactory.getLogger(ServiceMap.class);
+
+    private final Map<String, Map<String, ServiceDetails>> map = new LinkedHashMap<String, Map<String, ServiceDetails>>();
+    private final ConcurrentHashMap<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
+    private volatile List<String> paths = Collections.emptyList();
 
     /**
-     * Returns a list of all the current services for the given path
+     * Returns an immutable list of all the current services for the given path
      */
     public List<ServiceDetails> getServices(String path) {
-        Map<String, ServiceDetails> pathMap = getPathMap(path);
-        return new ArrayList<ServiceDetails>(pathMap.values());
+        return getSnapshot(path).getServices();
     }
 
     /**
-     * Returns a list of all the current paths for the services
+     * Returns the current services for the given path
+     */
+    public Snapshot getSnapshot(String path) {
+        Snapshot answer = snapshots.get(path);
+        return answer != null ? answer : Snapshot.EMPTY;
+    }
+
+    /**
+     * Returns an immutable list of all the current paths for the services
      */
     public List<String> getPaths() {
-        return new ArrayList<String>(map.keySet());
+        return paths;
     }
 
     /**
      * When a service is added or updated
      */
-    public void serviceUpdated(String path, ServiceDetails service) {
+    public synchronized void serviceUpdated(String path, ServiceDetails service) {
         // ignore services with empty services
         if (!service.getServices().isEmpty()) {
-            getPathMap(path).put(service.getId(), service);
+            Map<String, ServiceDetails> pathMap = map.get(path);
+            if (pathMap == null) {
+                pathMap = new LinkedHashMap<String, ServiceDetails>();
+                map.put(path, pathMap);
+            }
+            pathMap.put(service.getId(), service);
+            publish(path, pathMap);
         }
     }
 
     /**
      * When a service is added or updated
      */
-    public void serviceRemoved(String path, ServiceDetails service) {
-        getPathMap(path).remove(service.getId());
+    public synchronized void serviceRemoved(String path, ServiceDetails service) {
+        Map<String, ServiceDetails> pathMap = map.get(path);
+        if (pathMap != null && pathMap.remove(service.getId()) != null) {
+            if (pathMap.isEmpty()) {
+                map.remove(path);
+            }
+            publish(path, pathMap);
+        }
 
         // lets update any in progress proxy handlers using this service
     }
 
-    protected Map<String, ServiceDetails> getPathMap(String path) {
-        Map<String, ServiceDetails> initial = new ConcurrentHashMap<String, ServiceDetails>();
-        Map<String, ServiceDetails> answer = map.putIfAbsent(path, initial);
-        if (answer == null) {
-            answer = initial;
+    private void publish(String path, Map<String, ServiceDetails> pathMap) {
+        if (pathMap.isEmpty()) {
+            snapshots.remove(path);
+        } else {
+            snapshots.put(path, new Snapshot(pathMap.values()));
+        }
+        paths = Collections.unmodifiableList(new ArrayList<String>(map.keySet()));
+    }
+
+    /**
+     * An immutable list of the services of a path with their parsed URLs
+     */
+    public static class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(Collections.<ServiceDetails>emptyList());
+
+        private final List<ServiceDetails> services;
+        private final Map<ServiceDetails, List<ServiceEndpoint>> endpoints = new IdentityHashMap<ServiceDetails, List<ServiceEndpoint>>();
+
+        Snapshot(Iterable<ServiceDetails> values) {
+            List<ServiceDetails> list = new ArrayList<ServiceDetails>();
+            for (ServiceDetails service : values) {
+                list.add(service);
+                List<ServiceEndpoint> serviceEndpoints = new ArrayList<ServiceEndpoint>();
+                for (String url : service.getServices()) {
+                    if (url != null && url.length() > 0) {
+                        try {
+                            serviceEndpoints.add(new ServiceEndpoint(url, new URI(url)));
+                        } catch (URISyntaxException e) {
+                            LOG.warn("Failed to parse URI: " + url + ". " + e, e);
+                        }
+                    }
+                }
+                endpoints.put(service, Collections.unmodifiableList(serviceEndpoints));
+            }
+            this.services = Collections.unmodifiableList(list);
+        }
+
+        public List<ServiceDetails> getServices() {
+            return services;
+        }
+
+        /**
+         * Returns the parsed URLs of the given service of this snapshot, or an empty list if
+         * the service is not in this snapshot
+         */
+        public List<ServiceEndpoint> getEndpoints(ServiceDetails service) {
+            List<ServiceEndpoint> answer = endpoints.get(service);
+            if (answer == null) {
+                return Collections.emptyList();
+            }
+            return answer;
         }
-        return answer;
     }
 }
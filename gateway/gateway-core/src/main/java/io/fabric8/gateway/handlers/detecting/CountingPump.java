@@ -0,0 +1,67 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.streams.ReadStream;
+import org.vertx.java.core.streams.WriteStream;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pumps the buffers read from a stream to another stream as they are, pausing the read
+ * stream while the write queue is full, and counts the bytes pumped.
+ */
+class CountingPump {
+
+    private final ReadStream<?> readStream;
+    private final WriteStream<?> writeStream;
+    private final AtomicLong counter;
+
+    private final Handler<Void> drainHandler = new Handler<Void>() {
+        @Override
+        public void handle(Void event) {
+            readStream.resume();
+        }
+    };
+
+    private final Handler<Buffer> dataHandler = new Handler<Buffer>() {
+        @Override
+        public void handle(Buffer buffer) {
+            int length = buffer.length();
+            writeStream.write(buffer);
+            counter.addAndGet(length);
+            if (writeStream.writeQueueFull()) {
+                readStream.pause();
+                writeStream.drainHandler(drainHandler);
+            }
+        }
+    };
+
+    /**
+     * @param counter the counter of the bytes pumped by this pump, which is only updated by the pump's connection
+     */
+    CountingPump(ReadStream<?> readStream, WriteStream<?> writeStream, AtomicLong counter) {
+        this.readStream = readStream;
+        this.writeStream = writeStream;
+        this.counter = counter;
+    }
+
+    void start() {
+        readStream.dataHandler(dataHandler);
+    }
+}
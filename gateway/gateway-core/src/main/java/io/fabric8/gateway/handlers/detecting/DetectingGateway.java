@@ -16,8 +16,8 @@
 package io.fabric8.gateway.handlers.detecting;
 
 import io.fabric8.common.util.ShutdownTracker;
-import io.fabric8.common.util.Strings;
 import io.fabric8.gateway.ServiceDetails;
+import io.fabric8.gateway.ServiceEndpoint;
 import io.fabric8.gateway.ServiceMap;
 import io.fabric8.gateway.SocketWrapper;
 import io.fabric8.gateway.handlers.detecting.protocol.ssl.SslConfig;
@@ -26,16 +26,17 @@ import io.fabric8.gateway.handlers.loadbalancer.ClientRequestFacadeFactory;
 import io.fabric8.gateway.handlers.loadbalancer.ConnectionParameters;
 import io.fabric8.gateway.loadbalancer.ClientRequestFacade;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
+import io.fabric8.gateway.loadbalancer.ServiceCall;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Context;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.net.NetClient;
 import org.vertx.java.core.net.NetServer;
 import org.vertx.java.core.net.NetSocket;
-import org.vertx.java.core.streams.Pump;
 import org.vertx.java.core.streams.ReadStream;
 
 import javax.net.ssl.SSLContext;
@@ -43,6 +44,13 @@ import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -65,10 +73,19 @@ public class DetectingGateway implements DetectingGatewayMBean {
     final AtomicReference<InetSocketAddress> httpGateway = new AtomicReference<InetSocketAddress>();
     SslConfig sslConfig;
     long connectionTimeout = 5000;
+    boolean usePooledBuffers = true;
+    int sslHandshakeThreads = Runtime.getRuntime().availableProcessors();
+    int sslHandshakeQueueSize = 1024;
+    ThreadPoolExecutor sslHandshakeExecutor;
 
     final AtomicLong receivedConnectionAttempts = new AtomicLong();
     final AtomicLong successfulConnectionAttempts = new AtomicLong();
     final AtomicLong failedConnectionAttempts = new AtomicLong();
+    // the bytes of the closed connections, the open ones count their own bytes
+    final AtomicLong closedBytesReceived = new AtomicLong();
+    final AtomicLong closedBytesSent = new AtomicLong();
+    final ConcurrentMap<Context, NetClient> netClients = new ConcurrentHashMap<Context, NetClient>();
+    final AtomicReference<NetClient> defaultNetClient = new AtomicReference<NetClient>();
     Set<SocketWrapper> socketsConnecting = Collections.synchronizedSet(new HashSet<SocketWrapper>());
     Set<ConnectedSocketInfo> socketsConnected = Collections.synchronizedSet(new HashSet<ConnectedSocketInfo>());
     private ShutdownTracker shutdownTacker = new ShutdownTracker();
@@ -98,7 +115,30 @@ public class DetectingGateway implements DetectingGatewayMBean {
 
 
     public void init() {
-        server = vertx.createNetServer().connectHandler(new DetectingGatewayNetSocketHandler(this));
+        int threads = sslHandshakeThreads < 0 ? Runtime.getRuntime().availableProcessors() : sslHandshakeThreads;
+        if (threads > 0) {
+            sslHandshakeExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(sslHandshakeQueueSize), new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "DetectingGateway SSL handshake " + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            sslHandshakeExecutor.allowCoreThreadTimeOut(true);
+        }
+        if (getProtocolNames().contains("ssl")) {
+            // load the key and trust stores now rather than on the event loop of the first SSL connection
+            try {
+                getSslContext();
+            } catch (Exception e) {
+                LOG.warn("Could not initialize SSL, will retry on the first SSL connection: " + e, e);
+            }
+        }
+        server = vertx.createNetServer().setUsePooledBuffers(usePooledBuffers).connectHandler(new DetectingGatewayNetSocketHandler(this));
         if (host != null) {
             server = server.listen(port, host, listenFuture);
         } else {
@@ -114,6 +154,18 @@ public class DetectingGateway implements DetectingGatewayMBean {
         for (ConnectedSocketInfo socket : new ArrayList<>(socketsConnected)) {
             handleShutdown(socket);
         }
+        for (NetClient netClient : netClients.values()) {
+            netClient.close();
+        }
+        netClients.clear();
+        NetClient netClient = defaultNetClient.getAndSet(null);
+        if (netClient != null) {
+            netClient.close();
+        }
+        if (sslHandshakeExecutor != null) {
+            sslHandshakeExecutor.shutdown();
+            sslHandshakeExecutor = null;
+        }
     }
 
     public String getHost() {
@@ -179,7 +231,7 @@ public class DetectingGateway implements DetectingGatewayMBean {
         return rc;
     }
 
-    SSLContext sslContext;
+    volatile SSLContext sslContext;
     SslSocketWrapper.ClientAuth clientAuth = SslSocketWrapper.ClientAuth.WANT;
 
     public void setShutdownTacker(ShutdownTracker shutdownTacker) {
@@ -192,13 +244,22 @@ public class DetectingGateway implements DetectingGatewayMBean {
         private final ConnectionParameters params;
         private final URI url;
         private final SocketWrapper from;
-        private final NetClient to;
+        private final NetSocket to;
+        private final ServiceCall serviceCall;
+        private final AtomicLong bytesReceived = new AtomicLong();
+        private final AtomicLong bytesSent = new AtomicLong();
 
-        public ConnectedSocketInfo(ConnectionParameters params, URI url, SocketWrapper from, NetClient to) {
+        public ConnectedSocketInfo(ConnectionParameters params, URI url, SocketWrapper from, NetSocket to, ServiceCall serviceCall) {
             this.params = params;
             this.url = url;
             this.from = from;
             this.to = to;
+            this.serviceCall = serviceCall;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s -> %s received: %d sent: %d", from.remoteAddress(), url, bytesReceived.get(), bytesSent.get());
         }
     }
 
@@ -239,91 +300,102 @@ public class DetectingGateway implements DetectingGatewayMBean {
             }
         });
         readStream.dataHandler(new Handler<Buffer>() {
-            Buffer received = new Buffer();
+            final ProtocolDetector detector = new ProtocolDetector(protocols, maxProtocolIdentificationLength);
 
             @Override
             public void handle(Buffer event) {
-                received.appendBuffer(event);
-                for (final Protocol protocol : protocols) {
-                    if (protocol.matches(received)) {
-                        if ("ssl".equals(protocol.getProtocolName())) {
-
-                            LOG.info(String.format("SSL Connection from '%s'", socket.remoteAddress()));
-                            String disabledCypherSuites=null;
-                            String enabledCipherSuites=null;
-                            if (sslConfig != null) {
-                                disabledCypherSuites = sslConfig.getDisabledCypherSuites();
-                                enabledCipherSuites = sslConfig.getEnabledCipherSuites();
-                            }
-                            if (sslContext == null) {
-                                try {
-                                    if (sslConfig != null) {
-                                        sslContext = SSLContext.getInstance(sslConfig.getProtocol());
-                                        sslContext.init(sslConfig.getKeyManagers(), sslConfig.getTrustManagers(), null);
-                                    } else {
-                                        sslContext = SSLContext.getDefault();
-                                    }
-                                } catch (Exception e) {
-                                    handleConnectFailure(socket, "Could initialize SSL: " + e);
-                                    return;
-                                }
-                            }
-
-                            // lets wrap it up in a SslSocketWrapper.
-                            SslSocketWrapper sslSocketWrapper = new SslSocketWrapper(socket);
-                            sslSocketWrapper.putBackHeader(received);
-                            sslSocketWrapper.initServer(sslContext, clientAuth, disabledCypherSuites, enabledCipherSuites);
+                final Protocol protocol = detector.detect(event);
+                if (protocol == null) {
+                    if (detector.isRuledOut()) {
+                        handleConnectFailure(socket, "Connection did not use one of the enabled protocols " + getProtocolNames());
+                    }
+                    return;
+                }
+                final Buffer received = detector.getReceived();
+                if ("ssl".equals(protocol.getProtocolName())) {
+
+                    LOG.info(String.format("SSL Connection from '%s'", socket.remoteAddress()));
+                    String disabledCypherSuites=null;
+                    String enabledCipherSuites=null;
+                    if (sslConfig != null) {
+                        disabledCypherSuites = sslConfig.getDisabledCypherSuites();
+                        enabledCipherSuites = sslConfig.getEnabledCipherSuites();
+                    }
+                    SSLContext context;
+                    try {
+                        context = getSslContext();
+                    } catch (Exception e) {
+                        handleConnectFailure(socket, "Could initialize SSL: " + e);
+                        return;
+                    }
 
-                            // Undo initial connection accounting since we will be redoing @ the SSL level.
-                            boolean removed = socketsConnecting.remove(socket);
-                            assert removed;
-                            receivedConnectionAttempts.decrementAndGet();
+                    // lets wrap it up in a SslSocketWrapper.
+                    SslSocketWrapper sslSocketWrapper = new SslSocketWrapper(socket);
+                    if (sslHandshakeExecutor != null) {
+                        sslSocketWrapper.setDelegatedTaskExecutor(vertx, sslHandshakeExecutor);
+                    }
+                    sslSocketWrapper.putBackHeader(received);
+                    sslSocketWrapper.initServer(context, clientAuth, disabledCypherSuites, enabledCipherSuites);
 
-                            DetectingGateway.this.handle(sslSocketWrapper);
+                    // Undo initial connection accounting since we will be redoing @ the SSL level.
+                    boolean removed = socketsConnecting.remove(socket);
+                    assert removed;
+                    receivedConnectionAttempts.decrementAndGet();
+
+                    DetectingGateway.this.handle(sslSocketWrapper);
+                    return;
+
+                } else if ("http".equals(protocol.getProtocolName())) {
+                    InetSocketAddress target = getHttpGateway();
+                    if (target != null) {
+                        try {
+                            URI url = new URI("http://" + target.getHostString() + ":" + target.getPort());
+                            LOG.info(String.format("Connecting '%s' to '%s:%d' using the http protocol",
+                                    socket.remoteAddress(), url.getHost(), url.getPort()));
+                            ConnectionParameters params = new ConnectionParameters();
+                            params.protocol = "http";
+                            createClient(params, socket, url, received, ServiceCall.NONE);
                             return;
-
-                        } else if ("http".equals(protocol.getProtocolName())) {
-                            InetSocketAddress target = getHttpGateway();
-                            if (target != null) {
-                                try {
-                                    URI url = new URI("http://" + target.getHostString() + ":" + target.getPort());
-                                    LOG.info(String.format("Connecting '%s' to '%s:%d' using the http protocol",
-                                            socket.remoteAddress(), url.getHost(), url.getPort()));
-                                    ConnectionParameters params = new ConnectionParameters();
-                                    params.protocol = "http";
-                                    createClient(params, socket, url, received);
-                                    return;
-                                } catch (URISyntaxException e) {
-                                    handleConnectFailure(socket, "Could not build valid connect URI: "+e);
-                                    return;
-                                }
-                            } else {
-                                handleConnectFailure(socket, "No http gateway available for the http protocol");
-                                return;
-                            }
-                        } else {
-                            protocol.snoopConnectionParameters(socket, received, new Handler<ConnectionParameters>() {
-                                @Override
-                                public void handle(ConnectionParameters connectionParameters) {
-                                    // this will install a new dataHandler on the socket.
-                                    if (connectionParameters.protocol == null)
-                                        connectionParameters.protocol = protocol.getProtocolName();
-                                    if (connectionParameters.protocolSchemes == null)
-                                        connectionParameters.protocolSchemes = protocol.getProtocolSchemes();
-                                    route(socket, connectionParameters, received);
-                                }
-                            });
+                        } catch (URISyntaxException e) {
+                            handleConnectFailure(socket, "Could not build valid connect URI: "+e);
                             return;
                         }
+                    } else {
+                        handleConnectFailure(socket, "No http gateway available for the http protocol");
+                        return;
                     }
-                }
-                if (received.length() >= maxProtocolIdentificationLength) {
-                    handleConnectFailure(socket, "Connection did not use one of the enabled protocols " + getProtocolNames());
+                } else {
+                    protocol.snoopConnectionParameters(socket, received, new Handler<ConnectionParameters>() {
+                        @Override
+                        public void handle(ConnectionParameters connectionParameters) {
+                            // this will install a new dataHandler on the socket.
+                            if (connectionParameters.protocol == null)
+                                connectionParameters.protocol = protocol.getProtocolName();
+                            if (connectionParameters.protocolSchemes == null)
+                                connectionParameters.protocolSchemes = protocol.getProtocolSchemes();
+                            route(socket, connectionParameters, received);
+                        }
+                    });
+                    return;
                 }
             }
         });
     }
 
+    SSLContext getSslContext() throws Exception {
+        SSLContext answer = sslContext;
+        if (answer == null) {
+            if (sslConfig != null) {
+                answer = SSLContext.getInstance(sslConfig.getProtocol());
+                answer.init(sslConfig.getKeyManagers(), sslConfig.getTrustManagers(), null);
+            } else {
+                answer = SSLContext.getDefault();
+            }
+            sslContext = answer;
+        }
+        return answer;
+    }
+
     private void handleConnectFailure(SocketWrapper socket, String reason) {
         if( socketsConnecting.remove(socket) ) {
             if( reason!=null ) {
@@ -341,49 +413,48 @@ public class DetectingGateway implements DetectingGatewayMBean {
         if( params.protocolVirtualHost==null ) {
             params.protocolVirtualHost = defaultVirtualHost;
         }
-        HashSet<String> schemes = new HashSet<String>(Arrays.asList(params.protocolSchemes));
         if(params.protocolVirtualHost!=null) {
-            List<ServiceDetails> services = serviceMap.getServices(params.protocolVirtualHost);
+            ServiceMap.Snapshot snapshot = serviceMap.getSnapshot(params.protocolVirtualHost);
+            List<ServiceDetails> services = snapshot.getServices();
 
             // Lets try again with the defaultVirtualHost
             if( services.isEmpty() && !params.protocolVirtualHost.equals(defaultVirtualHost) ) {
                 params.protocolVirtualHost = defaultVirtualHost;
-                services = serviceMap.getServices(params.protocolVirtualHost);
+                snapshot = serviceMap.getSnapshot(params.protocolVirtualHost);
+                services = snapshot.getServices();
             }
 
-            LOG.debug(String.format("%d services match the virtual host", services.size()));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("%d services match the virtual host", services.size()));
+            }
             if (!services.isEmpty()) {
                 ClientRequestFacade clientRequestFacade = clientRequestFacadeFactory.create(socket, params);
                 ServiceDetails serviceDetails = serviceLoadBalancer.choose(services, clientRequestFacade);
                 if (serviceDetails != null) {
-                    List<String> urlStrings = serviceDetails.getServices();
-                    LOG.debug("Selected service exposes the following URLS: {}", urlStrings);
-                    for (String urlString : urlStrings) {
-                        if (Strings.notEmpty(urlString)) {
-                            // lets create a client for this request...
-                            try {
-                                URI uri = new URI(urlString);
-                                //URL url = new URL(urlString);
-                                String urlProtocol = uri.getScheme();
-                                if (schemes.contains(urlProtocol)) {
-                                    if( !socket.remoteAddress().toString().equals(clientRequestFacade.getClientRequestKey())  ) {
-                                        LOG.info(String.format("Connecting client from '%s' (with key '%s') requesting virtual host '%s' to '%s:%d' using the %s protocol",
-                                            socket.remoteAddress(), clientRequestFacade.getClientRequestKey(), params.protocolVirtualHost, uri.getHost(), uri.getPort(), params.protocol
-                                          ));
-                                    } else {
-                                        LOG.info(String.format("Connecting client from '%s' requesting virtual host '%s' to '%s:%d' using the %s protocol",
-                                            socket.remoteAddress(), params.protocolVirtualHost, uri.getHost(), uri.getPort(), params.protocol
-                                          ));
-                                    }
-
-                                    client = createClient(params, socket, uri, received);
-                                    break;
-                                }
-                            } catch (URISyntaxException e) {
-                                LOG.warn("Failed to parse URI: " + urlString + ". " + e, e);
+                    ServiceCall serviceCall = ServiceCall.start(serviceLoadBalancer, serviceDetails);
+                    List<ServiceEndpoint> endpoints = snapshot.getEndpoints(serviceDetails);
+                    LOG.debug("Selected service exposes the following URLS: {}", endpoints);
+                    for (int i = 0, size = endpoints.size(); i < size; i++) {
+                        ServiceEndpoint endpoint = endpoints.get(i);
+                        if (contains(params.protocolSchemes, endpoint.getScheme())) {
+                            if( !socket.remoteAddress().toString().equals(clientRequestFacade.getClientRequestKey())  ) {
+                                LOG.info(String.format("Connecting client from '%s' (with key '%s') requesting virtual host '%s' to '%s:%d' using the %s protocol",
+                                    socket.remoteAddress(), clientRequestFacade.getClientRequestKey(), params.protocolVirtualHost, endpoint.getHost(), endpoint.getPort(), params.protocol
+                                  ));
+                            } else {
+                                LOG.info(String.format("Connecting client from '%s' requesting virtual host '%s' to '%s:%d' using the %s protocol",
+                                    socket.remoteAddress(), params.protocolVirtualHost, endpoint.getHost(), endpoint.getPort(), params.protocol
+                                  ));
                             }
+
+                            // lets create a client for this request...
+                            client = createClient(params, socket, endpoint.getUri(), received, serviceCall);
+                            break;
                         }
                     }
+                    if (client == null) {
+                        serviceCall.completed();
+                    }
                 }
             }
         }
@@ -394,24 +465,71 @@ public class DetectingGateway implements DetectingGatewayMBean {
         }
     }
 
+    private static boolean contains(String[] schemes, String scheme) {
+        if (schemes != null) {
+            for (String value : schemes) {
+                if (value.equals(scheme)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the client shared by the connections handled on the current Vert.x context, as the
+     * client connects its sockets on the context it was created on. Connections routed from outside
+     * of a context share a single client, so that threads which are not event loops don't leak clients.
+     */
+    NetClient getNetClient() {
+        Context context = vertx.currentContext();
+        if (context == null) {
+            NetClient answer = defaultNetClient.get();
+            if (answer == null) {
+                answer = createNetClient();
+                if (!defaultNetClient.compareAndSet(null, answer)) {
+                    answer.close();
+                    answer = defaultNetClient.get();
+                }
+            }
+            return answer;
+        }
+        NetClient answer = netClients.get(context);
+        if (answer == null) {
+            answer = createNetClient();
+            NetClient existing = netClients.putIfAbsent(context, answer);
+            if (existing != null) {
+                answer.close();
+                answer = existing;
+            }
+        }
+        return answer;
+    }
+
+    private NetClient createNetClient() {
+        return vertx.createNetClient().setUsePooledBuffers(usePooledBuffers).setTCPNoDelay(true);
+    }
+
     /**
-     * Creates a new client for the given URL and handler
+     * Connects the client socket to the given URL using the shared client of the current event loop
      */
-    private NetClient createClient(final ConnectionParameters params, final SocketWrapper socketFromClient, final URI url, final Buffer received) {
-        final NetClient netClient = vertx.createNetClient();
-        return netClient.connect(url.getPort(), url.getHost(), new Handler<AsyncResult<NetSocket>>() {
+    private NetClient createClient(final ConnectionParameters params, final SocketWrapper socketFromClient, final URI url, final Buffer received, final ServiceCall serviceCall) {
+        return getNetClient().connect(url.getPort(), url.getHost(), new Handler<AsyncResult<NetSocket>>() {
             public void handle(final AsyncResult<NetSocket> asyncSocket) {
 
                 if( !asyncSocket.succeeded() ) {
+                    serviceCall.failed();
+                    serviceCall.completed();
                     handleConnectFailure(socketFromClient, String.format("Could not connect to '%s'", url));
                 } else {
                     final NetSocket socketToServer = asyncSocket.result();
+                    serviceCall.responded();
 
                     successfulConnectionAttempts.incrementAndGet();
                     boolean removed = socketsConnecting.remove(socketFromClient);
                     assert removed;
 
-                    final ConnectedSocketInfo connectedInfo = new ConnectedSocketInfo(params, url, socketFromClient, netClient);
+                    final ConnectedSocketInfo connectedInfo = new ConnectedSocketInfo(params, url, socketFromClient, socketToServer, serviceCall);
                     boolean added = socketsConnected.add(connectedInfo);
                     assert added;
 
@@ -433,8 +551,9 @@ public class DetectingGateway implements DetectingGatewayMBean {
                     socketToServer.exceptionHandler(exceptionHandler);
 
                     socketToServer.write(received);
-                    Pump.createPump(socketToServer, socketFromClient.writeStream()).start();
-                    Pump.createPump(socketFromClient.readStream(), socketToServer).start();
+                    connectedInfo.bytesReceived.addAndGet(received.length());
+                    new CountingPump(socketToServer, socketFromClient.writeStream(), connectedInfo.bytesSent).start();
+                    new CountingPump(socketFromClient.readStream(), socketToServer, connectedInfo.bytesReceived).start();
                 }
             }
         });
@@ -444,6 +563,9 @@ public class DetectingGateway implements DetectingGatewayMBean {
         if( socketsConnected.remove(connectedInfo) ) {
             connectedInfo.from.close();
             connectedInfo.to.close();
+            connectedInfo.serviceCall.completed();
+            closedBytesReceived.addAndGet(connectedInfo.bytesReceived.get());
+            closedBytesSent.addAndGet(connectedInfo.bytesSent.get());
             shutdownTacker.release();
         }
     }
@@ -477,6 +599,24 @@ public class DetectingGateway implements DetectingGatewayMBean {
     public long getFailedConnectionAttempts() {
         return failedConnectionAttempts.get();
     }
+    public long getBytesReceived() {
+        long answer = closedBytesReceived.get();
+        synchronized (socketsConnected) {
+            for (ConnectedSocketInfo socket : socketsConnected) {
+                answer += socket.bytesReceived.get();
+            }
+        }
+        return answer;
+    }
+    public long getBytesSent() {
+        long answer = closedBytesSent.get();
+        synchronized (socketsConnected) {
+            for (ConnectedSocketInfo socket : socketsConnected) {
+                answer += socket.bytesSent.get();
+            }
+        }
+        return answer;
+    }
 
     public String[] getConnectingClients() {
         ArrayList<String> rc = new ArrayList<>();
@@ -494,6 +634,14 @@ public class DetectingGateway implements DetectingGatewayMBean {
         return rc.toArray(new String[rc.size()]);
     }
 
+    public String[] getConnectedClientStatistics() {
+        ArrayList<String> rc = new ArrayList<>();
+        for (ConnectedSocketInfo info : new ArrayList<>(socketsConnected)) {
+            rc.add(info.toString());
+        }
+        return rc.toArray(new String[rc.size()]);
+    }
+
     public long getConnectionTimeout() {
         return connectionTimeout;
     }
@@ -502,6 +650,37 @@ public class DetectingGateway implements DetectingGatewayMBean {
         this.connectionTimeout = connectionTimeout;
     }
 
+    public boolean isUsePooledBuffers() {
+        return usePooledBuffers;
+    }
+
+    public void setUsePooledBuffers(boolean usePooledBuffers) {
+        this.usePooledBuffers = usePooledBuffers;
+    }
+
+    public int getSslHandshakeThreads() {
+        return sslHandshakeThreads;
+    }
+
+    /**
+     * Sets the number of threads which run the delegated tasks of the SSL handshakes, 0 to run them on the event loop,
+     * or a negative number to use a thread per available processor, which is the default
+     */
+    public void setSslHandshakeThreads(int sslHandshakeThreads) {
+        this.sslHandshakeThreads = sslHandshakeThreads;
+    }
+
+    public int getSslHandshakeQueueSize() {
+        return sslHandshakeQueueSize;
+    }
+
+    /**
+     * Sets the number of delegated SSL handshake tasks which can wait for a thread before they are run on the event loop
+     */
+    public void setSslHandshakeQueueSize(int sslHandshakeQueueSize) {
+        this.sslHandshakeQueueSize = sslHandshakeQueueSize;
+    }
+
     public int getPort() {
         return port;
     }
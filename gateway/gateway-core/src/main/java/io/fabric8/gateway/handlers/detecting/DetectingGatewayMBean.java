@@ -30,8 +30,11 @@ public interface DetectingGatewayMBean {
     public long getReceivedConnectionAttempts();
     public long getSuccessfulConnectionAttempts();
     public long getFailedConnectionAttempts();
+    public long getBytesReceived();
+    public long getBytesSent();
     public String[] getConnectingClients();
     public String[] getConnectedClients();
+    public String[] getConnectedClientStatistics();
     public long getConnectionTimeout();
     public void setConnectionTimeout(long connectionTimeout);
 
@@ -0,0 +1,86 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting;
+
+import org.vertx.java.core.buffer.Buffer;
+
+import java.util.List;
+
+/**
+ * Detects the protocol of a connection from the bytes it reads.  Only the first bytes needed to
+ * identify the protocols are matched, as they are read, and a protocol is ruled out once it has been
+ * given as many bytes as it needs to identify itself without matching.
+ */
+public class ProtocolDetector {
+
+    private final Protocol[] candidates;
+    private int candidateCount;
+    private final int maxIdentificationLength;
+    private final Buffer header;
+    private final Buffer received = new Buffer();
+
+    public ProtocolDetector(List<Protocol> protocols, int maxIdentificationLength) {
+        this.candidates = protocols.toArray(new Protocol[protocols.size()]);
+        this.candidateCount = candidates.length;
+        this.maxIdentificationLength = maxIdentificationLength;
+        this.header = new Buffer(maxIdentificationLength);
+    }
+
+    /**
+     * Adds the next bytes read from the connection
+     *
+     * @return the first protocol which matches the bytes read so far, or null if none match yet
+     */
+    public Protocol detect(Buffer data) {
+        received.appendBuffer(data);
+        int needed = maxIdentificationLength - header.length();
+        if (needed <= 0 || data.length() == 0) {
+            return null;
+        }
+        header.appendBuffer(data.length() > needed ? data.getBuffer(0, needed) : data);
+
+        int length = header.length();
+        int i = 0;
+        while (i < candidateCount) {
+            Protocol protocol = candidates[i];
+            if (protocol.matches(header)) {
+                return protocol;
+            }
+            if (length >= protocol.getMaxIdentificationLength()) {
+                candidateCount--;
+                System.arraycopy(candidates, i + 1, candidates, i, candidateCount - i);
+                candidates[candidateCount] = null;
+            } else {
+                i++;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if all the protocols have been ruled out
+     */
+    public boolean isRuledOut() {
+        return candidateCount == 0;
+    }
+
+    /**
+     * Returns all the bytes read so far
+     */
+    public Buffer getReceived() {
+        return received;
+    }
+}
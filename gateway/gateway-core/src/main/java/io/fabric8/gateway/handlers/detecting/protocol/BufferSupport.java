@@ -16,6 +16,7 @@
 package io.fabric8.gateway.handlers.detecting.protocol;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.vertx.java.core.buffer.Buffer;
 
 import java.lang.reflect.Field;
@@ -151,11 +152,12 @@ public class BufferSupport {
     }
 
 
+    /**
+     * Copies the remaining bytes of the byte buffer to a new buffer, consuming them.
+     */
     public static Buffer toBuffer(ByteBuffer buff) {
-        Buffer self = new Buffer(buff.remaining());
-        while( buff.hasRemaining() ) {
-            self.appendByte(buff.get());
-        }
+        Buffer self = new Buffer(Unpooled.copiedBuffer(buff));
+        buff.position(buff.limit());
         return self;
     }
 
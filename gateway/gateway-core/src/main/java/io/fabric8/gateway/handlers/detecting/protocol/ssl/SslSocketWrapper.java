@@ -16,7 +16,9 @@
 package io.fabric8.gateway.handlers.detecting.protocol.ssl;
 
 import io.fabric8.gateway.SocketWrapper;
+import org.vertx.java.core.Context;
 import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
 import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.streams.ReadStream;
 import org.vertx.java.core.streams.WriteStream;
@@ -28,10 +30,16 @@ import javax.net.ssl.SSLException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
+import static io.fabric8.gateway.handlers.detecting.protocol.BufferSupport.toBuffer;
 import static javax.net.ssl.SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING;
 
 /**
+ * Wraps a socket with an SSLEngine.  The encrypted and plain bytes are passed through
+ * direct buffers which are allocated once per connection and reused for every read and
+ * write, and the delegated handshake tasks can be run on an executor rather than the event loop.
  */
 public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSocketWrapper>, WriteStream<SslSocketWrapper> {
 
@@ -47,15 +55,20 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
     private Handler<Throwable> plainExceptionHandler;
     private boolean failed = false;
 
+    private Executor delegatedTaskExecutor;
+    private Context context;
+    private boolean delegatedTasksRunning;
+
     //////////////////////////////////////////////////////////////////////////
     //
     // ReadStream<SslSocketWrapper> interface impl.
     //
     //////////////////////////////////////////////////////////////////////////
-    private Buffer encryptedReadBuffer;
+    private Buffer header;
+    private ByteBuffer encryptedReadBuffer;
     private boolean encryptedReadBufferUnderflow;
     private boolean encryptedReadEOF = false;
-    private Buffer plainReadBuffer;
+    private ByteBuffer plainReadBuffer;
     private Handler<Void> plainEndHandler;
     private Handler<Buffer> plainDataHandler;
     private int readPaused = 0;
@@ -64,32 +77,58 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
         if( engine!=null ) {
             throw new IllegalStateException("putBackHeader must be called before init");
         }
-        encryptedReadBuffer = buffer;
+        header = buffer;
+    }
+
+    private void appendEncryptedRead(Buffer buffer) {
+        ByteBuffer data = buffer.getByteBuf().nioBuffer();
+        if( encryptedReadBuffer.remaining() < data.remaining() ) {
+            int size = Math.max(encryptedReadBuffer.position() + data.remaining(), encryptedReadBuffer.capacity() * 2);
+            ByteBuffer grown = ByteBuffer.allocateDirect(size);
+            encryptedReadBuffer.flip();
+            grown.put(encryptedReadBuffer);
+            encryptedReadBuffer = grown;
+        }
+        encryptedReadBuffer.put(data);
+        encryptedReadBufferUnderflow = false;
+    }
+
+    private boolean hasEncryptedRead() {
+        return encryptedReadBuffer.position() > 0;
     }
 
     private void pumpReads() {
         pumpReads(true);
 
     }
-    private void pumpReads(boolean allowHandshake) {
+
+    /**
+     * Unwraps all the complete TLS records read so far into the plain read buffer and passes the plain
+     * bytes to the data handler.
+     *
+     * @return true if any bytes were unwrapped or passed to the data handler
+     */
+    private boolean pumpReads(boolean allowHandshake) {
+        boolean progress = false;
         boolean pump = true;
         while( pump ) {
             pump = false;
 
-            if( readPaused > 0 || failed ) {
-                return;
+            if( readPaused > 0 || failed || delegatedTasksRunning ) {
+                return progress;
             }
 
-            if( encryptedReadBuffer!=null && plainReadBuffer==null && !encryptedReadBufferUnderflow ) {
-                ByteBuffer input = ByteBuffer.wrap(encryptedReadBuffer.getBytes());
-                ByteBuffer output = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
-
+            if( hasEncryptedRead() && plainReadBuffer.position()==0 && !encryptedReadBufferUnderflow ) {
+                encryptedReadBuffer.flip();
                 try {
                     boolean done = false;
                     while( !done ) {
                         done = true;
 
-                        SSLEngineResult result = engine.unwrap(input, output);
+                        SSLEngineResult result = engine.unwrap(encryptedReadBuffer, plainReadBuffer);
+                        if( result.bytesConsumed() > 0 || result.bytesProduced() > 0 ) {
+                            progress = true;
+                        }
                         switch( result.getStatus() ) {
                             case CLOSED:
                                 engine.closeInbound();
@@ -103,56 +142,46 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                                     case NEED_WRAP:
                                         break;
                                     default:
-                                        done = !input.hasRemaining();
+                                        done = !encryptedReadBuffer.hasRemaining();
                                 }
                                 break;
                             case BUFFER_OVERFLOW:
-                                throw new SSLException("BUFFER_OVERFLOW");
-                        }
-
-                        // Lets fill the plain buffer..
-                        output.flip();
-                        if( output.remaining() > 0 ) {
-                            pump = true;
-                            int len = output.remaining();
-                            if( plainReadBuffer == null ) {
-                                plainReadBuffer = new Buffer(len);
-                            }
-                            plainReadBuffer.appendBytes(output.array(), output.arrayOffset()+ output.position(), len);
+                                // pass on what has been unwrapped so far before unwrapping the next record
+                                if( plainReadBuffer.position()==0 ) {
+                                    int size = engine.getSession().getApplicationBufferSize();
+                                    if( plainReadBuffer.capacity() >= size ) {
+                                        throw new SSLException("BUFFER_OVERFLOW");
+                                    }
+                                    plainReadBuffer = ByteBuffer.allocateDirect(size);
+                                    done = false;
+                                }
                         }
-                        output.clear();
-
                     }
                 } catch (SSLException e) {
                     onFailure(e);
-                    return;
+                    return progress;
                 } finally {
-                    int len = input.remaining();
-                    if( len > 0 ) {
-                        // we need to compact the encryptedReadBuffer
-                        if( input.position()!=0  ) {
-                            encryptedReadBuffer = new Buffer(len);
-                            encryptedReadBuffer.appendBytes(input.array(), input.arrayOffset()+ input.position(), len);
-                        }
-                    } else {
-                        // everything was consumed.
-                        encryptedReadBuffer = null;
-                    }
+                    encryptedReadBuffer.compact();
+                }
+                if( plainReadBuffer.position() > 0 ) {
+                    pump = true;
                 }
             }
 
             // Send the plain buffer to the the data handler...
-            if( plainReadBuffer !=null && readPaused==0 ) {
+            if( plainReadBuffer.position() > 0 && readPaused==0 ) {
                 pump = true;
-                Buffer data = plainReadBuffer;
-                plainReadBuffer = null;
+                progress = true;
+                plainReadBuffer.flip();
+                Buffer data = toBuffer(plainReadBuffer);
+                plainReadBuffer.clear();
                 Handler<Buffer> handler = plainDataHandler;
                 if( handler !=null ) {
                     handler.handle(data);
                 }
             }
 
-            if( encryptedReadBuffer==null && plainReadBuffer==null && encryptedReadEOF ) {
+            if( !hasEncryptedRead() && plainReadBuffer.position()==0 && encryptedReadEOF ) {
                 encryptedReadEOF = false;
                 Handler<Void> handler = plainEndHandler;
                 if( handler !=null ) {
@@ -164,9 +193,10 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                 if( allowHandshake ) {
                     handshake();
                 }
-                return;
+                return progress;
             }
         }
+        return progress;
     }
 
     @Override
@@ -191,7 +221,7 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
     @Override
     public SslSocketWrapper pause() {
         readPaused ++;
-        if( readPaused == 1 ) {
+        if( readPaused == 1 && !delegatedTasksRunning ) {
             next.readStream().pause();
         }
         return this;
@@ -200,7 +230,7 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
     @Override
     public SslSocketWrapper resume() {
         readPaused --;
-        if( readPaused ==0 ) {
+        if( readPaused ==0 && !delegatedTasksRunning ) {
             next.readStream().resume();
         }
         pumpReads();
@@ -220,8 +250,9 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
     //////////////////////////////////////////////////////////////////////////
 
     private boolean writeOverflow;
+    private boolean writeQueueDrainPending;
     private Buffer plainWriteBuffer;
-    private Buffer encryptedWriteBuffer;
+    private ByteBuffer encryptedWriteBuffer;
 
     @Override
     public SslSocketWrapper drainHandler(Handler<Void> voidHandler) {
@@ -231,7 +262,11 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
 
     @Override
     public boolean writeQueueFull() {
-        return plainWriteBuffer != null;
+        if( plainWriteBuffer != null ) {
+            writeQueueDrainPending = true;
+            return true;
+        }
+        return false;
     }
 
     @Override
@@ -262,24 +297,46 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
         pumpWrites(true);
     }
 
-    private void pumpWrites(boolean allowHandshake) {
+    /**
+     * Wraps the plain bytes written so far into the encrypted write buffer and writes the encrypted
+     * bytes to the socket while it can take them.
+     *
+     * @return true if any bytes were wrapped or written to the socket
+     */
+    private boolean pumpWrites(boolean allowHandshake) {
+        boolean progress = wrapWrites(allowHandshake);
+        if( writeQueueDrainPending && plainWriteBuffer == null && !failed ) {
+            writeQueueDrainPending = false;
+            Handler<Void> handler = plainDrainHandler;
+            if( handler != null ) {
+                handler.handle(null);
+            }
+        }
+        return progress;
+    }
+
+    private boolean wrapWrites(boolean allowHandshake) {
+        boolean progress = false;
         boolean pump = true;
         while (pump) {
             pump= false;
 
-            if( failed ) {
-                return;
+            if( failed || delegatedTasksRunning ) {
+                return progress;
             }
 
             if( plainWriteBuffer!=null ) {
-                ByteBuffer input = ByteBuffer.wrap(plainWriteBuffer.getBytes());
-                ByteBuffer output = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+                ByteBuffer input = plainWriteBuffer.getByteBuf().nioBuffer();
 
                 try {
                     boolean done = false;
                     while( !done ) {
                         done = true;
-                        SSLEngineResult result = engine.wrap(input, output);
+                        SSLEngineResult result = engine.wrap(input, encryptedWriteBuffer);
+                        if( result.bytesProduced() > 0 ) {
+                            pump = true;
+                            progress = true;
+                        }
                         switch( result.getStatus() ) {
                             case OK:
                                 switch(engine.getHandshakeStatus()) {
@@ -295,31 +352,27 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                             case BUFFER_UNDERFLOW:
                                 break;
                             case BUFFER_OVERFLOW:
-                                done = false;
-                        }
-
-                        // Lets fill the plain buffer..
-                        output.flip();
-                        int len = output.remaining();
-                        if( len > 0 ) {
-                            pump = true;
-                            if( encryptedWriteBuffer == null ) {
-                                encryptedWriteBuffer = new Buffer(len);
-                            }
-                            encryptedWriteBuffer.appendBytes(output.array(), output.arrayOffset()+ output.position(), len);
+                                // write out what has been wrapped so far before wrapping any more
+                                if( encryptedWriteBuffer.position()==0 ) {
+                                    int size = engine.getSession().getPacketBufferSize();
+                                    if( encryptedWriteBuffer.capacity() >= size ) {
+                                        throw new SSLException("BUFFER_OVERFLOW");
+                                    }
+                                    encryptedWriteBuffer = ByteBuffer.allocateDirect(size);
+                                    done = false;
+                                }
                         }
-                        output.clear();
                     }
                 } catch (SSLException e) {
                    onFailure(e);
-                   return;
+                   return progress;
                 } finally {
                     int len = input.remaining();
                     if( len > 0 ) {
                         // we need to compact the plainWriteBuffer
-                        if( input.position()!=0  ) {
-                            plainWriteBuffer = new Buffer(len);
-                            plainWriteBuffer.appendBytes(input.array(), input.arrayOffset()+ input.position(), len);
+                        int length = plainWriteBuffer.length();
+                        if( len != length ) {
+                            plainWriteBuffer = plainWriteBuffer.getBuffer(length - len, length);
                         }
                     } else {
                         // everything was consumed.
@@ -328,14 +381,16 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                 }
             }
 
-            if( encryptedWriteBuffer !=null && !writeOverflow ) {
+            if( encryptedWriteBuffer.position() > 0 && !writeOverflow ) {
                 if( next.writeStream().writeQueueFull() ) {
                     writeOverflow = true;
                     next.writeStream().drainHandler(drainHandler);
                 } else {
                     pump = true;
-                    Buffer data = encryptedWriteBuffer;
-                    encryptedWriteBuffer = null;
+                    progress = true;
+                    encryptedWriteBuffer.flip();
+                    Buffer data = toBuffer(encryptedWriteBuffer);
+                    encryptedWriteBuffer.clear();
                     next.writeStream().write(data);
                 }
             }
@@ -344,9 +399,10 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                 if( allowHandshake ) {
                     handshake();
                 }
-                return;
+                return progress;
             }
         }
+        return progress;
     }
 
     //////////////////////////////////////////////////////////////////////////
@@ -442,16 +498,27 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
         }
     }
 
+    /**
+     * Runs the delegated tasks of the SSL engine on the given executor, rather than on the
+     * event loop of the socket, which must be the current event loop.
+     */
+    public void setDelegatedTaskExecutor(Vertx vertx, Executor executor) {
+        this.context = vertx.currentContext();
+        this.delegatedTaskExecutor = context != null ? executor : null;
+    }
+
     private void init() {
+        encryptedReadBuffer = ByteBuffer.allocateDirect(engine.getSession().getPacketBufferSize());
+        plainReadBuffer = ByteBuffer.allocateDirect(engine.getSession().getApplicationBufferSize());
+        encryptedWriteBuffer = ByteBuffer.allocateDirect(engine.getSession().getPacketBufferSize());
+        if( header != null ) {
+            appendEncryptedRead(header);
+            header = null;
+        }
         this.next.readStream().dataHandler(new Handler<Buffer>() {
             @Override
             public void handle(Buffer buffer) {
-                if( encryptedReadBuffer == null ) {
-                    encryptedReadBuffer = buffer;
-                } else {
-                    encryptedReadBuffer.appendBuffer(buffer);
-                }
-                encryptedReadBufferUnderflow = false;
+                appendEncryptedRead(buffer);
                 pumpReads();
             }
         });
@@ -478,7 +545,7 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
     }
 
     public void handshake() {
-        if( failed )
+        if( failed || delegatedTasksRunning )
             return;
         try {
             while( true ) {
@@ -489,9 +556,15 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                         return;
 
                     case NEED_TASK:
-                        final Runnable task = engine.getDelegatedTask();
-                        if( task!=null ) {
-                            task.run();
+                        if( delegatedTaskExecutor!=null ) {
+                            if( !runDelegatedTasks() ) {
+                                return;
+                            }
+                        } else {
+                            final Runnable task = engine.getDelegatedTask();
+                            if( task!=null ) {
+                                task.run();
+                            }
                         }
                         break;
 
@@ -499,14 +572,18 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                         if( plainWriteBuffer==null ) {
                             plainWriteBuffer = new Buffer();
                         }
-                        pumpWrites(false);
-                        break;
+                        if( pumpWrites(false) ) {
+                            break;
+                        } else {
+                            // resumed by the drain handler of the socket
+                            return;
+                        }
 
                     case NEED_UNWRAP:
-                        if( encryptedReadBuffer!=null ) {
-                            pumpReads(false);
+                        if( hasEncryptedRead() && !encryptedReadBufferUnderflow && pumpReads(false) ) {
                             break;
                         } else {
+                            // resumed when more bytes are read
                             return;
                         }
 
@@ -524,6 +601,66 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
         }
     }
 
+    /**
+     * Hands the delegated tasks to the executor, which resumes the handshake on the event loop
+     * once they have run. The socket is not read meanwhile, so the encrypted bytes don't pile up.
+     *
+     * @return true if the tasks were run on the event loop since the executor was saturated
+     */
+    private boolean runDelegatedTasks() {
+        final ArrayList<Runnable> tasks = new ArrayList<Runnable>();
+        Runnable task;
+        while( (task = engine.getDelegatedTask())!=null ) {
+            tasks.add(task);
+        }
+        delegatedTasksRunning = true;
+        if( readPaused==0 ) {
+            next.readStream().pause();
+        }
+        try {
+            delegatedTaskExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Throwable error = null;
+                    try {
+                        for (Runnable task : tasks) {
+                            task.run();
+                        }
+                    } catch (Throwable e) {
+                        error = e;
+                    } finally {
+                        final Throwable failure = error;
+                        context.runOnContext(new Handler<Void>() {
+                            @Override
+                            public void handle(Void event) {
+                                delegatedTasksFinished();
+                                if( failure!=null ) {
+                                    onFailure(failure);
+                                } else {
+                                    handshake();
+                                }
+                            }
+                        });
+                    }
+                }
+            });
+            return false;
+        } catch (RejectedExecutionException e) {
+            delegatedTasksFinished();
+            for (Runnable rejected : tasks) {
+                rejected.run();
+            }
+            return true;
+        }
+    }
+
+    private void delegatedTasksFinished() {
+        delegatedTasksRunning = false;
+        if( readPaused==0 ) {
+            next.readStream().resume();
+        }
+    }
+
     private void onFailure(Throwable error) {
         failed = true;
         Handler<Throwable> handler = plainExceptionHandler;
@@ -0,0 +1,313 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vertx.java.core.Context;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.http.HttpClient;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A registry of keep alive {@link HttpClient}s, one per upstream host and port for each Vert.x context, so that
+ * proxied requests reuse pooled connections rather than opening a new connection each time. A Vert.x 2 client runs
+ * its handlers on the context that created it and is not thread safe, so it is never shared between event loops
+ * and is also closed on its own context.
+ * Clients that have been idle for longer than the idle timeout, or whose service is no longer mapped,
+ * are closed by a periodic sweep.
+ */
+public class HttpClientPool {
+    private static final transient Logger LOG = LoggerFactory.getLogger(HttpClientPool.class);
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 32;
+    public static final long DEFAULT_IDLE_TIMEOUT = 60000;
+
+    private final Vertx vertx;
+    private final int maxConnections;
+    private final long idleTimeout;
+    private final boolean pipelining;
+    private final ConcurrentMap<ClientKey, PooledClient> clients = new ConcurrentHashMap<ClientKey, PooledClient>();
+    private long timerId = -1;
+
+    public HttpClientPool(Vertx vertx) {
+        this(vertx, DEFAULT_MAX_CONNECTIONS, DEFAULT_IDLE_TIMEOUT, false);
+    }
+
+    /**
+     * @param vertx          the vertx instance to create the clients with
+     * @param maxConnections the maximum number of connections to each upstream host and port
+     * @param idleTimeout    the number of milliseconds after which an unused client is closed, or 0 to keep them open
+     * @param pipelining     whether requests are pipelined on the connections
+     */
+    public HttpClientPool(Vertx vertx, int maxConnections, long idleTimeout, boolean pipelining) {
+        this.vertx = vertx;
+        this.maxConnections = maxConnections;
+        this.idleTimeout = idleTimeout;
+        this.pipelining = pipelining;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpClientPool{" +
+                "maxConnections=" + maxConnections +
+                ", idleTimeout=" + idleTimeout +
+                ", pipelining=" + pipelining +
+                ", clients=" + clients.keySet() +
+                '}';
+    }
+
+    /**
+     * Starts the periodic sweep of the idle and unmapped clients
+     *
+     * @param mappedServices returns the currently mapped services, or null to only close idle clients
+     */
+    public synchronized void start(final HttpGateway mappedServices) {
+        if (timerId == -1 && idleTimeout > 0) {
+            timerId = vertx.setPeriodic(Math.max(1000, idleTimeout / 2), new Handler<Long>() {
+                @Override
+                public void handle(Long event) {
+                    closeIdleClients(System.currentTimeMillis());
+                    if (mappedServices != null) {
+                        try {
+                            retainServices(mappedServices.getMappedServices());
+                        } catch (Exception e) {
+                            LOG.debug("Could not get the mapped services: " + e, e);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the pooled client of the current context for the host and port of the URL, which must be
+     * {@link #release(URL) released} on the same context, exactly once, when the request has completed
+     */
+    public HttpClient acquire(URL url) {
+        Context context = vertx.currentContext();
+        ClientKey key = new ClientKey(context, getKey(url));
+        while (true) {
+            PooledClient pooledClient = clients.get(key);
+            if (pooledClient == null) {
+                HttpClient client = vertx.createHttpClient();
+                client.setHost(url.getHost());
+                client.setPort(url.getPort());
+                client.setKeepAlive(true);
+                client.setMaxPoolSize(maxConnections);
+                client.setPipelining(pipelining);
+                pooledClient = new PooledClient(context, client);
+                PooledClient existing = clients.putIfAbsent(key, pooledClient);
+                if (existing != null) {
+                    client.close();
+                    pooledClient = existing;
+                } else if (LOG.isDebugEnabled()) {
+                    LOG.debug("Created pooled client for " + key);
+                }
+            }
+            if (pooledClient.acquire()) {
+                return pooledClient.client;
+            }
+            // it was closed concurrently so lets create a new one
+            clients.remove(key, pooledClient);
+        }
+    }
+
+    public void release(URL url) {
+        PooledClient pooledClient = clients.get(new ClientKey(vertx.currentContext(), getKey(url)));
+        if (pooledClient != null) {
+            pooledClient.release();
+        }
+    }
+
+    /**
+     * Closes the clients which are not in use and have not been used since the idle timeout
+     */
+    public void closeIdleClients(long now) {
+        for (Map.Entry<ClientKey, PooledClient> entry : clients.entrySet()) {
+            PooledClient pooledClient = entry.getValue();
+            if (pooledClient.closeIfIdle(now - idleTimeout)) {
+                remove(entry.getKey(), pooledClient);
+            }
+        }
+    }
+
+    /**
+     * Closes the clients for the hosts and ports which none of the mapped services use any more,
+     * once their requests in progress have completed
+     */
+    public void retainServices(Map<String, MappedServices> mappedServices) {
+        Set<String> keys = new HashSet<String>();
+        for (MappedServices services : mappedServices.values()) {
+            addKeys(keys, services.getServiceUrls());
+        }
+        for (Map.Entry<ClientKey, PooledClient> entry : clients.entrySet()) {
+            if (!keys.contains(entry.getKey().hostAndPort) && entry.getValue().closeIfIdle(Long.MAX_VALUE)) {
+                remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    public synchronized void close() {
+        if (timerId != -1) {
+            vertx.cancelTimer(timerId);
+            timerId = -1;
+        }
+        for (Map.Entry<ClientKey, PooledClient> entry : clients.entrySet()) {
+            if (entry.getValue().close()) {
+                remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public boolean isPipelining() {
+        return pipelining;
+    }
+
+    private void remove(ClientKey key, PooledClient pooledClient) {
+        clients.remove(key, pooledClient);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Closed pooled client for " + key);
+        }
+    }
+
+    private static void addKeys(Set<String> keys, Collection<String> serviceUrls) {
+        for (String serviceUrl : serviceUrls) {
+            try {
+                keys.add(getKey(new URL(serviceUrl)));
+            } catch (MalformedURLException e) {
+                // it can't have a client then
+            }
+        }
+    }
+
+    private static String getKey(URL url) {
+        return url.getHost() + ":" + url.getPort();
+    }
+
+    /**
+     * The host and port of a client, and the context it was created on
+     */
+    private static final class ClientKey {
+        private final Context context;
+        private final String hostAndPort;
+
+        ClientKey(Context context, String hostAndPort) {
+            this.context = context;
+            this.hostAndPort = hostAndPort;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ClientKey)) {
+                return false;
+            }
+            ClientKey that = (ClientKey) o;
+            return context == that.context && hostAndPort.equals(that.hostAndPort);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(context) + hostAndPort.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return hostAndPort;
+        }
+    }
+
+    private static class PooledClient {
+        private final Context context;
+        private final HttpClient client;
+        private int inUse;
+        private long lastUsed = System.currentTimeMillis();
+        private boolean closed;
+
+        PooledClient(Context context, HttpClient client) {
+            this.context = context;
+            this.client = client;
+        }
+
+        /**
+         * @return false if the client has already been closed
+         */
+        synchronized boolean acquire() {
+            if (closed) {
+                return false;
+            }
+            inUse++;
+            lastUsed = System.currentTimeMillis();
+            return true;
+        }
+
+        synchronized void release() {
+            lastUsed = System.currentTimeMillis();
+            inUse--;
+        }
+
+        synchronized boolean closeIfIdle(long usedBefore) {
+            return inUse <= 0 && lastUsed < usedBefore && close();
+        }
+
+        /**
+         * Marks the client as closed and closes it on the context it was created on
+         *
+         * @return true if the client was closed by this call
+         */
+        synchronized boolean close() {
+            if (closed) {
+                return false;
+            }
+            closed = true;
+            if (context != null) {
+                context.runOnContext(new Handler<Void>() {
+                    @Override
+                    public void handle(Void event) {
+                        client.close();
+                    }
+                });
+            } else {
+                client.close();
+            }
+            return true;
+        }
+    }
+}
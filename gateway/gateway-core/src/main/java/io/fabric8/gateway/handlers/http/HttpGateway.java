@@ -39,7 +39,9 @@ public interface HttpGateway {
     void removeMappingRuleConfiguration(HttpMappingRule mappingRule);
 
     /**
-     * Returns the currently mapped services indexed by URI prefix on this HTTP gateway
+     * Returns the currently mapped services indexed by URI prefix on this HTTP gateway.
+     * The same map should be returned until the mappings change, as the {@link HttpGatewayHandler}
+     * only rebuilds its index of the URI prefixes when a different map is returned.
      */
     Map<String, MappedServices> getMappedServices();
 
@@ -30,6 +30,7 @@ import org.vertx.java.core.http.HttpServerRequest;
 import org.vertx.java.core.http.HttpServerResponse;
 
 import io.fabric8.gateway.CallDetailRecord;
+import io.fabric8.gateway.loadbalancer.ServiceCall;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -39,10 +40,10 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Collection;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
 /**
@@ -53,15 +54,34 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
     private final Vertx vertx;
     private final HttpGateway httpGateway;
     private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClientPool clientPool;
+    private volatile MappedServicesIndex index;
 
     public HttpGatewayHandler(Vertx vertx, HttpGateway httpGateway) {
+        this(vertx, httpGateway, new HttpClientPool(vertx));
+    }
+
+    public HttpGatewayHandler(Vertx vertx, HttpGateway httpGateway, HttpClientPool clientPool) {
         this.vertx = vertx;
         this.httpGateway = httpGateway;
+        this.clientPool = clientPool;
+        clientPool.start(httpGateway);
+    }
+
+    /**
+     * Closes the pooled connections to the proxied services
+     */
+    public void close() {
+        clientPool.close();
+    }
+
+    public HttpClientPool getClientPool() {
+        return clientPool;
     }
 
     @Override
     public void handle(final HttpServerRequest request) {
-    	long callStart = System.nanoTime();
+        final CallRecorder recorder = new CallRecorder(System.nanoTime());
         String uri = request.uri();
         String uri2 = normalizeUri(uri);
 
@@ -72,6 +92,10 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
         // lets map the request URI to map to the service URI and then the renaming URI
         // using mapping rules...
         HttpClient client = null;
+        URL clientURL = null;
+        ServiceCall startedCall = ServiceCall.NONE;
+        // both the end of the response and a failure can complete the request, but it must only be released once
+        final AtomicBoolean released = new AtomicBoolean();
         String remaining = null;
         String prefix = null;
         String proxyServiceUrl = null;
@@ -85,13 +109,12 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                 response.headers().set("ContentType", "application/json");
                 response.end(json);
                 response.setStatusCode(200);
+                recorder.completed(200, null);
             } else {
                 MappedServices mappedServices = null;
-                URL clientURL = null;
-                Set<Map.Entry<String, MappedServices>> entries = mappingRules.entrySet();
-                for (Map.Entry<String, MappedServices> entry : entries) {
-                    String path = entry.getKey();
-                    mappedServices = entry.getValue();
+                MappedServicesIndex index = getIndex(mappingRules);
+                for (String path : index.findPrefixes(uri)) {
+                    mappedServices = index.getMappedServices(path);
 
                     String pathPrefix = path;
                     boolean uriMatches = uri.startsWith(pathPrefix);
@@ -115,6 +138,7 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                                 client = createClient(clientURL);
                                 prefix = clientURL.getPath();
                                 reverseServiceUrl = request.absoluteURI().resolve(pathPrefix).toString();
+                                recorder.path = pathPrefix;
                                 if (reverseServiceUrl.endsWith("/")) {
                                     reverseServiceUrl = reverseServiceUrl.substring(0, reverseServiceUrl.length() - 1);
                                 }
@@ -137,9 +161,13 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                     }
 
                     LOG.info("Proxying request " + uri + " to service path: " + servicePath + " on service: " + proxyServiceUrl + " reverseServiceUrl: " + reverseServiceUrl);
-                    final HttpClient finalClient = client;
+                    final URL finalClientURL = clientURL;
+                    final ServiceCall serviceCall = mappedServices != null ? mappedServices.startServiceCall(proxyServiceUrl) : ServiceCall.NONE;
+                    startedCall = serviceCall;
                     Handler<HttpClientResponse> responseHandler = new Handler<HttpClientResponse>() {
-                        public void handle(HttpClientResponse clientResponse) {
+                        public void handle(final HttpClientResponse clientResponse) {
+                            serviceCall.responded();
+                            recorder.responded();
                             if (LOG.isDebugEnabled()) {
                                 LOG.debug("Proxying response: " + clientResponse.statusCode());
                             }
@@ -154,10 +182,25 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                                     request.response().write(data);
                                 }
                             });
+                            clientResponse.exceptionHandler(new Handler<Throwable>() {
+                                public void handle(Throwable e) {
+                                    LOG.warn("Failed to proxy response from " + finalClientURL + ". " + e, e);
+                                    request.response().close();
+                                    if (released.compareAndSet(false, true)) {
+                                        clientPool.release(finalClientURL);
+                                        serviceCall.completed();
+                                        recorder.completed(clientResponse.statusCode(), String.valueOf(e));
+                                    }
+                                }
+                            });
                             clientResponse.endHandler(new VoidHandler() {
                                 public void handle() {
                                     request.response().end();
-                                    finalClient.close();
+                                    if (released.compareAndSet(false, true)) {
+                                        clientPool.release(finalClientURL);
+                                        serviceCall.completed();
+                                        recorder.completed(clientResponse.statusCode(), null);
+                                    }
                                 }
                             });
                         }
@@ -167,6 +210,18 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                         responseHandler = mappedServices.wrapResponseHandlerInPolicies(request, responseHandler, proxyMappingDetails);
                     }
                     final HttpClientRequest clientRequest = client.request(request.method(), servicePath, responseHandler);
+                    clientRequest.exceptionHandler(new Handler<Throwable>() {
+                        public void handle(Throwable e) {
+                            LOG.warn("Failed to proxy request to " + finalClientURL + ". " + e, e);
+                            if (released.compareAndSet(false, true)) {
+                                clientPool.release(finalClientURL);
+                                serviceCall.failed();
+                                serviceCall.completed();
+                                recorder.completed(0, String.valueOf(e));
+                            }
+                        }
+                    });
+                    recorder.dispatched();
                     clientRequest.headers().set(request.headers());
                     clientRequest.setChunked(true);
                     request.dataHandler(new Handler<Buffer>() {
@@ -191,14 +246,16 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                     LOG.info("Could not find matching proxy path for " + uri + " from paths: " + mappingRules.keySet());
                     request.response().setStatusCode(404);
                     request.response().close();
+                    recorder.completed(404, null);
                 }
             }
-            CallDetailRecord cdr = new CallDetailRecord(System.nanoTime() - callStart, null);
-            httpGateway.addCallDetailRecord(cdr);
         } catch (Throwable e) {
             LOG.error("Caught: " + e, e);
-            CallDetailRecord cdr = new CallDetailRecord(System.nanoTime() - callStart, new Date() + ":" + e.getMessage());
-            httpGateway.addCallDetailRecord(cdr);
+            if (client != null && released.compareAndSet(false, true)) {
+                clientPool.release(clientURL);
+                startedCall.completed();
+            }
+            recorder.completed(404, String.valueOf(e.getMessage()));
             request.response().setStatusCode(404);
             StringWriter buffer = new StringWriter();
             e.printStackTrace(new PrintWriter(buffer));
@@ -207,6 +264,36 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
         }
     }
 
+    /**
+     * Records the phases of a call and adds its {@link CallDetailRecord} to the gateway when the call completes
+     */
+    private class CallRecorder {
+        private final long callStart;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile String path;
+        private volatile long dispatchTime = -1;
+        private volatile long firstByteTime = -1;
+
+        CallRecorder(long callStart) {
+            this.callStart = callStart;
+        }
+
+        void dispatched() {
+            dispatchTime = System.nanoTime() - callStart;
+        }
+
+        void responded() {
+            firstByteTime = System.nanoTime() - callStart;
+        }
+
+        void completed(int statusCode, String error) {
+            if (completed.compareAndSet(false, true)) {
+                long callTime = System.nanoTime() - callStart;
+                httpGateway.addCallDetailRecord(new CallDetailRecord(path, statusCode, dispatchTime, firstByteTime, callTime, error));
+            }
+        }
+    }
+
     protected String mappingRulesToJson(Map<String, MappedServices> rules) throws IOException {
         Map<String, Collection<String>> data = new HashMap<String, Collection<String>>();
 
@@ -220,6 +307,18 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
         return mapper.writeValueAsString(data);
     }
 
+    /**
+     * Returns the index of the mapped services, which is only rebuilt when the gateway returns different mapped services
+     */
+    protected MappedServicesIndex getIndex(Map<String, MappedServices> mappingRules) {
+        MappedServicesIndex answer = index;
+        if (answer == null || answer.getMappedServices() != mappingRules) {
+            answer = new MappedServicesIndex(mappingRules);
+            index = answer;
+        }
+        return answer;
+    }
+
     protected boolean isMappingIndexRequest(HttpServerRequest request) {
         if (httpGateway == null || !httpGateway.isEnableIndex()) {
             return false;
@@ -228,13 +327,12 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
         return uri == null || uri.length() == 0 || uri.equals("/");
     }
 
+    /**
+     * Returns the pooled keep alive client for the host and port of the URL,
+     * which is released when the response has ended
+     */
     protected HttpClient createClient(URL url) throws MalformedURLException {
-        // lets create a client
-        HttpClient client = vertx.createHttpClient();
-        client.setHost(url.getHost());
-        client.setPort(url.getPort());
-        return client;
-
+        return clientPool.acquire(url);
     }
 
     /**
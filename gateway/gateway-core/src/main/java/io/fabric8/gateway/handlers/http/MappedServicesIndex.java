@@ -0,0 +1,99 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.http;
+
+import io.fabric8.gateway.support.Paths;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable tree of the path segments of the URI prefixes of the mapped services, so that
+ * the services for a request URI are found by walking its path segments, longest prefix first,
+ * rather than by comparing the URI with every prefix.
+ */
+public class MappedServicesIndex {
+    private final Map<String, MappedServices> mappedServices;
+    private final Node root = new Node();
+
+    public MappedServicesIndex(Map<String, MappedServices> mappedServices) {
+        this.mappedServices = mappedServices;
+        for (Map.Entry<String, MappedServices> entry : mappedServices.entrySet()) {
+            Node node = root;
+            for (String path : Paths.splitPaths(entry.getKey())) {
+                node = node.child(path);
+            }
+            node.prefixes.add(entry.getKey());
+        }
+    }
+
+    /**
+     * Returns the mapped services this index was built from
+     */
+    public Map<String, MappedServices> getMappedServices() {
+        return mappedServices;
+    }
+
+    /**
+     * Returns the URI prefixes whose path segments are a prefix of the path segments of the URI,
+     * the longest first
+     */
+    public List<String> findPrefixes(String uri) {
+        List<List<String>> matches = new ArrayList<List<String>>();
+        Node node = root;
+        if (!node.prefixes.isEmpty()) {
+            matches.add(node.prefixes);
+        }
+        for (String path : Paths.splitPaths(uri)) {
+            node = node.children.get(path);
+            if (node == null) {
+                break;
+            }
+            if (!node.prefixes.isEmpty()) {
+                matches.add(node.prefixes);
+            }
+        }
+        List<String> answer = new ArrayList<String>();
+        for (int i = matches.size() - 1; i >= 0; i--) {
+            answer.addAll(matches.get(i));
+        }
+        return answer;
+    }
+
+    public MappedServices getMappedServices(String prefix) {
+        return mappedServices.get(prefix);
+    }
+
+    private static class Node {
+        private Map<String, Node> children = Collections.emptyMap();
+        private final List<String> prefixes = new ArrayList<String>(1);
+
+        Node child(String segment) {
+            Node answer = children.get(segment);
+            if (answer == null) {
+                if (children.isEmpty()) {
+                    children = new HashMap<String, Node>();
+                }
+                answer = new Node();
+                children.put(segment, answer);
+            }
+            return answer;
+        }
+    }
+}
@@ -16,8 +16,8 @@
 package io.fabric8.gateway.handlers.tcp;
 
 import io.fabric8.common.util.Objects;
-import io.fabric8.common.util.Strings;
 import io.fabric8.gateway.ServiceDetails;
+import io.fabric8.gateway.ServiceEndpoint;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
 import io.fabric8.gateway.ServiceMap;
 import org.slf4j.Logger;
@@ -31,7 +31,6 @@ import org.vertx.java.core.streams.Pump;
 
 import java.net.MalformedURLException;
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.util.List;
 
 /**
@@ -61,33 +60,26 @@ public class TcpGatewayHandler implements Handler<NetSocket> {
         TcpClientRequestFacade requestFacade = new TcpClientRequestFacade(socket);
         String path = pathLoadBalancer.choose(paths, requestFacade);
         if (path != null) {
-            List<ServiceDetails> services = serviceMap.getServices(path);
+            ServiceMap.Snapshot snapshot = serviceMap.getSnapshot(path);
+            List<ServiceDetails> services = snapshot.getServices();
             if (!services.isEmpty()) {
                 ServiceDetails serviceDetails = serviceLoadBalancer.choose(services, requestFacade);
                 if (serviceDetails != null) {
-                    List<String> urlStrings = serviceDetails.getServices();
-                    for (String urlString : urlStrings) {
-                        if (Strings.notEmpty(urlString)) {
+                    for (ServiceEndpoint endpoint : snapshot.getEndpoints(serviceDetails)) {
+                        if (Objects.equal(protocol, endpoint.getScheme())) {
                             // lets create a client for this request...
                             try {
-                                URI uri = new URI(urlString);
-                                //URL url = new URL(urlString);
-                                String urlProtocol = uri.getScheme();
-                                if (Objects.equal(protocol, urlProtocol)) {
-                                    Handler<AsyncResult<NetSocket>> handler = new Handler<AsyncResult<NetSocket>>() {
-                                        public void handle(final AsyncResult<NetSocket> asyncSocket) {
-                                            NetSocket clientSocket = asyncSocket.result();
-                                            Pump.createPump(clientSocket, socket).start();
-                                            Pump.createPump(socket, clientSocket).start();
-                                        }
-                                    };
-                                    client = createClient(socket, uri, handler);
-                                    break;
-                                }
+                                Handler<AsyncResult<NetSocket>> handler = new Handler<AsyncResult<NetSocket>>() {
+                                    public void handle(final AsyncResult<NetSocket> asyncSocket) {
+                                        NetSocket clientSocket = asyncSocket.result();
+                                        Pump.createPump(clientSocket, socket).start();
+                                        Pump.createPump(socket, clientSocket).start();
+                                    }
+                                };
+                                client = createClient(socket, endpoint.getUri(), handler);
+                                break;
                             } catch (MalformedURLException e) {
-                                LOG.warn("Failed to parse URL: " + urlString + ". " + e, e);
-                            } catch (URISyntaxException e) {
-                                LOG.warn("Failed to parse URI: " + urlString + ". " + e, e);
+                                LOG.warn("Failed to parse URL: " + endpoint + ". " + e, e);
                             }
                         }
                     }
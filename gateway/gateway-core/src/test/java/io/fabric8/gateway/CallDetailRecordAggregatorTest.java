@@ -0,0 +1,76 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for {@link CallDetailRecordAggregator}
+ */
+public class CallDetailRecordAggregatorTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAggregatesPerPath() throws Exception {
+        CallDetailRecordAggregator aggregator = new CallDetailRecordAggregator();
+        aggregator.add(new CallDetailRecord("/cxf/", 200, 1000, 2000, 3000, null));
+        aggregator.add(new CallDetailRecord("/cxf/", 503, 1000, 2000, 5000, null));
+        aggregator.add(new CallDetailRecord("/cxf/", 0, 1000, -1, 5000, "Connection refused"));
+        aggregator.add(new CallDetailRecord(null, 404, -1, -1, 1000, null));
+
+        assertEquals(4, aggregator.getCount());
+        assertEquals(3500, aggregator.getAverageCallTimeNanos());
+
+        Map<String, Object> statistics = aggregator.getStatistics();
+        Map<String, Object> cxf = (Map<String, Object>) statistics.get("/cxf/");
+        assertEquals(3L, cxf.get("count"));
+        assertEquals(1L, cxf.get("errors"));
+        Map<String, Long> status = (Map<String, Long>) cxf.get("status");
+        assertEquals(Long.valueOf(1), status.get("2xx"));
+        assertEquals(Long.valueOf(1), status.get("5xx"));
+        assertEquals(Long.valueOf(1), status.get("none"));
+        assertEquals(3L, ((Map<String, Object>) cxf.get("dispatch")).get("count"));
+        assertEquals(2L, ((Map<String, Object>) cxf.get("firstByte")).get("count"));
+
+        Map<String, Object> unmapped = (Map<String, Object>) statistics.get(CallDetailRecordAggregator.UNMAPPED_PATH);
+        assertEquals(1L, unmapped.get("count"));
+
+        assertTrue(aggregator.toJson().contains("\"p99Micros\""));
+        aggregator.reset();
+        assertEquals(0, aggregator.getCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCapsThePaths() throws Exception {
+        CallDetailRecordAggregator aggregator = new CallDetailRecordAggregator();
+        for (int i = 0; i < CallDetailRecordAggregator.MAXIMUM_PATHS + 10; i++) {
+            aggregator.add(new CallDetailRecord("/path" + i + "/", 200, 1000, 2000, 3000, null));
+        }
+        aggregator.add(new CallDetailRecord("/path0/", 200, 1000, 2000, 3000, null));
+
+        Map<String, Object> statistics = aggregator.getStatistics();
+        assertEquals(CallDetailRecordAggregator.MAXIMUM_PATHS + 1, statistics.size());
+        assertEquals(2L, ((Map<String, Object>) statistics.get("/path0/")).get("count"));
+        assertEquals(10L, ((Map<String, Object>) statistics.get(CallDetailRecordAggregator.OTHER_PATHS)).get("count"));
+        assertEquals(CallDetailRecordAggregator.MAXIMUM_PATHS + 11, aggregator.getCount());
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for {@link ServiceMap}
+ */
+public class ServiceMapTest {
+
+    @Test
+    public void testSnapshotParsesEndpoints() throws Exception {
+        ServiceMap serviceMap = new ServiceMap();
+        ServiceDTO service = createService("broker1", "tcp://localhost:61616", "not a uri", "amqp://localhost:5672");
+        serviceMap.serviceUpdated("broker", service);
+
+        ServiceMap.Snapshot snapshot = serviceMap.getSnapshot("broker");
+        assertEquals(1, snapshot.getServices().size());
+        List<ServiceEndpoint> endpoints = snapshot.getEndpoints(snapshot.getServices().get(0));
+        assertEquals(2, endpoints.size());
+        assertEquals("tcp", endpoints.get(0).getScheme());
+        assertEquals("localhost", endpoints.get(0).getHost());
+        assertEquals(61616, endpoints.get(0).getPort());
+        assertEquals("amqp", endpoints.get(1).getScheme());
+
+        // the snapshot is only replaced when the services change
+        assertSame(snapshot.getServices(), serviceMap.getServices("broker"));
+    }
+
+    @Test
+    public void testUnknownPathsAreNotAdded() throws Exception {
+        ServiceMap serviceMap = new ServiceMap();
+
+        assertTrue(serviceMap.getServices("unknown").isEmpty());
+        assertTrue(serviceMap.getPaths().isEmpty());
+    }
+
+    @Test
+    public void testEmptyPathsAreRemoved() throws Exception {
+        ServiceMap serviceMap = new ServiceMap();
+        ServiceDTO service1 = createService("broker1", "tcp://localhost:61616");
+        ServiceDTO service2 = createService("broker2", "tcp://localhost:61617");
+        serviceMap.serviceUpdated("broker", service1);
+        serviceMap.serviceUpdated("broker", service2);
+        assertEquals(Arrays.asList("broker"), serviceMap.getPaths());
+        assertEquals(2, serviceMap.getServices("broker").size());
+
+        serviceMap.serviceRemoved("broker", service1);
+        assertEquals(1, serviceMap.getServices("broker").size());
+
+        serviceMap.serviceRemoved("broker", service2);
+        assertTrue(serviceMap.getServices("broker").isEmpty());
+        assertTrue(serviceMap.getPaths().isEmpty());
+    }
+
+    protected ServiceDTO createService(String id, String... urls) {
+        ServiceDTO answer = new ServiceDTO();
+        answer.setId(id);
+        answer.setServices(Arrays.asList(urls));
+        return answer;
+    }
+}
@@ -198,6 +198,9 @@ public class DetectingGatewayTest {
 
         assertEquals(1, gateway.getSuccessfulConnectionAttempts());
         assertEquals(1, gateway.getConnectedClients().length);
+        assertEquals(1, gateway.getConnectedClientStatistics().length);
+        assertTrue(gateway.getBytesReceived() > 0);
+        assertTrue(gateway.getBytesSent() > 0);
         assertConnectedToBroker(0);
         connection.kill();
     }
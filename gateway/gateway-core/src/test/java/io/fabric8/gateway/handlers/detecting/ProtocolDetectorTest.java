@@ -0,0 +1,102 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting;
+
+import io.fabric8.gateway.SocketWrapper;
+import io.fabric8.gateway.handlers.loadbalancer.ConnectionParameters;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+
+import java.util.Arrays;
+
+import static io.fabric8.gateway.handlers.detecting.protocol.BufferSupport.startsWith;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for {@link ProtocolDetector}
+ */
+public class ProtocolDetectorTest {
+
+    private final Protocol foo = new PrefixProtocol("foo", "FOO");
+    private final Protocol foobar = new PrefixProtocol("foobar", "FOOBAR");
+    private final Protocol bar = new PrefixProtocol("bar", "BARBARBAR");
+
+    @Test
+    public void testDetectsAcrossReads() throws Exception {
+        ProtocolDetector detector = new ProtocolDetector(Arrays.asList(bar, foobar), 9);
+
+        assertNull(detector.detect(new Buffer("FO")));
+        assertNull(detector.detect(new Buffer("OB")));
+        assertSame(foobar, detector.detect(new Buffer("AR and the rest of the data")));
+        assertTrue(startsWith(detector.getReceived(), new Buffer("FOOBAR and the rest of the data")));
+    }
+
+    @Test
+    public void testMatchesInOrder() throws Exception {
+        ProtocolDetector detector = new ProtocolDetector(Arrays.asList(foo, foobar), 6);
+
+        assertSame(foo, detector.detect(new Buffer("FOOBAR")));
+    }
+
+    @Test
+    public void testRulesOutProtocols() throws Exception {
+        ProtocolDetector detector = new ProtocolDetector(Arrays.asList(foo, bar), 9);
+
+        assertNull(detector.detect(new Buffer("BAZ")));
+        assertFalse(detector.isRuledOut());
+        assertNull(detector.detect(new Buffer("BARBAR")));
+        assertTrue(detector.isRuledOut());
+    }
+
+    private static class PrefixProtocol implements Protocol {
+        private final String name;
+        private final Buffer prefix;
+
+        PrefixProtocol(String name, String prefix) {
+            this.name = name;
+            this.prefix = new Buffer(prefix);
+        }
+
+        @Override
+        public String[] getProtocolSchemes() {
+            return new String[]{name};
+        }
+
+        @Override
+        public String getProtocolName() {
+            return name;
+        }
+
+        @Override
+        public int getMaxIdentificationLength() {
+            return prefix.length();
+        }
+
+        @Override
+        public boolean matches(Buffer buffer) {
+            return buffer.length() >= prefix.length() && startsWith(buffer, prefix);
+        }
+
+        @Override
+        public void snoopConnectionParameters(SocketWrapper socket, Buffer received, Handler<ConnectionParameters> handler) {
+            handler.handle(new ConnectionParameters());
+        }
+    }
+}
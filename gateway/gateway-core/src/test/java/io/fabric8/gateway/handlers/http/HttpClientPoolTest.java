@@ -0,0 +1,94 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.VertxFactory;
+import org.vertx.java.core.http.HttpClient;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test cases for {@link HttpClientPool}
+ */
+public class HttpClientPoolTest {
+
+    private Vertx vertx;
+    private HttpClientPool pool;
+
+    @Before
+    public void setUp() {
+        vertx = VertxFactory.newVertx();
+        pool = new HttpClientPool(vertx, 4, 1000, false);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+        vertx.stop();
+    }
+
+    @Test
+    public void testClientsArePooledByHostAndPort() throws Exception {
+        HttpClient client = pool.acquire(new URL("http://localhost:8181/cxf/a"));
+        assertSame(client, pool.acquire(new URL("http://localhost:8181/cxf/b")));
+        assertNotSame(client, pool.acquire(new URL("http://localhost:8182/cxf/a")));
+        assertEquals(2, pool.getClientCount());
+    }
+
+    @Test
+    public void testIdleClientsAreClosed() throws Exception {
+        URL url = new URL("http://localhost:8181/cxf");
+        pool.acquire(url);
+        pool.closeIdleClients(System.currentTimeMillis() + 2000);
+        assertEquals("in use", 1, pool.getClientCount());
+
+        pool.release(url);
+        pool.closeIdleClients(System.currentTimeMillis());
+        assertEquals("not idle for long enough", 1, pool.getClientCount());
+
+        pool.closeIdleClients(System.currentTimeMillis() + 2000);
+        assertEquals(0, pool.getClientCount());
+    }
+
+    @Test
+    public void testClientsOfUnmappedServicesAreClosed() throws Exception {
+        URL mapped = new URL("http://localhost:8181/cxf");
+        URL unmapped = new URL("http://localhost:8182/cxf");
+        pool.acquire(mapped);
+        pool.release(mapped);
+        pool.acquire(unmapped);
+
+        Map<String, MappedServices> mappedServices = new HashMap<String, MappedServices>();
+        mappedServices.put("/cxf", new MappedServices(mapped.toString(), null, null, false));
+        pool.retainServices(mappedServices);
+        assertEquals("unmapped client still in use", 2, pool.getClientCount());
+
+        pool.release(unmapped);
+        pool.retainServices(mappedServices);
+        assertEquals(1, pool.getClientCount());
+        assertNotSame(pool.acquire(unmapped), pool.acquire(mapped));
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.http;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test cases for {@link MappedServicesIndex}
+ */
+public class MappedServicesIndexTest {
+
+    @Test
+    public void testLongestPrefixFirst() throws Exception {
+        MappedServicesIndex index = createIndex("/", "/cxf/", "/cxf/crm/", "/foo/");
+
+        assertEquals(Arrays.asList("/cxf/crm/", "/cxf/", "/"), index.findPrefixes("/cxf/crm/customers/123"));
+        assertEquals(Arrays.asList("/cxf/", "/"), index.findPrefixes("/cxf/HelloWorld"));
+        assertEquals(Arrays.asList("/"), index.findPrefixes("/bar"));
+    }
+
+    @Test
+    public void testMatchesWholeSegmentsOnly() throws Exception {
+        MappedServicesIndex index = createIndex("/foo/");
+
+        assertEquals(Collections.<String>emptyList(), index.findPrefixes("/foobar/"));
+        assertEquals(Arrays.asList("/foo/"), index.findPrefixes("/foo/bar"));
+    }
+
+    protected MappedServicesIndex createIndex(String... prefixes) {
+        Map<String, MappedServices> mappedServices = new HashMap<String, MappedServices>();
+        for (String prefix : prefixes) {
+            mappedServices.put(prefix, null);
+        }
+        return new MappedServicesIndex(mappedServices);
+    }
+}
@@ -113,12 +113,27 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
             label = "SSL enabled", description = "Enable or disable the SSL protocol detection")
     private boolean sslEnabled = false;
 
+    @Property(name = "usePooledBuffers", boolValue = true,
+            label = "Use pooled buffers", description = "Read from the client and service connections into pooled buffers to reduce the garbage created when proxying")
+    private boolean usePooledBuffers = true;
+
+    @Property(name = "sslHandshakeThreads", intValue = -1,
+            label = "SSL Handshake Threads", description = "The number of threads which run the CPU intensive SSL handshake tasks off the event loop. Set to 0 to run them on the event loop, or -1 to use a thread per available processor")
+    private int sslHandshakeThreads = -1;
+
+    @Property(name = "sslHandshakeQueueSize", intValue = 1024,
+            label = "SSL Handshake Queue Size", description = "The number of SSL handshake tasks which can wait for a thread before they are run on the event loop")
+    private int sslHandshakeQueueSize = 1024;
+
     @Property(name = "loadBalancerType",
             value = LoadBalancers.ROUND_ROBIN_LOAD_BALANCER,
             options = {
                     @PropertyOption(name = LoadBalancers.RANDOM_LOAD_BALANCER, value = "Random"),
                     @PropertyOption(name = LoadBalancers.ROUND_ROBIN_LOAD_BALANCER, value = "Round Robin"),
-                    @PropertyOption(name = LoadBalancers.STICKY_LOAD_BALANCER, value = "Sticky")
+                    @PropertyOption(name = LoadBalancers.STICKY_LOAD_BALANCER, value = "Sticky"),
+                    @PropertyOption(name = LoadBalancers.CONSISTENT_HASH_LOAD_BALANCER, value = "Consistent Hash"),
+                    @PropertyOption(name = LoadBalancers.LEAST_CONNECTIONS_LOAD_BALANCER, value = "Least Connections"),
+                    @PropertyOption(name = LoadBalancers.LATENCY_LOAD_BALANCER, value = "Latency")
             },
             label = "Load Balancer", description = "The kind of load balancing strategy to use when multiple endpoints can service the client conneciton")
     private String loadBalancerType;
@@ -127,6 +142,10 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
             label = "Sticky Load Balancer Cache Size", description = "The number of unique client keys to cache for the sticky load balancer (using an LRU caching algorithm)")
     private int stickyLoadBalancerCacheSize = LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_CACHE_SIZE;
 
+    @Property(name = "stickyLoadBalancerTimeToLive", longValue = 0,
+            label = "Sticky Load Balancer Time To Live", description = "The number of milliseconds the sticky load balancer remembers a client after its last connection, or 0 to remember it until it is evicted from the cache")
+    private long stickyLoadBalancerTimeToLive = 0;
+
     @Property(name = "sslProtocol", value="TLS",
             label = "SSL Protocol", description = "Example: SSL, TLS, TLSv1, TLSv2 etc.")
     private String sslProtocol;
@@ -258,6 +277,8 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
                 sslConfig.setDisabledCypherSuites(disabledCypherSuites);
             }
             gateway.setSslConfig(sslConfig);
+            gateway.setSslHandshakeThreads(sslHandshakeThreads);
+            gateway.setSslHandshakeQueueSize(sslHandshakeQueueSize);
             protocols.add(new SslProtocol());
         }
 
@@ -266,7 +287,7 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
         }
 
         VertxService vertxService = getVertxService();
-        LoadBalancer serviceLoadBalancer = LoadBalancers.createLoadBalancer(loadBalancerType, stickyLoadBalancerCacheSize);
+        LoadBalancer serviceLoadBalancer = LoadBalancers.createLoadBalancer(loadBalancerType, stickyLoadBalancerCacheSize, stickyLoadBalancerTimeToLive);
         gateway.setVertx(vertxService.getVertx());
         gateway.setPort(port);
         gateway.setServiceMap(serviceMap);
@@ -274,6 +295,7 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
         gateway.setShutdownTacker(shutdownTacker);
         gateway.setServiceLoadBalancer(serviceLoadBalancer);
         gateway.setDefaultVirtualHost(defaultVirtualHost);
+        gateway.setUsePooledBuffers(usePooledBuffers);
         return gateway;
     }
 
@@ -364,6 +386,30 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
         this.httpEnabled = httpEnabled;
     }
 
+    public int getSslHandshakeThreads() {
+        return sslHandshakeThreads;
+    }
+
+    public void setSslHandshakeThreads(int sslHandshakeThreads) {
+        this.sslHandshakeThreads = sslHandshakeThreads;
+    }
+
+    public int getSslHandshakeQueueSize() {
+        return sslHandshakeQueueSize;
+    }
+
+    public void setSslHandshakeQueueSize(int sslHandshakeQueueSize) {
+        this.sslHandshakeQueueSize = sslHandshakeQueueSize;
+    }
+
+    public boolean isUsePooledBuffers() {
+        return usePooledBuffers;
+    }
+
+    public void setUsePooledBuffers(boolean usePooledBuffers) {
+        this.usePooledBuffers = usePooledBuffers;
+    }
+
     public String getDefaultVirtualHost() {
         return defaultVirtualHost;
     }
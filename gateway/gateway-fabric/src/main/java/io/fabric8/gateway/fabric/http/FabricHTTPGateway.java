@@ -23,15 +23,19 @@ import io.fabric8.api.scr.Configurer;
 import io.fabric8.api.scr.ValidatingReference;
 import io.fabric8.common.util.ShutdownTracker;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.management.MBeanServer;
 
 import io.fabric8.gateway.CallDetailRecord;
+import io.fabric8.gateway.CallDetailRecordAggregator;
 import io.fabric8.gateway.fabric.detecting.FabricDetectingGatewayService;
 
 import org.apache.curator.framework.CuratorFramework;
@@ -48,6 +52,7 @@ import org.apache.felix.scr.annotations.Service;
 
 import io.fabric8.gateway.fabric.support.vertx.VertxService;
 import io.fabric8.gateway.handlers.detecting.DetectingGatewayWebSocketHandler;
+import io.fabric8.gateway.handlers.http.HttpClientPool;
 import io.fabric8.gateway.handlers.http.HttpGateway;
 import io.fabric8.gateway.handlers.http.HttpGatewayHandler;
 import io.fabric8.gateway.handlers.http.HttpGatewayServer;
@@ -56,6 +61,7 @@ import io.fabric8.gateway.handlers.http.MappedServices;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
 
 /**
@@ -68,6 +74,7 @@ import org.vertx.java.core.Vertx;
 @Service(FabricHTTPGateway.class)
 public final class FabricHTTPGateway extends AbstractComponent implements HttpGateway {
     private static final transient Logger LOG = LoggerFactory.getLogger(FabricHTTPGateway.class);
+    private static final transient Logger CDR_LOG = LoggerFactory.getLogger("io.fabric8.gateway.http.statistics");
 
     @Property(name = "host", label = "Host name", description = "The host name used when listening for HTTP traffic")
     private String host;
@@ -84,6 +91,18 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
     @Property(name = "websocketGatewayPrefix", label = "Web Socket Path Prefix", description = "The prefix a websocket requests must have")
     private String websocketGatewayPrefix = "";
 
+    @Property(name = "maxConnections", intValue = HttpClientPool.DEFAULT_MAX_CONNECTIONS, label = "Max connections", description = "The maximum number of keep alive connections the gateway opens to each proxied host and port")
+    private int maxConnections = HttpClientPool.DEFAULT_MAX_CONNECTIONS;
+
+    @Property(name = "idleTimeout", longValue = HttpClientPool.DEFAULT_IDLE_TIMEOUT, label = "Idle timeout", description = "The number of milliseconds after which the connections to a proxied host and port that has not been used are closed")
+    private long idleTimeout = HttpClientPool.DEFAULT_IDLE_TIMEOUT;
+
+    @Property(name = "pipelining", boolValue = false, label = "Pipelining", description = "If enabled then requests to the proxied services are pipelined on the keep alive connections")
+    private boolean pipelining;
+
+    @Property(name = "callDetailRecordLogPeriod", longValue = 0, label = "Call statistics log period", description = "The number of milliseconds between logging the latency and status code statistics of each mapped path as JSON, or 0 to disable logging them")
+    private long callDetailRecordLogPeriod;
+
     @Reference
     private Configurer configurer;
 
@@ -100,9 +119,23 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
     
     private HttpGatewayServer server;
     private HttpGatewayHandler handler;
+    private long callDetailRecordLogTimer = -1;
+    private long callDetailRecordWindowTimer = -1;
     private DetectingGatewayWebSocketHandler websocketHandler = new DetectingGatewayWebSocketHandler();
 
     private Set<HttpMappingRule> mappingRuleConfigurations = new CopyOnWriteArraySet<HttpMappingRule>();
+    private final AtomicLong mappingRulesVersion = new AtomicLong();
+    private volatile MappedServicesSnapshot mappedServices;
+    private final Runnable mappingRulesChangeListener = new Runnable() {
+        @Override
+        public void run() {
+            mappingRulesVersion.incrementAndGet();
+        }
+    };
+
+    private final CallDetailRecordAggregator callDetailRecords = new CallDetailRecordAggregator();
+    private volatile long lastCallTime;
+    private volatile CallDetailRecord lastErrorRecord;
 
     ShutdownTracker shutdownTracker = new ShutdownTracker();
     private FabricHTTPGatewayInfo fabricHTTPGatewayInfoMBean;
@@ -131,47 +164,114 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
         configurer.configure(configuration, this);
 
         Vertx vertx = getVertx();
-        handler = new HttpGatewayHandler(vertx, this);
+        handler = new HttpGatewayHandler(vertx, this, new HttpClientPool(vertx, maxConnections, idleTimeout, pipelining));
         websocketHandler.setPathPrefix(websocketGatewayPrefix);
         server = new HttpGatewayServer(vertx, handler, enableWebSocketGateway ? websocketHandler : null, port);
         server.init();
+
+        callDetailRecordWindowTimer = vertx.setPeriodic(CallDetailRecordAggregator.WINDOW_UPDATE_PERIOD, new Handler<Long>() {
+            @Override
+            public void handle(Long timerId) {
+                callDetailRecords.updateWindows();
+            }
+        });
+        if (callDetailRecordLogPeriod > 0) {
+            callDetailRecordLogTimer = vertx.setPeriodic(callDetailRecordLogPeriod, new Handler<Long>() {
+                @Override
+                public void handle(Long timerId) {
+                    try {
+                        CDR_LOG.info(callDetailRecords.toJson());
+                    } catch (IOException e) {
+                        LOG.warn("Failed to log the call statistics. " + e, e);
+                    }
+                }
+            });
+        }
     }
 
     private void deactivateInternal() {
         if (server != null) {
             server.destroy();
         }
+        if (handler != null) {
+            handler.close();
+        }
+        if (callDetailRecordLogTimer != -1) {
+            getVertx().cancelTimer(callDetailRecordLogTimer);
+            callDetailRecordLogTimer = -1;
+        }
+        if (callDetailRecordWindowTimer != -1) {
+            getVertx().cancelTimer(callDetailRecordWindowTimer);
+            callDetailRecordWindowTimer = -1;
+        }
     }
     
     @Override
     public void addCallDetailRecord(CallDetailRecord cdr) {
-    	fabricHTTPGatewayInfoMBean.setLastCallDate(cdr.getCallDate().toString());
-    	fabricHTTPGatewayInfoMBean.registerCall(cdr.getCallTimeNanos());
-    	if (cdr.getError()!=null) {
-    		fabricHTTPGatewayInfoMBean.setLastError(cdr.getError());
-    	}
+        callDetailRecords.add(cdr);
+        lastCallTime = cdr.getCallTimeMillis();
+        if (cdr.getError() != null) {
+            lastErrorRecord = cdr;
+        }
+    }
+
+    CallDetailRecordAggregator getCallDetailRecords() {
+        return callDetailRecords;
+    }
+
+    /**
+     * Returns the time in milliseconds of the last call or 0 if there were no calls
+     */
+    long getLastCallTime() {
+        return lastCallTime;
+    }
+
+    /**
+     * Returns the record of the last call which failed or null if no call failed
+     */
+    CallDetailRecord getLastErrorRecord() {
+        return lastErrorRecord;
+    }
+
+    void resetStatistics() {
+        callDetailRecords.reset();
+        lastCallTime = 0;
+        lastErrorRecord = null;
     }
 
     @Override
     public void addMappingRuleConfiguration(HttpMappingRule mappingRuleConfiguration) {
         assertValid();
         mappingRuleConfigurations.add(mappingRuleConfiguration);
+        mappingRuleConfiguration.addChangeListener(mappingRulesChangeListener);
+        mappingRulesVersion.incrementAndGet();
     }
 
     @Override
     public void removeMappingRuleConfiguration(HttpMappingRule mappingRuleConfiguration) {
         assertValid();
         mappingRuleConfigurations.remove(mappingRuleConfiguration);
+        mappingRuleConfiguration.removeChangeListener(mappingRulesChangeListener);
+        mappingRulesVersion.incrementAndGet();
     }
 
+    /**
+     * Returns a snapshot of the mapped services which is only rebuilt when the mapping rules change
+     */
     @Override
     public Map<String, MappedServices> getMappedServices() {
         assertValid();
-        Map<String, MappedServices> answer = new HashMap<String, MappedServices>();
-        for (HttpMappingRule mappingRuleConfiguration : mappingRuleConfigurations) {
-            mappingRuleConfiguration.appendMappedServices(answer);
+        MappedServicesSnapshot snapshot = mappedServices;
+        long version = mappingRulesVersion.get();
+        if (snapshot == null || snapshot.version != version) {
+            Map<String, MappedServices> answer = new HashMap<String, MappedServices>();
+            for (HttpMappingRule mappingRuleConfiguration : mappingRuleConfigurations) {
+                mappingRuleConfiguration.appendMappedServices(answer);
+            }
+            snapshot = new MappedServicesSnapshot(version, Collections.unmodifiableMap(answer));
+            mappedServices = snapshot;
         }
-        return answer;
+        return snapshot.mappedServices;
     }
 
     @Override
@@ -266,4 +366,14 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
         fabricHTTPGatewayInfoMBean.unregisterMBeanServer(mbeanServer.get());
     }
 
+    private static class MappedServicesSnapshot {
+        private final long version;
+        private final Map<String, MappedServices> mappedServices;
+
+        MappedServicesSnapshot(long version, Map<String, MappedServices> mappedServices) {
+            this.version = version;
+            this.mappedServices = mappedServices;
+        }
+    }
+
 }
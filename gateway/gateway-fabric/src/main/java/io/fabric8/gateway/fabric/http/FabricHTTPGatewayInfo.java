@@ -16,8 +16,12 @@
 package io.fabric8.gateway.fabric.http;
 
 import io.fabric8.common.util.ShutdownTracker;
+import io.fabric8.gateway.CallDetailRecord;
 import io.fabric8.gateway.fabric.jmx.FabricGatewayInfoMBean;
 
+import java.io.IOException;
+import java.util.Date;
+
 import javax.management.MBeanServer;
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
@@ -34,10 +38,6 @@ public class FabricHTTPGatewayInfo implements FabricGatewayInfoMBean {
 
     private final FabricHTTPGateway fabricHTTPGateway;
     private ObjectName objectName;
-    private long numberOfInvocations = 0l;
-    private long averageCallTimeNanos = 0l;
-    private String lastError;
-    private String lastCallDate;
     
     public FabricHTTPGatewayInfo(FabricHTTPGateway fabricHTTPGateway) {
 		super();
@@ -86,45 +86,45 @@ public class FabricHTTPGatewayInfo implements FabricGatewayInfoMBean {
 
     @Override
 	public long getNumberOfInvocations() {
-		return numberOfInvocations;
+		return getFabricHTTPGateway().getCallDetailRecords().getCount();
 	}
     
-    public void registerCall(long callTimeNanos) {
-    	averageCallTimeNanos = (averageCallTimeNanos * numberOfInvocations + callTimeNanos)/++numberOfInvocations;
-    }
-    
-    public void setLastError(String error) {
-    	lastError = error;
-    }
-    
     @Override
     public String getLastError() {
-    	return lastError;
-    }
-    
-    public void setLastCallDate(String callDate) {
-    	lastCallDate = callDate;
+    	CallDetailRecord cdr = getFabricHTTPGateway().getLastErrorRecord();
+    	if (cdr != null)
+    		return cdr.getCallDate() + ":" + cdr.getError();
+    	else
+    		return null;
     }
     
     @Override
     public String getLastCallDate() {
-    	if (lastCallDate!=null)
-    		return lastCallDate.toString();
+    	long lastCallTime = getFabricHTTPGateway().getLastCallTime();
+    	if (lastCallTime > 0)
+    		return new Date(lastCallTime).toString();
     	else
     		return null;
     }
     
     @Override 
     public long getAvarageCallTimeNanos() {
-    	return averageCallTimeNanos;
+    	return getFabricHTTPGateway().getCallDetailRecords().getAverageCallTimeNanos();
+    }
+
+    @Override
+    public String getCallStatistics() {
+    	try {
+    		return getFabricHTTPGateway().getCallDetailRecords().toJson();
+    	} catch (IOException e) {
+    		LOG.warn("Failed to convert the call statistics to JSON. " + e, e);
+    		return null;
+    	}
     }
     
     @Override
     public void resetStatistics() {
-    	averageCallTimeNanos = 0l;
-    	numberOfInvocations = 0l;
-    	lastCallDate = null;
-    	lastError = null;
+    	getFabricHTTPGateway().resetStatistics();
     }
    
     public ObjectName getObjectName() throws MalformedObjectNameException {
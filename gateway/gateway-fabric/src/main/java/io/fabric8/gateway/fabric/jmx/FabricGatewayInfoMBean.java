@@ -30,5 +30,9 @@ public interface FabricGatewayInfoMBean {
     String getLastError();
     String getLastCallDate();
     long getAvarageCallTimeNanos();
+    /**
+     * Returns the call counts, status codes and latency percentiles of each mapped path as JSON
+     */
+    String getCallStatistics();
     void resetStatistics();
 }
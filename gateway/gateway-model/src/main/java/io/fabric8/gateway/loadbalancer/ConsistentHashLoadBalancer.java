@@ -0,0 +1,138 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Implements a sticky load balancer which needs no cache, by hashing the unique client ID String requested from
+ * the {@link ClientRequestFacade} onto a ring of the hashes of the services.  When a service is added or removed
+ * only the clients whose hashes fall next to it on the ring move to a different service.
+ * <p/>
+ * The services are identified on the ring by their {@link #getServiceKey(Object)}
+ */
+public class ConsistentHashLoadBalancer implements LoadBalancer {
+    public static final int DEFAULT_VIRTUAL_NODES = 100;
+    static final int MAXIMUM_CACHED_RINGS = 64;
+
+    private final int virtualNodes;
+    private final ConcurrentMap<List<?>, Ring> rings = new ConcurrentHashMap<List<?>, Ring>();
+
+    public ConsistentHashLoadBalancer() {
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * @param virtualNodes the number of points each service has on the ring; the more points the more evenly
+     *                     the clients are spread over the services
+     */
+    public ConsistentHashLoadBalancer(int virtualNodes) {
+        this.virtualNodes = Math.max(1, virtualNodes);
+    }
+
+    @Override
+    public String toString() {
+        return "ConsistentHashLoadBalancer{" +
+                "virtualNodes=" + virtualNodes +
+                '}';
+    }
+
+    @Override
+    public <T> T choose(List<T> services, ClientRequestFacade requestFacade) {
+        int size = services.size();
+        if (size == 0) {
+            return null;
+        } else if (size == 1) {
+            return services.get(0);
+        }
+        Ring ring = rings.get(services);
+        if (ring == null) {
+            if (rings.size() >= MAXIMUM_CACHED_RINGS) {
+                rings.clear();
+            }
+            ring = new Ring(new ArrayList<Object>(services));
+            rings.put(ring.services, ring);
+        }
+        String clientKey = requestFacade.getClientRequestKey();
+        return (T) ring.choose(hash(clientKey != null ? clientKey : ""));
+    }
+
+    /**
+     * Returns the String which identifies the service on the ring, which must not change while the service is available
+     */
+    protected String getServiceKey(Object service) {
+        return String.valueOf(service);
+    }
+
+    /**
+     * A FNV-1a hash with a final avalanche, so that similar keys such as IP addresses spread around the ring
+     */
+    static int hash(String key) {
+        int h = 0x811c9dc5;
+        for (int i = 0, length = key.length(); i < length; i++) {
+            h ^= key.charAt(i);
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private class Ring {
+        private final List<Object> services;
+        private final int[] hashes;
+        private final Object[] owners;
+
+        Ring(List<Object> services) {
+            this.services = services;
+            int size = services.size() * virtualNodes;
+            long[] points = new long[size];
+            int i = 0;
+            for (int s = 0; s < services.size(); s++) {
+                String serviceKey = getServiceKey(services.get(s));
+                for (int v = 0; v < virtualNodes; v++) {
+                    // sort by the hash, then by the service index so that colliding points are ordered consistently
+                    points[i++] = ((long) hash(serviceKey + "#" + v) << 32) | s;
+                }
+            }
+            Arrays.sort(points);
+            hashes = new int[size];
+            owners = new Object[size];
+            for (i = 0; i < size; i++) {
+                hashes[i] = (int) (points[i] >> 32);
+                owners[i] = services.get((int) points[i]);
+            }
+        }
+
+        Object choose(int hash) {
+            int index = Arrays.binarySearch(hashes, hash);
+            if (index < 0) {
+                index = -index - 1;
+                if (index == hashes.length) {
+                    index = 0;
+                }
+            }
+            return owners[index];
+        }
+    }
+}
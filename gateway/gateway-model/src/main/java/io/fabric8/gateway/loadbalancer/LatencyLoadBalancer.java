@@ -0,0 +1,67 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses the better of two services picked at random, where the cost of a service is the moving average of its
+ * response times multiplied by its active connections or requests plus one.  Services which have not responded yet
+ * are expected to respond as fast as the others on average, a service which slows down quickly gets a smaller
+ * share of the load, and a service which fails to respond gets hardly any.
+ */
+public class LatencyLoadBalancer extends LoadTrackingLoadBalancerSupport {
+
+    public LatencyLoadBalancer() {
+        this(DEFAULT_DECAY_TIME);
+    }
+
+    /**
+     * @param decayTime the number of nanoseconds over which old response times stop counting towards the average
+     */
+    public LatencyLoadBalancer(long decayTime) {
+        super(decayTime);
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyLoadBalancer";
+    }
+
+    @Override
+    public <T> T choose(List<T> services, ClientRequestFacade requestFacade) {
+        int size = services.size();
+        if (size == 0) {
+            return null;
+        } else if (size == 1) {
+            return services.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        T a = services.get(first);
+        T b = services.get(second);
+        return getCost(b) < getCost(a) ? b : a;
+    }
+
+    protected double getCost(Object service) {
+        return getExpectedResponseTime(service) * (Math.max(getActive(service), 0) + 1);
+    }
+}
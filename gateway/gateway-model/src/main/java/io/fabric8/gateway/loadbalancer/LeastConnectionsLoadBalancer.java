@@ -0,0 +1,58 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses the service with the fewest active connections or requests, picking at random between
+ * the services which have the same number
+ */
+public class LeastConnectionsLoadBalancer extends LoadTrackingLoadBalancerSupport {
+
+    public LeastConnectionsLoadBalancer() {
+        super(DEFAULT_DECAY_TIME);
+    }
+
+    @Override
+    public String toString() {
+        return "LeastConnectionsLoadBalancer";
+    }
+
+    @Override
+    public <T> T choose(List<T> services, ClientRequestFacade requestFacade) {
+        int size = services.size();
+        if (size == 0) {
+            return null;
+        } else if (size == 1) {
+            return services.get(0);
+        }
+        // lets start at a random offset so the services with the same load take turns
+        int offset = ThreadLocalRandom.current().nextInt(size);
+        T answer = null;
+        int least = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            T service = services.get((offset + i) % size);
+            int active = Math.max(getActive(service), 0);
+            if (active < least) {
+                least = active;
+                answer = service;
+            }
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+/**
+ * A {@link LoadBalancer} which chooses services by their load, so needs to be told about
+ * the calls made to the services it chooses; which is usually done using a {@link ServiceCall}
+ */
+public interface LoadTrackingLoadBalancer extends LoadBalancer {
+
+    /**
+     * A connection or request to the service has started
+     */
+    void started(Object service);
+
+    /**
+     * The service responded to a connection or request after the given number of nanoseconds
+     */
+    void responded(Object service, long nanos);
+
+    /**
+     * The service failed to respond to a connection or request after the given number of nanoseconds,
+     * such as the connection being refused or timing out
+     */
+    void failed(Object service, long nanos);
+
+    /**
+     * A connection or request to the service has completed, or failed
+     */
+    void completed(Object service);
+}
@@ -0,0 +1,199 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A base class for load balancers which keep track of the active calls and the
+ * exponentially weighted moving average of the response times of each service.
+ * A service which fails to respond counts as responding after a penalty time.
+ */
+public abstract class LoadTrackingLoadBalancerSupport implements LoadTrackingLoadBalancer {
+    public static final long DEFAULT_DECAY_TIME = TimeUnit.SECONDS.toNanos(10);
+    static final int MAXIMUM_IDLE_STATS = 1024;
+    static final long IDLE_STATS_TIME = TimeUnit.MINUTES.toNanos(5);
+    static final long FAILURE_PENALTY = TimeUnit.SECONDS.toNanos(10);
+
+    private final ConcurrentMap<Object, ServiceStats> stats = new ConcurrentHashMap<Object, ServiceStats>();
+    // the responses of all the services, which is what a service is expected to do before it has responded
+    private final ServiceStats allServices = new ServiceStats();
+    private final long decayTime;
+
+    protected LoadTrackingLoadBalancerSupport(long decayTime) {
+        this.decayTime = decayTime;
+    }
+
+    @Override
+    public void started(Object service) {
+        while (!getStats(service).start()) {
+            // the stats were removed as idle in the meantime
+        }
+    }
+
+    @Override
+    public void responded(Object service, long nanos) {
+        getStats(service).update(nanos, decayTime);
+        allServices.update(nanos, decayTime);
+    }
+
+    @Override
+    public void failed(Object service, long nanos) {
+        getStats(service).update(Math.max(nanos, FAILURE_PENALTY), decayTime);
+    }
+
+    @Override
+    public void completed(Object service) {
+        ServiceStats answer = stats.get(service);
+        if (answer != null) {
+            answer.complete();
+        }
+    }
+
+    /**
+     * Returns the number of active calls to the service
+     */
+    public int getActive(Object service) {
+        ServiceStats answer = stats.get(service);
+        return answer != null ? answer.getActive() : 0;
+    }
+
+    /**
+     * Returns the moving average response time of the service in nanoseconds, or 0 if it has not responded yet
+     */
+    public double getAverageResponseTime(Object service) {
+        ServiceStats answer = stats.get(service);
+        return answer != null ? answer.getAverage() : 0;
+    }
+
+    /**
+     * Returns the moving average response time of the service in nanoseconds, or of all the services if
+     * it has not responded yet, so that a new service is tried without being favoured over the others
+     */
+    public double getExpectedResponseTime(Object service) {
+        double answer = getAverageResponseTime(service);
+        return answer > 0 ? answer : allServices.getAverage();
+    }
+
+    protected ServiceStats getStats(Object service) {
+        while (true) {
+            ServiceStats answer = stats.get(service);
+            if (answer == null) {
+                ServiceStats created = new ServiceStats();
+                answer = stats.putIfAbsent(service, created);
+                if (answer == null) {
+                    answer = created;
+                    if (stats.size() > MAXIMUM_IDLE_STATS) {
+                        removeIdleStats();
+                    }
+                }
+            }
+            if (!answer.isRetired()) {
+                return answer;
+            }
+            stats.remove(service, answer);
+        }
+    }
+
+    /**
+     * Removes the stats of the services which have had no calls for a while, such as services which have gone away.
+     * The stats are retired first, so that a call started concurrently goes to new stats rather than removed ones.
+     */
+    protected void removeIdleStats() {
+        long now = System.nanoTime();
+        for (Map.Entry<Object, ServiceStats> entry : stats.entrySet()) {
+            ServiceStats value = entry.getValue();
+            if (now - value.lastUpdate > IDLE_STATS_TIME && value.retire()) {
+                stats.remove(entry.getKey(), value);
+            }
+        }
+    }
+
+    protected static class ServiceStats {
+        // the active count of stats which have been removed, so no more calls can start on them
+        private static final int RETIRED = Integer.MIN_VALUE;
+
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicLong average = new AtomicLong(Double.doubleToRawLongBits(0));
+        private volatile long lastUpdate = System.nanoTime();
+
+        public int getActive() {
+            return Math.max(active.get(), 0);
+        }
+
+        /**
+         * @return false if the stats have been retired
+         */
+        boolean start() {
+            while (true) {
+                int current = active.get();
+                if (current == RETIRED) {
+                    return false;
+                }
+                if (active.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void complete() {
+            while (true) {
+                int current = active.get();
+                if (current <= 0 || active.compareAndSet(current, current - 1)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Retires the stats if there are no active calls
+         */
+        boolean retire() {
+            return active.compareAndSet(0, RETIRED);
+        }
+
+        boolean isRetired() {
+            return active.get() == RETIRED;
+        }
+
+        public double getAverage() {
+            return Double.longBitsToDouble(average.get());
+        }
+
+        /**
+         * Adds a response time to the average, weighting it by the time since the last response time
+         * so the average follows a service which slows down or recovers
+         */
+        void update(long nanos, long decayTime) {
+            long now = System.nanoTime();
+            while (true) {
+                long current = average.get();
+                double weight = 1 - Math.exp(-(double) Math.max(now - lastUpdate, 0) / decayTime);
+                double value = Double.longBitsToDouble(current);
+                double updated = value == 0 ? nanos : value + (nanos - value) * weight;
+                if (average.compareAndSet(current, Double.doubleToRawLongBits(updated))) {
+                    lastUpdate = now;
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reports a connection or request to a service to the {@link LoadTrackingLoadBalancer} which chose the service,
+ * making sure the response time and completion are only reported once
+ */
+public class ServiceCall {
+    /**
+     * The call returned for load balancers which do not track the load of the services
+     */
+    public static final ServiceCall NONE = new ServiceCall(null, null);
+
+    private final LoadTrackingLoadBalancer loadBalancer;
+    private final Object service;
+    private final long startTime = System.nanoTime();
+    private final AtomicBoolean responded = new AtomicBoolean();
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    private ServiceCall(LoadTrackingLoadBalancer loadBalancer, Object service) {
+        this.loadBalancer = loadBalancer;
+        this.service = service;
+    }
+
+    /**
+     * Starts a call to the service chosen by the load balancer
+     */
+    public static ServiceCall start(LoadBalancer loadBalancer, Object service) {
+        if (loadBalancer instanceof LoadTrackingLoadBalancer && service != null) {
+            LoadTrackingLoadBalancer tracking = (LoadTrackingLoadBalancer) loadBalancer;
+            tracking.started(service);
+            return new ServiceCall(tracking, service);
+        }
+        return NONE;
+    }
+
+    /**
+     * The service has responded, such as a connection being established or the response headers being received
+     */
+    public void responded() {
+        if (loadBalancer != null && responded.compareAndSet(false, true)) {
+            loadBalancer.responded(service, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * The service failed before it responded, such as the connection being refused or timing out. Does nothing
+     * if the service has already responded, as the call then failed after the service was reached.
+     */
+    public void failed() {
+        if (loadBalancer != null && responded.compareAndSet(false, true)) {
+            loadBalancer.failed(service, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * The call has completed or failed
+     */
+    public void completed() {
+        if (loadBalancer != null && completed.compareAndSet(false, true)) {
+            loadBalancer.completed(service);
+        }
+    }
+}
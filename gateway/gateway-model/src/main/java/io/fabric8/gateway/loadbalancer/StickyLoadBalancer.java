@@ -15,19 +15,33 @@
  */
 package io.fabric8.gateway.loadbalancer;
 
-import java.util.LinkedHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Implements a sticky load balancer where a unique client ID String is requested from the
  * {@link ClientRequestFacade} and used to keep track of which
  * service was used last time and to use that if its possible and keep a cache of requests to
+ * <p/>
+ * The cache is a concurrent map so choosing a service takes no locks.  When the cache is full
+ * the least recently used of a sample of the cached clients are evicted, along with any clients
+ * which have not been seen for longer than the time to live. Each sample carries on from where
+ * the previous one stopped, so that the whole cache is swept rather than the same few clients.
  */
 public class StickyLoadBalancer implements LoadBalancer {
+    static final int EVICTION_SAMPLE_SIZE = 16;
+
     private final LoadBalancer firstRequestLoadBalancer;
     private final int maximumCacheSize;
-    private final Map<String, Object> requestCache;
+    private final long timeToLive;
+    private final ConcurrentMap<String, CacheEntry> requestCache;
+    private final AtomicInteger cacheSize = new AtomicInteger();
+    private final Object evictionLock = new Object();
+    private Iterator<Map.Entry<String, CacheEntry>> evictionCursor;
 
     public StickyLoadBalancer() {
         this(LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_CACHE_SIZE);
@@ -38,35 +52,59 @@ public class StickyLoadBalancer implements LoadBalancer {
     }
 
     public StickyLoadBalancer(int maximumCacheSize, LoadBalancer firstRequestLoadBalancer) {
+        this(maximumCacheSize, 0, firstRequestLoadBalancer);
+    }
+
+    /**
+     * @param timeToLive the number of milliseconds a client is remembered after its last request, or 0 to remember
+     *                   clients until they are evicted from the cache
+     */
+    public StickyLoadBalancer(int maximumCacheSize, long timeToLive, LoadBalancer firstRequestLoadBalancer) {
         this.firstRequestLoadBalancer = firstRequestLoadBalancer;
         this.maximumCacheSize = maximumCacheSize;
-        this.requestCache = new LinkedHashMap(maximumCacheSize + 1, .75F, true) {
-            // This method is called just after a new entry has been added
-            public boolean removeEldestEntry(Map.Entry eldest) {
-                return size() > StickyLoadBalancer.this.maximumCacheSize;
-            }
-        };
+        this.timeToLive = timeToLive;
+        this.requestCache = new ConcurrentHashMap<String, CacheEntry>(Math.min(maximumCacheSize, 1024));
     }
 
     @Override
     public String toString() {
         return "StickyLoadBalancer{" +
                 "maximumCacheSize=" + maximumCacheSize +
+                ", timeToLive=" + timeToLive +
                 '}';
     }
 
     @Override
     public <T> T choose(List<T> services, ClientRequestFacade requestFacade) {
         String clientKey = requestFacade.getClientRequestKey();
-        T answer;
-        synchronized (requestCache) {
-            answer = (T) requestCache.get(clientKey);
-            if (answer == null) {
-                answer = firstRequestLoadBalancer.choose(services, requestFacade);
-                if (answer != null) {
-                    requestCache.put(clientKey, answer);
+        if (clientKey == null) {
+            return firstRequestLoadBalancer.choose(services, requestFacade);
+        }
+        long now = System.currentTimeMillis();
+        CacheEntry entry = requestCache.get(clientKey);
+        if (entry != null) {
+            // lets not stick to a service which has expired or is no longer available
+            if (!entry.isExpired(now, timeToLive)) {
+                int index = indexOf(services, entry);
+                if (index >= 0) {
+                    entry.index = index;
+                    entry.lastAccess = now;
+                    return (T) entry.service;
                 }
             }
+            remove(clientKey, entry);
+        }
+
+        T answer = firstRequestLoadBalancer.choose(services, requestFacade);
+        if (answer != null) {
+            CacheEntry existing = requestCache.putIfAbsent(clientKey, new CacheEntry(answer, now));
+            if (existing != null) {
+                // another request from the same client got there first
+                return (T) existing.service;
+            }
+            if (cacheSize.incrementAndGet() > maximumCacheSize) {
+                evict(now);
+            }
         }
         return answer;
     }
@@ -75,8 +113,81 @@ public class StickyLoadBalancer implements LoadBalancer {
      * Clears the cache of request client IDs to the bound service
      */
     public void flush() {
-        synchronized (requestCache) {
-            requestCache.clear();
+        for (Map.Entry<String, CacheEntry> entry : requestCache.entrySet()) {
+            remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Returns the number of clients in the cache
+     */
+    public int getCacheSize() {
+        return cacheSize.get();
+    }
+
+    protected void evict(long now) {
+        synchronized (evictionLock) {
+            while (cacheSize.get() > maximumCacheSize) {
+                String eldestKey = null;
+                CacheEntry eldest = null;
+                for (int i = 0; i < EVICTION_SAMPLE_SIZE; i++) {
+                    if (evictionCursor == null || !evictionCursor.hasNext()) {
+                        evictionCursor = requestCache.entrySet().iterator();
+                        if (!evictionCursor.hasNext()) {
+                            break;
+                        }
+                    }
+                    Map.Entry<String, CacheEntry> next = evictionCursor.next();
+                    CacheEntry entry = next.getValue();
+                    if (entry.isExpired(now, timeToLive)) {
+                        remove(next.getKey(), entry);
+                    } else if (eldest == null || entry.lastAccess < eldest.lastAccess) {
+                        eldestKey = next.getKey();
+                        eldest = entry;
+                    }
+                }
+                if (eldest == null) {
+                    break;
+                }
+                remove(eldestKey, eldest);
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the cached service in the services, checking where it was found last time
+     * first so that a client sticking to a service usually doesn't scan the services, or -1 if it's gone
+     */
+    private static int indexOf(List<?> services, CacheEntry entry) {
+        int index = entry.index;
+        try {
+            if (index < services.size() && entry.service.equals(services.get(index))) {
+                return index;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // the services changed concurrently
+        }
+        return services.indexOf(entry.service);
+    }
+
+    private void remove(String clientKey, CacheEntry entry) {
+        if (requestCache.remove(clientKey, entry)) {
+            cacheSize.decrementAndGet();
+        }
+    }
+
+    private static class CacheEntry {
+        private final Object service;
+        private volatile int index;
+        private volatile long lastAccess;
+
+        CacheEntry(Object service, long lastAccess) {
+            this.service = service;
+            this.lastAccess = lastAccess;
+        }
+
+        boolean isExpired(long now, long timeToLive) {
+            return timeToLive > 0 && now - lastAccess > timeToLive;
         }
     }
 }
@@ -17,6 +17,7 @@ package io.fabric8.gateway.model;
 
 import io.fabric8.gateway.loadbalancer.ClientRequestFacade;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
+import io.fabric8.gateway.loadbalancer.ServiceCall;
 import io.fabric8.gateway.model.loadbalancer.LoadBalancerDefinition;
 import io.fabric8.gateway.model.loadbalancer.RoundRobinLoadBalanceDefinition;
 import io.fabric8.gateway.support.MappingResult;
@@ -67,6 +68,14 @@ public class HttpProxyRule {
         return loadBalancer.choose(uriDefList, requestFacade);
     }
 
+    /**
+     * Starts a call to a back end service chosen by {@link #chooseBackEndService(ClientRequestFacade)}, so that
+     * load balancers which track the load of the services, such as the latency load balancer, see the call
+     */
+    public ServiceCall startServiceCall(UriTemplateDefinition backEndService) {
+        return ServiceCall.start(getLoadBalancer().getLoadBalancer(), backEndService);
+    }
+
     // DSL
     //-------------------------------------------------------------------------
 
@@ -25,6 +25,7 @@ import java.util.Map;
  */
 public class HttpProxyRuleBase {
     private Map<String, HttpProxyRule> mappingRules = new HashMap<String, HttpProxyRule>();
+    private volatile long version;
 
     public Map<String, HttpProxyRule> getMappingRules() {
         return mappingRules;
@@ -32,6 +33,15 @@ public class HttpProxyRuleBase {
 
     public void setMappingRules(Map<String, HttpProxyRule> mappingRules) {
         this.mappingRules = mappingRules;
+        version++;
+    }
+
+    /**
+     * Returns the number of times the rules have been changed via this class, so
+     * that indexes of the rules know when they need to be rebuilt
+     */
+    public long getVersion() {
+        return version;
     }
 
     /**
@@ -42,6 +52,7 @@ public class HttpProxyRuleBase {
         if (answer == null) {
             answer = new HttpProxyRule(uriTemplate);
             getMappingRules().put(uriTemplate, answer);
+            version++;
         }
         return answer;
     }
@@ -42,7 +42,21 @@ public class MappingResult {
      * Returns the resulting proxy URL from the mapping rule
      */
     public String getDestinationUrl(ClientRequestFacade requestFacade) {
-        UriTemplateDefinition uriTemplateDefinition = proxyRule.chooseBackEndService(requestFacade);
+        return getDestinationUrl(chooseBackEndService(requestFacade));
+    }
+
+    /**
+     * Chooses the back end service to proxy to, whose call should be started with
+     * {@link HttpProxyRule#startServiceCall(UriTemplateDefinition)}
+     */
+    public UriTemplateDefinition chooseBackEndService(ClientRequestFacade requestFacade) {
+        return proxyRule.chooseBackEndService(requestFacade);
+    }
+
+    /**
+     * Returns the resulting proxy URL for the given back end service
+     */
+    public String getDestinationUrl(UriTemplateDefinition uriTemplateDefinition) {
         if (uriTemplateDefinition != null) {
             UriTemplate uriTemplate = uriTemplateDefinition.getUriTemplateObject();
             if (uriTemplate != null) {
@@ -0,0 +1,118 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.support;
+
+import io.fabric8.gateway.model.HttpProxyRule;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable tree of the path segments of the URI templates of a number of {@link HttpProxyRule}s,
+ * so a request URI is matched by walking its path segments rather than trying every rule in turn.
+ * <p/>
+ * Literal segments are tried before wildcard segments, so the most specific rule wins.
+ */
+public class MappingRuleIndex {
+    private final Node root;
+
+    public MappingRuleIndex(Collection<HttpProxyRule> mappingRules) {
+        Node builder = new Node();
+        for (HttpProxyRule mappingRule : mappingRules) {
+            UriTemplate template = mappingRule.getUriTemplateObject();
+            if (template != null) {
+                Node node = builder;
+                String[] paths = template.getPaths();
+                for (int i = 0; i < paths.length; i++) {
+                    node = node.child(template.getWildcardParameterName(i) != null ? null : paths[i]);
+                }
+                node.rules.add(mappingRule);
+            }
+        }
+        this.root = builder;
+    }
+
+    /**
+     * Returns the result of the most specific rule which matches the given paths, or null if none match
+     */
+    public MappingResult findMappingRule(String[] paths) {
+        return find(root, paths, 0);
+    }
+
+    private static MappingResult find(Node node, String[] paths, int index) {
+        if (index == paths.length) {
+            return matches(node.rules, paths);
+        }
+        Node literal = node.literals.get(paths[index]);
+        if (literal != null) {
+            MappingResult answer = find(literal, paths, index + 1);
+            if (answer != null) {
+                return answer;
+            }
+        }
+        Node wildcard = node.wildcard;
+        if (wildcard != null) {
+            MappingResult answer = find(wildcard, paths, index + 1);
+            if (answer == null && index + 1 < paths.length) {
+                // a wildcard as the last segment of a template matches the rest of the paths
+                answer = matches(wildcard.rules, paths);
+            }
+            return answer;
+        }
+        return null;
+    }
+
+    private static MappingResult matches(List<HttpProxyRule> rules, String[] paths) {
+        for (HttpProxyRule rule : rules) {
+            MappingResult answer = rule.matches(paths);
+            if (answer != null) {
+                return answer;
+            }
+        }
+        return null;
+    }
+
+    private static class Node {
+        private Map<String, Node> literals = Collections.emptyMap();
+        private Node wildcard;
+        private final List<HttpProxyRule> rules = new ArrayList<HttpProxyRule>(1);
+
+        /**
+         * Returns the child for the path segment, or the wildcard child if the segment is null
+         */
+        Node child(String segment) {
+            if (segment == null) {
+                if (wildcard == null) {
+                    wildcard = new Node();
+                }
+                return wildcard;
+            }
+            Node answer = literals.get(segment);
+            if (answer == null) {
+                if (literals.isEmpty()) {
+                    literals = new HashMap<String, Node>();
+                }
+                answer = new Node();
+                literals.put(segment, answer);
+            }
+            return answer;
+        }
+    }
+}
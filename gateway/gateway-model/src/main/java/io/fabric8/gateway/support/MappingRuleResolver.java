@@ -18,23 +18,27 @@ package io.fabric8.gateway.support;
 import io.fabric8.gateway.model.HttpProxyRule;
 import io.fabric8.gateway.model.HttpProxyRuleBase;
 
+import java.util.ArrayList;
+import java.util.Map;
+
 /**
  * A helper class to map a request URI to a mapping rule
  */
 public class MappingRuleResolver {
     private HttpProxyRuleBase mappingRules = new HttpProxyRuleBase();
+    private volatile CompiledIndex index;
 
     public MappingResult findMappingRule(String requestURI) {
         String[] paths = Paths.splitPaths(requestURI);
-        MappingResult answer = null;
-        // TODO we could build a path based tree to do more efficient matching?
-        for (HttpProxyRule mappingRule : mappingRules.getMappingRules().values()) {
-            answer = mappingRule.matches(paths);
-            if (answer != null) {
-                break;
-            }
-        }
-        return answer;
+        return getIndex().findMappingRule(paths);
+    }
+
+    /**
+     * Rebuilds the index of the mapping rules; which is only required if a rule is changed in place
+     * rather than being added or removed via the {@link HttpProxyRuleBase}
+     */
+    public void refresh() {
+        index = null;
     }
 
     public HttpProxyRuleBase getMappingRules() {
@@ -43,6 +47,41 @@ public class MappingRuleResolver {
 
     public void setMappingRules(HttpProxyRuleBase mappingRules) {
         this.mappingRules = mappingRules;
+        this.index = null;
+    }
+
+    protected MappingRuleIndex getIndex() {
+        HttpProxyRuleBase ruleBase = mappingRules;
+        CompiledIndex answer = index;
+        if (answer == null || !answer.isCurrent(ruleBase)) {
+            answer = new CompiledIndex(ruleBase);
+            index = answer;
+        }
+        return answer.index;
+    }
+
+    /**
+     * The index together with the state of the rule base it was compiled from
+     */
+    private static class CompiledIndex {
+        private final HttpProxyRuleBase ruleBase;
+        private final Map<String, HttpProxyRule> rules;
+        private final int size;
+        private final long version;
+        private final MappingRuleIndex index;
+
+        CompiledIndex(HttpProxyRuleBase ruleBase) {
+            this.ruleBase = ruleBase;
+            this.version = ruleBase.getVersion();
+            this.rules = ruleBase.getMappingRules();
+            this.size = rules.size();
+            this.index = new MappingRuleIndex(new ArrayList<HttpProxyRule>(rules.values()));
+        }
+
+        boolean isCurrent(HttpProxyRuleBase ruleBase) {
+            return this.ruleBase == ruleBase && version == ruleBase.getVersion()
+                    && rules == ruleBase.getMappingRules() && size == rules.size();
+        }
     }
 
 }
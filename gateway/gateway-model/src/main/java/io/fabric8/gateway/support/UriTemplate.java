@@ -78,6 +78,13 @@ public class UriTemplate {
     }
 
 
+    /**
+     * Returns the path segments of the template
+     */
+    public String[] getPaths() {
+        return paths.clone();
+    }
+
     public List<String> getParameterNames() {
         return Collections.unmodifiableList(parameters);
     }
@@ -0,0 +1,84 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for {@link ConsistentHashLoadBalancer}
+ */
+public class ConsistentHashLoadBalancerTest {
+
+    private final ConsistentHashLoadBalancer loadBalancer = new ConsistentHashLoadBalancer();
+
+    @Test
+    public void testSameClientSameService() throws Exception {
+        List<String> services = Arrays.asList("a", "b", "c");
+        String service = choose(services, "client");
+        for (int i = 0; i < 10; i++) {
+            assertEquals(service, choose(services, "client"));
+            assertEquals(service, choose(Arrays.asList("c", "a", "b"), "client"));
+        }
+        assertNull(choose(new ArrayList<String>(), "client"));
+    }
+
+    @Test
+    public void testSpreadsClients() throws Exception {
+        List<String> services = Arrays.asList("a", "b", "c", "d");
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < 4000; i++) {
+            String service = choose(services, "192.168.0." + i);
+            Integer count = counts.get(service);
+            counts.put(service, count == null ? 1 : count + 1);
+        }
+        for (String service : services) {
+            assertTrue("Service " + service + " was chosen " + counts.get(service) + " times", counts.get(service) > 500);
+        }
+    }
+
+    @Test
+    public void testOnlyClientsOfRemovedServiceMove() throws Exception {
+        List<String> services = Arrays.asList("a", "b", "c", "d");
+        List<String> remaining = Arrays.asList("a", "b", "d");
+        for (int i = 0; i < 1000; i++) {
+            String client = "client" + i;
+            String before = choose(services, client);
+            String after = choose(remaining, client);
+            if (!before.equals("c")) {
+                assertEquals(before, after);
+            }
+        }
+    }
+
+    protected String choose(List<String> services, final String clientKey) {
+        return loadBalancer.choose(services, new ClientRequestFacade() {
+            @Override
+            public String getClientRequestKey() {
+                return clientKey;
+            }
+        });
+    }
+}
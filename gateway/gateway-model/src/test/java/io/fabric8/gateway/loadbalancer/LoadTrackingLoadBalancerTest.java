@@ -0,0 +1,141 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for the {@link LeastConnectionsLoadBalancer} and {@link LatencyLoadBalancer}
+ */
+public class LoadTrackingLoadBalancerTest {
+
+    private final List<String> services = Arrays.asList("a", "b", "c");
+
+    @Test
+    public void testLeastConnections() throws Exception {
+        LeastConnectionsLoadBalancer loadBalancer = new LeastConnectionsLoadBalancer();
+        ServiceCall a = ServiceCall.start(loadBalancer, "a");
+        ServiceCall.start(loadBalancer, "b");
+        ServiceCall.start(loadBalancer, "b");
+
+        assertEquals("c", choose(loadBalancer));
+        ServiceCall.start(loadBalancer, "c");
+        ServiceCall.start(loadBalancer, "c");
+        assertEquals("a", choose(loadBalancer));
+
+        // completing twice should only be counted once
+        a.completed();
+        a.completed();
+        assertEquals(0, loadBalancer.getActive("a"));
+        assertEquals(2, loadBalancer.getActive("b"));
+    }
+
+    @Test
+    public void testLatencyAvoidsSlowService() throws Exception {
+        LatencyLoadBalancer loadBalancer = new LatencyLoadBalancer();
+        loadBalancer.responded("a", 1000000);
+        loadBalancer.responded("b", 1000000);
+        loadBalancer.responded("c", 100000000);
+
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < 3000; i++) {
+            String service = choose(loadBalancer);
+            Integer count = counts.get(service);
+            counts.put(service, count == null ? 1 : count + 1);
+        }
+        Integer slow = counts.get("c");
+        assertTrue("The slow service was chosen " + slow + " times", slow == null || slow < 100);
+    }
+
+    @Test
+    public void testLatencyAvoidsFailingService() throws Exception {
+        LatencyLoadBalancer loadBalancer = new LatencyLoadBalancer();
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < 3000; i++) {
+            String service = choose(loadBalancer);
+            ServiceCall call = ServiceCall.start(loadBalancer, service);
+            if (service.equals("c")) {
+                call.failed();
+            } else {
+                loadBalancer.responded(service, 1000000);
+            }
+            call.completed();
+            Integer count = counts.get(service);
+            counts.put(service, count == null ? 1 : count + 1);
+        }
+        Integer failing = counts.get("c");
+        assertTrue("The failing service was chosen " + failing + " times", failing == null || failing < 100);
+        assertEquals(0, loadBalancer.getActive("c"));
+    }
+
+    @Test
+    public void testLatencyExpectsNewServiceToRespondLikeTheOthers() throws Exception {
+        LatencyLoadBalancer loadBalancer = new LatencyLoadBalancer();
+        assertEquals(0, loadBalancer.getExpectedResponseTime("c"), 0);
+        loadBalancer.responded("a", 1000000);
+        assertEquals(1000000, loadBalancer.getExpectedResponseTime("c"), 0);
+
+        ServiceCall call = ServiceCall.start(loadBalancer, "c");
+        call.failed();
+        // a failure after the service has responded is not a failure to respond
+        call.failed();
+        call.completed();
+        assertEquals(LoadTrackingLoadBalancerSupport.FAILURE_PENALTY, loadBalancer.getExpectedResponseTime("c"), 0);
+    }
+
+    @Test
+    public void testCallsDoNotStartOnRemovedStats() throws Exception {
+        LeastConnectionsLoadBalancer loadBalancer = new LeastConnectionsLoadBalancer();
+        ServiceCall b = ServiceCall.start(loadBalancer, "b");
+        assertFalse("stats with active calls are not idle", loadBalancer.getStats("b").retire());
+
+        // as if removeIdleStats() retired the stats just before the call started
+        LoadTrackingLoadBalancerSupport.ServiceStats removed = loadBalancer.getStats("a");
+        assertTrue(removed.retire());
+        ServiceCall a = ServiceCall.start(loadBalancer, "a");
+        assertNotSame(removed, loadBalancer.getStats("a"));
+        assertEquals(1, loadBalancer.getActive("a"));
+
+        a.completed();
+        b.completed();
+        assertEquals(0, loadBalancer.getActive("a"));
+        assertEquals(0, loadBalancer.getActive("b"));
+    }
+
+    @Test
+    public void testNonTrackingLoadBalancer() throws Exception {
+        assertTrue(ServiceCall.start(new RoundRobinLoadBalancer(), "a") == ServiceCall.NONE);
+    }
+
+    protected String choose(LoadBalancer loadBalancer) {
+        return loadBalancer.choose(services, new ClientRequestFacade() {
+            @Override
+            public String getClientRequestKey() {
+                return null;
+            }
+        });
+    }
+}
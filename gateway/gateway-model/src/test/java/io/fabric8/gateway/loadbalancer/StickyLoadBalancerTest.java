@@ -0,0 +1,72 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for {@link StickyLoadBalancer}
+ */
+public class StickyLoadBalancerTest {
+
+    @Test
+    public void testSticksToService() throws Exception {
+        StickyLoadBalancer loadBalancer = new StickyLoadBalancer(100);
+        List<String> services = Arrays.asList("a", "b", "c");
+        String service = choose(loadBalancer, services, "client");
+        for (int i = 0; i < 10; i++) {
+            choose(loadBalancer, services, "other" + i);
+            assertEquals(service, choose(loadBalancer, services, "client"));
+        }
+    }
+
+    @Test
+    public void testMovesWhenServiceRemoved() throws Exception {
+        StickyLoadBalancer loadBalancer = new StickyLoadBalancer(100);
+        String service = choose(loadBalancer, Arrays.asList("a", "b"), "client");
+        String other = service.equals("a") ? "b" : "a";
+        assertEquals(other, choose(loadBalancer, Arrays.asList(other), "client"));
+        assertEquals(other, choose(loadBalancer, Arrays.asList("a", "b"), "client"));
+    }
+
+    @Test
+    public void testEvictsWhenFull() throws Exception {
+        StickyLoadBalancer loadBalancer = new StickyLoadBalancer(10);
+        List<String> services = Arrays.asList("a", "b", "c");
+        for (int i = 0; i < 100; i++) {
+            choose(loadBalancer, services, "client" + i);
+        }
+        assertTrue("Cache size " + loadBalancer.getCacheSize(), loadBalancer.getCacheSize() <= 10);
+
+        loadBalancer.flush();
+        assertEquals(0, loadBalancer.getCacheSize());
+    }
+
+    protected String choose(StickyLoadBalancer loadBalancer, List<String> services, final String clientKey) {
+        return loadBalancer.choose(services, new ClientRequestFacade() {
+            @Override
+            public String getClientRequestKey() {
+                return clientKey;
+            }
+        });
+    }
+}
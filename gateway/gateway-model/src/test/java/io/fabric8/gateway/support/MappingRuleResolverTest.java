@@ -16,13 +16,19 @@
 package io.fabric8.gateway.support;
 
 import io.fabric8.gateway.loadbalancer.ClientRequestFacade;
+import io.fabric8.gateway.loadbalancer.LeastConnectionsLoadBalancer;
+import io.fabric8.gateway.loadbalancer.ServiceCall;
+import io.fabric8.gateway.model.HttpProxyRule;
 import io.fabric8.gateway.model.HttpProxyRuleBase;
+import io.fabric8.gateway.model.UriTemplateDefinition;
+import io.fabric8.gateway.model.loadbalancer.LeastConnectionsLoadBalanceDefinition;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 
 /**
  */
@@ -44,6 +50,24 @@ public class MappingRuleResolverTest extends MappingRuleTestSupport {
         assertRuleMatch("/customers/c123/address/abc", "http://another.com/addresses/abc/customerThingy/c123");
     }
 
+    @Test
+    public void testServiceCallsAreTrackedByTheLoadBalancer() throws Exception {
+        HttpProxyRule rule = new HttpProxyRule("/orders").to("http://a.com/orders").to("http://b.com/orders");
+        LeastConnectionsLoadBalanceDefinition loadBalancer = new LeastConnectionsLoadBalanceDefinition();
+        rule.setLoadBalancer(loadBalancer);
+        MappingResult mappingResult = rule.matches(new String[]{"orders"});
+        assertNotNull(mappingResult);
+
+        UriTemplateDefinition service = mappingResult.chooseBackEndService(requestFacade);
+        ServiceCall call = rule.startServiceCall(service);
+        LeastConnectionsLoadBalancer tracking = (LeastConnectionsLoadBalancer) loadBalancer.getLoadBalancer();
+        assertEquals(1, tracking.getActive(service));
+        assertNotSame(service, mappingResult.chooseBackEndService(requestFacade));
+
+        call.completed();
+        assertEquals(0, tracking.getActive(service));
+    }
+
     @Override
     protected void loadMappingRules(HttpProxyRuleBase ruleBase) {
         ruleBase.rule("/members").to("http://foo.com/rest/members");
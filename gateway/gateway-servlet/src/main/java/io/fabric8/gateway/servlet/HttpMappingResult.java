@@ -17,6 +17,7 @@ package io.fabric8.gateway.servlet;
 
 import io.fabric8.gateway.loadbalancer.ClientRequestFacade;
 import io.fabric8.gateway.model.HttpProxyRule;
+import io.fabric8.gateway.model.UriTemplateDefinition;
 import io.fabric8.gateway.support.MappingResult;
 
 import javax.servlet.http.HttpServletRequest;
@@ -42,6 +43,14 @@ public class HttpMappingResult {
         return result.getDestinationUrl(requestFacade);
     }
 
+    public UriTemplateDefinition chooseBackEndService(ClientRequestFacade requestFacade) {
+        return result.chooseBackEndService(requestFacade);
+    }
+
+    public String getDestinationUrl(UriTemplateDefinition backEndService) {
+        return result.getDestinationUrl(backEndService);
+    }
+
     public String[] getRequestUriPaths() {
         return result.getRequestUriPaths();
     }
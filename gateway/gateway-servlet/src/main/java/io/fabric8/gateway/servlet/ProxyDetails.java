@@ -16,7 +16,9 @@
 package io.fabric8.gateway.servlet;
 
 import io.fabric8.common.util.Strings;
+import io.fabric8.gateway.loadbalancer.ServiceCall;
 import io.fabric8.gateway.model.HttpProxyRule;
+import io.fabric8.gateway.model.UriTemplateDefinition;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
 
@@ -27,13 +29,19 @@ public class ProxyDetails {
     private final String stringProxyURL;
 
     private final HttpProxyRule proxyRule;
+    private final UriTemplateDefinition backEndService;
     private String proxyHostAndPort;
     private String proxyPath;
 
     public ProxyDetails(boolean valid, String stringProxyURL, HttpProxyRule proxyRule) {
+        this(valid, stringProxyURL, proxyRule, null);
+    }
+
+    public ProxyDetails(boolean valid, String stringProxyURL, HttpProxyRule proxyRule, UriTemplateDefinition backEndService) {
         this.valid = valid;
         this.stringProxyURL = stringProxyURL;
         this.proxyRule = proxyRule;
+        this.backEndService = backEndService;
         if (proxyHostAndPort == null) {
             return;
         }
@@ -93,6 +101,11 @@ public class ProxyDetails {
         return stringProxyURL;
     }
 
+    /**
+     * @deprecated the {@link ProxyServlet} shares a pooled client between its requests,
+     * see {@link ProxyServlet#getHttpClient()}
+     */
+    @Deprecated
     public HttpClient createHttpClient(HttpMethod httpMethodProxyRequest) {
         HttpClient client = new HttpClient();
         return client;
@@ -110,4 +123,18 @@ public class ProxyDetails {
         return proxyRule;
     }
 
+    /**
+     * Returns the back end service chosen by the load balancer of the proxy rule
+     */
+    public UriTemplateDefinition getBackEndService() {
+        return backEndService;
+    }
+
+    /**
+     * Starts the call to the back end service, which must be completed once the request has been proxied
+     */
+    public ServiceCall startServiceCall() {
+        return proxyRule != null && backEndService != null ? proxyRule.startServiceCall(backEndService) : ServiceCall.NONE;
+    }
+
 }
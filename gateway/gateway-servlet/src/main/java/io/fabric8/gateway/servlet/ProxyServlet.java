@@ -15,33 +15,26 @@
  */
 package io.fabric8.gateway.servlet;
 
-import io.fabric8.common.util.IOHelpers;
+import io.fabric8.gateway.loadbalancer.ServiceCall;
 import io.fabric8.gateway.model.HttpProxyRule;
 import io.fabric8.gateway.model.HttpProxyRuleBase;
+import io.fabric8.gateway.model.UriTemplateDefinition;
 import io.fabric8.gateway.servlet.support.NonBindingSocketFactory;
 import io.fabric8.gateway.servlet.support.ProxySupport;
-import org.apache.commons.fileupload.FileItem;
-import org.apache.commons.fileupload.FileUploadException;
-import org.apache.commons.fileupload.disk.DiskFileItemFactory;
-import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.NameValuePair;
 import org.apache.commons.httpclient.methods.DeleteMethod;
 import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
 import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.InputStreamRequestEntity;
 import org.apache.commons.httpclient.methods.OptionsMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.commons.httpclient.methods.PutMethod;
-import org.apache.commons.httpclient.methods.RequestEntity;
-import org.apache.commons.httpclient.methods.StringRequestEntity;
-import org.apache.commons.httpclient.methods.multipart.ByteArrayPartSource;
-import org.apache.commons.httpclient.methods.multipart.FilePart;
-import org.apache.commons.httpclient.methods.multipart.MultipartRequestEntity;
-import org.apache.commons.httpclient.methods.multipart.Part;
-import org.apache.commons.httpclient.methods.multipart.StringPart;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.apache.commons.httpclient.protocol.Protocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,8 +44,6 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedInputStream;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -93,16 +84,25 @@ public abstract class ProxyServlet extends HttpServlet {
      */
     private static final String STRING_HOST_HEADER_NAME = "Host";
     /**
-     * The directory to use to temporarily store uploaded files
+     * Content type of form bodies which are parsed into the request parameters by the servlet engine
      */
-    private static final File FILE_UPLOAD_TEMP_DIRECTORY = new File(System.getProperty("java.io.tmpdir"));
-
-    private HttpMappingRuleResolver resolver = new HttpMappingRuleResolver();
+    private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
 
     /**
-     * The maximum size for uploaded files in bytes. Default value is 5MB.
+     * The default maximum number of keep alive connections to each proxied host
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+    /**
+     * The default maximum number of keep alive connections to all the proxied hosts
      */
-    private int intMaxFileUploadSize = 5 * 1024 * 1024;
+    public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 200;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private HttpMappingRuleResolver resolver = new HttpMappingRuleResolver();
+
+    private MultiThreadedHttpConnectionManager connectionManager;
+    private HttpClient httpClient;
 
     /**
      * Initialize the <code>ProxyServlet</code>
@@ -116,6 +116,38 @@ public abstract class ProxyServlet extends HttpServlet {
         resolver.setMappingRules(ruleBase);
         Protocol.registerProtocol("http", new Protocol("http", new NonBindingSocketFactory(), 80));
         Protocol.registerProtocol("https", new Protocol("https", new NonBindingSocketFactory(), 443));
+
+        // the client is shared by all the requests so that the connections to the proxied hosts are kept alive
+        connectionManager = new MultiThreadedHttpConnectionManager();
+        HttpConnectionManagerParams params = connectionManager.getParams();
+        params.setDefaultMaxConnectionsPerHost(getIntInitParameter(config, "maxConnectionsPerHost", DEFAULT_MAX_CONNECTIONS_PER_HOST));
+        params.setMaxTotalConnections(getIntInitParameter(config, "maxTotalConnections", DEFAULT_MAX_TOTAL_CONNECTIONS));
+        httpClient = new HttpClient(connectionManager);
+    }
+
+    /**
+     * Closes the keep alive connections to the proxied hosts
+     */
+    @Override
+    public void destroy() {
+        if (connectionManager != null) {
+            connectionManager.shutdown();
+            connectionManager = null;
+        }
+        httpClient = null;
+        super.destroy();
+    }
+
+    private static int getIntInitParameter(ServletConfig config, String name, int defaultValue) throws ServletException {
+        String value = config.getInitParameter(name);
+        if (value == null || value.trim().length() == 0) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ServletException("Invalid " + name + " init parameter: " + value, e);
+        }
     }
 
     /**
@@ -168,12 +200,7 @@ public abstract class ProxyServlet extends HttpServlet {
             PostMethod postMethodProxyRequest = new PostMethod(proxyDetails.getStringProxyURL());
             // Forward the request headers
             setProxyRequestHeaders(proxyDetails, httpServletRequest, postMethodProxyRequest);
-            // Check if this is a mulitpart (file upload) POST
-            if (ServletFileUpload.isMultipartContent(httpServletRequest)) {
-                this.handleMultipartPost(postMethodProxyRequest, httpServletRequest);
-            } else {
-                this.handleEntity(postMethodProxyRequest, httpServletRequest);
-            }
+            this.handleEntity(postMethodProxyRequest, httpServletRequest);
             // Execute the proxy request
             this.executeProxyRequest(proxyDetails, postMethodProxyRequest, httpServletRequest, httpServletResponse);
         }
@@ -197,11 +224,7 @@ public abstract class ProxyServlet extends HttpServlet {
         } else {
             PutMethod putMethodProxyRequest = new PutMethod(proxyDetails.getStringProxyURL());
             setProxyRequestHeaders(proxyDetails, httpServletRequest, putMethodProxyRequest);
-            if (ServletFileUpload.isMultipartContent(httpServletRequest)) {
-                handleMultipartPost(putMethodProxyRequest, httpServletRequest);
-            } else {
-                handleEntity(putMethodProxyRequest, httpServletRequest);
-            }
+            handleEntity(putMethodProxyRequest, httpServletRequest);
             executeProxyRequest(proxyDetails, putMethodProxyRequest, httpServletRequest, httpServletResponse);
         }
     }
@@ -246,9 +269,10 @@ public abstract class ProxyServlet extends HttpServlet {
         HttpMappingResult mappingRule = getResolver().findMappingRule(httpServletRequest, httpServletResponse);
         final HttpProxyRule proxyRule = mappingRule.getProxyRule();
         if (mappingRule != null) {
-            String destinationUrl = mappingRule.getDestinationUrl(new HttpClientRequestFacade(httpServletRequest, httpServletResponse));
+            UriTemplateDefinition backEndService = mappingRule.chooseBackEndService(new HttpClientRequestFacade(httpServletRequest, httpServletResponse));
+            String destinationUrl = mappingRule.getDestinationUrl(backEndService);
             if (destinationUrl != null) {
-                return new ProxyDetails(true, destinationUrl, proxyRule);
+                return new ProxyDetails(true, destinationUrl, proxyRule, backEndService);
             }
         }
         return new ProxyDetails(false, null, proxyRule);
@@ -260,74 +284,10 @@ public abstract class ProxyServlet extends HttpServlet {
 
 
     /**
-     * Sets up the given {@link EntityEnclosingMethod} to send the same multipart
-     * data as was sent in the given {@link javax.servlet.http.HttpServletRequest}
-     *
-     * @param entityEnclosingMethod The {@link EntityEnclosingMethod} that we are
-     *                               configuring to send a multipart request
-     * @param httpServletRequest     The {@link javax.servlet.http.HttpServletRequest} that contains
-     *                               the mutlipart data to be sent via the {@link EntityEnclosingMethod}
-     */
-    private void handleMultipartPost(EntityEnclosingMethod entityEnclosingMethod, HttpServletRequest httpServletRequest)
-            throws ServletException {
-        // Create a factory for disk-based file items
-        DiskFileItemFactory diskFileItemFactory = new DiskFileItemFactory();
-        // Set factory constraints
-        diskFileItemFactory.setSizeThreshold(this.getMaxFileUploadSize());
-        diskFileItemFactory.setRepository(FILE_UPLOAD_TEMP_DIRECTORY);
-        // Create a new file upload handler
-        ServletFileUpload servletFileUpload = new ServletFileUpload(diskFileItemFactory);
-        // Parse the request
-        try {
-            // Get the multipart items as a list
-            List<FileItem> listFileItems = (List<FileItem>) servletFileUpload.parseRequest(httpServletRequest);
-            // Create a list to hold all of the parts
-            List<Part> listParts = new ArrayList<Part>();
-            // Iterate the multipart items list
-            for (FileItem fileItemCurrent : listFileItems) {
-                // If the current item is a form field, then create a string part
-                if (fileItemCurrent.isFormField()) {
-                    StringPart stringPart = new StringPart(
-                            fileItemCurrent.getFieldName(), // The field name
-                            fileItemCurrent.getString()     // The field value
-                    );
-                    // Add the part to the list
-                    listParts.add(stringPart);
-                } else {
-                    // The item is a file upload, so we create a FilePart
-                    FilePart filePart = new FilePart(
-                            fileItemCurrent.getFieldName(),    // The field name
-                            new ByteArrayPartSource(
-                                    fileItemCurrent.getName(), // The uploaded file name
-                                    fileItemCurrent.get()      // The uploaded file contents
-                            )
-                    );
-                    // Add the part to the list
-                    listParts.add(filePart);
-                }
-            }
-            MultipartRequestEntity multipartRequestEntity = new MultipartRequestEntity(
-                    listParts.toArray(new Part[]{}),
-                    entityEnclosingMethod.getParams()
-            );
-            entityEnclosingMethod.setRequestEntity(multipartRequestEntity);
-            // The current content-type header (received from the client) IS of
-            // type "multipart/form-data", but the content-type header also
-            // contains the chunk boundary string of the chunks. Currently, this
-            // header is using the boundary of the client request, since we
-            // blindly copied all headers from the client request to the proxy
-            // request. However, we are creating a new request with a new chunk
-            // boundary string, so it is necessary that we re-set the
-            // content-type string to reflect the new chunk boundary string
-            entityEnclosingMethod.setRequestHeader(STRING_CONTENT_TYPE_HEADER_NAME, multipartRequestEntity.getContentType());
-        } catch (FileUploadException fileUploadException) {
-            throw new ServletException(fileUploadException);
-        }
-    }
-
-    /**
-     * Sets up the given {@link PostMethod} to send the same standard
-     * data as was sent in the given {@link javax.servlet.http.HttpServletRequest}
+     * Sets up the given {@link EntityEnclosingMethod} to send the same
+     * data as was sent in the given {@link javax.servlet.http.HttpServletRequest}.
+     * The body is streamed to the proxied service as it is read from the client,
+     * except for POSTed form bodies which the servlet engine parses into the request parameters.
      *
      * @param entityEnclosingMethod The {@link EntityEnclosingMethod} that we are
      *                               configuring to send a standard request
@@ -335,40 +295,28 @@ public abstract class ProxyServlet extends HttpServlet {
      *                               the data to be sent via the {@link EntityEnclosingMethod}
      */
     @SuppressWarnings("unchecked")
-    private void handleEntity(EntityEnclosingMethod entityEnclosingMethod, HttpServletRequest httpServletRequest) throws IOException {
-        // Get the client POST data as a Map
-        Map<String, String[]> mapPostParameters = (Map<String, String[]>) httpServletRequest.getParameterMap();
-        // Create a List to hold the NameValuePairs to be passed to the PostMethod
-        List<NameValuePair> listNameValuePairs = new ArrayList<NameValuePair>();
-        // Iterate the parameter names
-        for (String stringParameterName : mapPostParameters.keySet()) {
-            // Iterate the values for each parameter name
-            String[] stringArrayParameterValues = mapPostParameters.get(stringParameterName);
-            for (String stringParamterValue : stringArrayParameterValues) {
-                // Create a NameValuePair and store in list
-                NameValuePair nameValuePair = new NameValuePair(stringParameterName, stringParamterValue);
-                listNameValuePairs.add(nameValuePair);
-            }
-        }
-        RequestEntity entity = null;
+    void handleEntity(EntityEnclosingMethod entityEnclosingMethod, HttpServletRequest httpServletRequest) throws IOException {
         String contentType = httpServletRequest.getContentType();
-        if (contentType != null) {
-            contentType = contentType.toLowerCase();
-            if (contentType.contains("json") || contentType.contains("xml") || contentType.contains("application") || contentType.contains("text")) {
-                String body = IOHelpers.readFully(httpServletRequest.getReader());
-                entity = new StringRequestEntity(body, contentType, httpServletRequest.getCharacterEncoding());
-                entityEnclosingMethod.setRequestEntity(entity);
+        if (entityEnclosingMethod instanceof PostMethod && contentType != null && contentType.toLowerCase().startsWith(FORM_CONTENT_TYPE)) {
+            // Get the client POST data as a Map
+            Map<String, String[]> mapPostParameters = (Map<String, String[]>) httpServletRequest.getParameterMap();
+            // Create a List to hold the NameValuePairs to be passed to the PostMethod
+            List<NameValuePair> listNameValuePairs = new ArrayList<NameValuePair>();
+            // Iterate the parameter names
+            for (Map.Entry<String, String[]> entry : mapPostParameters.entrySet()) {
+                // Iterate the values for each parameter name
+                for (String stringParamterValue : entry.getValue()) {
+                    // Create a NameValuePair and store in list
+                    listNameValuePairs.add(new NameValuePair(entry.getKey(), stringParamterValue));
+                }
             }
-        }
-        NameValuePair[] parameters = listNameValuePairs.toArray(new NameValuePair[]{});
-        if (entity != null) {
-            // TODO add as URL parameters?
-            //postMethodProxyRequest.addParameters(parameters);
-        } else {
             // Set the proxy request POST data
-            if (entityEnclosingMethod instanceof PostMethod) {
-                ((PostMethod)entityEnclosingMethod).setRequestBody(parameters);
-            }
+            ((PostMethod) entityEnclosingMethod).setRequestBody(listNameValuePairs.toArray(new NameValuePair[listNameValuePairs.size()]));
+        } else if (contentType != null || httpServletRequest.getContentLength() > 0) {
+            // a content length of -1 sends the body chunked; the multipart boundary of the
+            // client is kept as the body is sent as is
+            entityEnclosingMethod.setRequestEntity(new InputStreamRequestEntity(httpServletRequest.getInputStream(),
+                    httpServletRequest.getContentLength(), contentType));
         }
     }
 
@@ -391,11 +339,31 @@ public abstract class ProxyServlet extends HttpServlet {
         httpMethodProxyRequest.setDoAuthentication(false);
         httpMethodProxyRequest.setFollowRedirects(false);
 
-        // Create a default HttpClient
-        HttpClient httpClient = proxyDetails.createHttpClient(httpMethodProxyRequest);
+        // tells load balancers such as the latency one how the back end service is doing
+        ServiceCall serviceCall = proxyDetails.startServiceCall();
+        try {
+            // Execute the request
+            int intProxyResponseCode;
+            try {
+                intProxyResponseCode = getHttpClient().executeMethod(httpMethodProxyRequest);
+            } catch (IOException e) {
+                serviceCall.failed();
+                throw e;
+            }
+            serviceCall.responded();
+            sendProxyResponse(proxyDetails, httpMethodProxyRequest, intProxyResponseCode, httpServletRequest, httpServletResponse);
+        } finally {
+            // returns the connection to the pool
+            httpMethodProxyRequest.releaseConnection();
+            serviceCall.completed();
+        }
+    }
 
-        // Execute the request
-        int intProxyResponseCode = httpClient.executeMethod(httpMethodProxyRequest);
+    private void sendProxyResponse(
+            ProxyDetails proxyDetails, HttpMethod httpMethodProxyRequest, int intProxyResponseCode,
+            HttpServletRequest httpServletRequest,
+            HttpServletResponse httpServletResponse)
+            throws IOException, ServletException {
 
         // Check if the proxy response is a redirect
         // The following code is adapted from org.tigris.noodle.filters.CheckForRedirect
@@ -452,8 +420,8 @@ public abstract class ProxyServlet extends HttpServlet {
         int code = httpMethodProxyRequest.getStatusCode();
         boolean noData = code == HttpStatus.SC_NO_CONTENT;
         if (!noData) {
-            String length = httpServletRequest.getHeader(STRING_CONTENT_LENGTH_HEADER_NAME);
-            if (length != null && "0".equals(length.trim())) {
+            Header length = httpMethodProxyRequest.getResponseHeader(STRING_CONTENT_LENGTH_HEADER_NAME);
+            if (length != null && "0".equals(length.getValue().trim())) {
                 noData = true;
             }
         }
@@ -462,11 +430,14 @@ public abstract class ProxyServlet extends HttpServlet {
         if (!noData) {
             // Send the content to the client
             InputStream inputStreamProxyResponse = httpMethodProxyRequest.getResponseBodyAsStream();
-            BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStreamProxyResponse);
-            OutputStream outputStreamClientResponse = httpServletResponse.getOutputStream();
-            int intNextByte;
-            while ((intNextByte = bufferedInputStream.read()) != -1) {
-                outputStreamClientResponse.write(intNextByte);
+            if (inputStreamProxyResponse != null) {
+                OutputStream outputStreamClientResponse = httpServletResponse.getOutputStream();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int length;
+                while ((length = inputStreamProxyResponse.read(buffer)) != -1) {
+                    outputStreamClientResponse.write(buffer, 0, length);
+                }
+                outputStreamClientResponse.flush();
             }
         }
     }
@@ -480,6 +451,13 @@ public abstract class ProxyServlet extends HttpServlet {
         return resolver;
     }
 
+    /**
+     * Returns the client shared by all the requests, which keeps the connections to the proxied hosts alive
+     */
+    protected HttpClient getHttpClient() {
+        return httpClient;
+    }
+
     /**
      * Retrieves all of the headers from the servlet request and sets them on
      * the proxy request
@@ -518,13 +496,4 @@ public abstract class ProxyServlet extends HttpServlet {
             }
         }
     }
-
-
-    private int getMaxFileUploadSize() {
-        return this.intMaxFileUploadSize;
-    }
-
-    private void setMaxFileUploadSize(int intMaxFileUploadSizeNew) {
-        this.intMaxFileUploadSize = intMaxFileUploadSizeNew;
-    }
 }
@@ -0,0 +1,156 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.servlet;
+
+import io.fabric8.gateway.model.HttpProxyRuleBase;
+import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.PutMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.junit.Test;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test cases for forwarding the request bodies in the {@link ProxyServlet}
+ */
+public class ProxyServletTest {
+    private static final String URL = "http://localhost:8181/service";
+
+    private final ProxyServlet servlet = new ProxyServlet() {
+        @Override
+        protected void loadRuleBase(ServletConfig config, HttpProxyRuleBase ruleBase) {
+        }
+    };
+
+    @Test
+    public void multipartBodyIsStreamedWithItsBoundary() throws Exception {
+        String contentType = "multipart/form-data; boundary=AaB03x";
+        String body = "--AaB03x\r\nContent-Disposition: form-data; name=\"file\"; filename=\"a.txt\"\r\n"
+                + "Content-Type: text/plain\r\n\r\nhello\r\n--AaB03x--\r\n";
+        PostMethod method = new PostMethod(URL);
+        servlet.handleEntity(method, request(contentType, body, Collections.<String, String[]>emptyMap()));
+
+        assertThat(method.getRequestEntity().getContentType(), equalTo(contentType));
+        assertThat(body(method), equalTo(body));
+    }
+
+    @Test
+    public void postedFormIsSentFromTheParameters() throws Exception {
+        // the servlet engine has already read the body to parse the parameters
+        Map<String, String[]> parameters = new LinkedHashMap<String, String[]>();
+        parameters.put("a", new String[]{"1"});
+        parameters.put("b", new String[]{"2", "3"});
+        PostMethod method = new PostMethod(URL);
+        servlet.handleEntity(method, request("application/x-www-form-urlencoded", "", parameters));
+
+        assertThat(method.getRequestEntity().getContentType(), equalTo("application/x-www-form-urlencoded"));
+        assertThat(body(method), equalTo("a=1&b=2&b=3"));
+    }
+
+    @Test
+    public void putFormIsStreamed() throws Exception {
+        PutMethod method = new PutMethod(URL);
+        servlet.handleEntity(method, request("application/x-www-form-urlencoded; charset=UTF-8", "a=1&b=2",
+                Collections.<String, String[]>emptyMap()));
+
+        assertThat(method.getRequestEntity().getContentType(), equalTo("application/x-www-form-urlencoded; charset=UTF-8"));
+        assertThat(body(method), equalTo("a=1&b=2"));
+    }
+
+    @Test
+    public void rawBodyIsStreamed() throws Exception {
+        PutMethod method = new PutMethod(URL);
+        servlet.handleEntity(method, request("application/json", "{\"a\":1}", Collections.<String, String[]>emptyMap()));
+
+        assertThat(method.getRequestEntity().getContentType(), equalTo("application/json"));
+        assertThat(body(method), equalTo("{\"a\":1}"));
+    }
+
+    @Test
+    public void emptyBodyIsNotSent() throws Exception {
+        PutMethod method = new PutMethod(URL);
+        servlet.handleEntity(method, request(null, "", Collections.<String, String[]>emptyMap()));
+
+        assertThat(method.getRequestEntity(), nullValue());
+    }
+
+    protected String body(EntityEnclosingMethod method) throws IOException {
+        RequestEntity entity = method.getRequestEntity();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeRequest(out);
+        return out.toString("UTF-8");
+    }
+
+    protected HttpServletRequest request(final String contentType, String body, final Map<String, String[]> parameters) throws IOException {
+        final byte[] data = body.getBytes("UTF-8");
+        final ServletInputStream in = new ServletInputStream() {
+            private final ByteArrayInputStream stream = new ByteArrayInputStream(data);
+
+            @Override
+            public int read() throws IOException {
+                return stream.read();
+            }
+
+            @Override
+            public boolean isFinished() {
+                return stream.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HttpServletRequest.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if (name.equals("getContentType")) {
+                    return contentType;
+                } else if (name.equals("getContentLength")) {
+                    return data.length > 0 ? data.length : -1;
+                } else if (name.equals("getInputStream")) {
+                    return in;
+                } else if (name.equals("getParameterMap")) {
+                    return parameters;
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+}